@@ -0,0 +1,100 @@
+package xltutil.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runner.Description;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.runner.AnnotationRunner;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Measures the suite discovery of a data-driven test class: constructing the runner, which reads the data sets and
+ * expands the children, and describing it, which is what IDEs and build tools do right after.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AnnotationRunnerBenchmark
+{
+    /**
+     * The number of browser profiles the test class is run with.
+     */
+    @Param(
+    {
+        "1", "10"
+    })
+    public int targets;
+
+    /**
+     * The number of data sets.
+     */
+    @Param(
+    {
+        "1000", "100000", "1000000"
+    })
+    public int rows;
+
+    /**
+     * Whether data sets are streamed.
+     */
+    @Param(
+    {
+        "false", "true"
+    })
+    public boolean streaming;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        SyntheticData.defineProfiles(targets);
+
+        final StringBuilder browserDefinitions = new StringBuilder();
+        for (int i = 0; i < targets; i++)
+        {
+            browserDefinitions.append(i > 0 ? "," : "").append(SyntheticData.browserTag(i));
+        }
+
+        final File dataSetsFile = SyntheticData.writeDataSets(rows);
+
+        final XltProperties props = XltProperties.getInstance();
+        props.setProperty("browserdefinition", browserDefinitions.toString());
+        props.setProperty(SyntheticTestCase.class.getName() + ".dataSetsFile", dataSetsFile.getAbsolutePath());
+        props.setProperty(XltPropertyKey.DATA_SETS_STREAMING_ENABLED, Boolean.toString(streaming));
+    }
+
+    /**
+     * Constructs the runner.
+     */
+    @Benchmark
+    public AnnotationRunner construct() throws Throwable
+    {
+        return new AnnotationRunner(SyntheticTestCase.class);
+    }
+
+    /**
+     * Constructs the runner and describes all its children.
+     */
+    @Benchmark
+    public Description constructAndDescribe() throws Throwable
+    {
+        return new AnnotationRunner(SyntheticTestCase.class).getDescription();
+    }
+}
@@ -0,0 +1,80 @@
+package xltutil.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.mapper.PropertiesToBrowserConfigurationMapper;
+import xltutil.runner.helper.AnnotationRunnerHelper;
+
+/**
+ * Measures how long it takes to turn the <code>browserprofile.*</code> properties into browser configurations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BrowserProfileBenchmark
+{
+    @Param(
+    {
+        "10", "100", "1000"
+    })
+    public int profiles;
+
+    private final PropertiesToBrowserConfigurationMapper mapper = new PropertiesToBrowserConfigurationMapper();
+
+    private final List<Map<String, String>> profileProperties = new ArrayList<Map<String, String>>();
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        SyntheticData.defineProfiles(profiles);
+
+        for (int i = 0; i < profiles; i++)
+        {
+            profileProperties.add(SyntheticData.profileProperties(i));
+        }
+    }
+
+    /**
+     * Parses all browser profiles from the XLT properties.
+     */
+    @Benchmark
+    public Map<String, BrowserConfigurationDto> parseBrowserProperties()
+    {
+        return AnnotationRunnerHelper.parseBrowserProperties(XltProperties.getInstance());
+    }
+
+    /**
+     * Maps the already grouped properties of all profiles to browser configurations.
+     */
+    @Benchmark
+    public void toDto(final Blackhole blackhole)
+    {
+        for (final Map<String, String> properties : profileProperties)
+        {
+            blackhole.consume(mapper.toDto(properties));
+        }
+    }
+}
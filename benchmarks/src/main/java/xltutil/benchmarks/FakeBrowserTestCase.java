@@ -0,0 +1,25 @@
+package xltutil.benchmarks;
+
+import org.junit.Test;
+
+import xltutil.AbstractAnnotatedWebDriverTestCase;
+import xltutil.annotation.TestTargets;
+
+/**
+ * A test case that targets the first ten fake browser profiles and sends a few commands per test method. Which of them
+ * are actually used is controlled by the <code>browserdefinition</code> property.
+ */
+@TestTargets(
+{
+    "f0", "f1", "f2", "f3", "f4", "f5", "f6", "f7", "f8", "f9"
+})
+public class FakeBrowserTestCase extends AbstractAnnotatedWebDriverTestCase
+{
+    @Test
+    public void test()
+    {
+        getWebDriver().get("http://localhost/");
+        getWebDriver().getTitle();
+        getWebDriver().getCurrentUrl();
+    }
+}
@@ -0,0 +1,87 @@
+package xltutil.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Creates drivers that accept every command without starting a browser, so that driver handling can be measured
+ * without the noise of real browsers.
+ */
+final class FakeWebDriver
+{
+    /**
+     * The handle of the only window of a fake driver.
+     */
+    private static final String WINDOW_HANDLE = "fake-window";
+
+    /**
+     * Default constructor. Declared private to prevent external instantiation.
+     */
+    private FakeWebDriver()
+    {
+    }
+
+    /**
+     * Creates a new fake driver.
+     *
+     * @return the driver
+     */
+    static WebDriver create()
+    {
+        final WebDriver.Options options = (WebDriver.Options) Proxy.newProxyInstance(FakeWebDriver.class.getClassLoader(), new Class<?>[]
+        {
+            WebDriver.Options.class
+        }, new DriverHandler(null));
+
+        return (WebDriver) Proxy.newProxyInstance(FakeWebDriver.class.getClassLoader(), new Class<?>[]
+        {
+            WebDriver.class, JavascriptExecutor.class
+        }, new DriverHandler(options));
+    }
+
+    /**
+     * Answers the commands the library sends to a driver and ignores all others.
+     */
+    private static class DriverHandler implements InvocationHandler
+    {
+        private final WebDriver.Options options;
+
+        private DriverHandler(final WebDriver.Options options)
+        {
+            this.options = options;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+        {
+            final String name = method.getName();
+            if ("getWindowHandle".equals(name))
+            {
+                return WINDOW_HANDLE;
+            }
+            else if ("getWindowHandles".equals(name))
+            {
+                return Collections.singleton(WINDOW_HANDLE);
+            }
+            else if ("manage".equals(name))
+            {
+                return options;
+            }
+            else if ("hashCode".equals(name))
+            {
+                return System.identityHashCode(proxy);
+            }
+            else if ("equals".equals(name))
+            {
+                return proxy == args[0];
+            }
+
+            return null;
+        }
+    }
+}
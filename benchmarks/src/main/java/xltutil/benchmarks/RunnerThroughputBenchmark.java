@@ -0,0 +1,145 @@
+package xltutil.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.runner.AnnotationRunner;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Measures the end-to-end throughput of the runner (scheduling, driver creation, pooling, teardown) against fake
+ * browsers with artificial latencies, so no browser needs to be installed. Fails if a test method fails.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1)
+public class RunnerThroughputBenchmark
+{
+    /**
+     * The number of browser profiles the test class is run with.
+     */
+    @Param(
+    {
+        "1", "10"
+    })
+    public int targets;
+
+    /**
+     * The number of data sets.
+     */
+    @Param(
+    {
+        "100"
+    })
+    public int rows;
+
+    /**
+     * The time in milliseconds the fake browser needs to start.
+     */
+    @Param(
+    {
+        "0", "200"
+    })
+    public long newSessionLatency;
+
+    /**
+     * The time in milliseconds the fake browser needs per command.
+     */
+    @Param(
+    {
+        "0", "5"
+    })
+    public long commandLatency;
+
+    /**
+     * Whether browsers are reused across test methods.
+     */
+    @Param(
+    {
+        "false", "true"
+    })
+    public boolean pooling;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        SyntheticData.defineFakeProfiles(targets);
+
+        final StringBuilder browserDefinitions = new StringBuilder();
+        for (int i = 0; i < targets; i++)
+        {
+            browserDefinitions.append(i > 0 ? "," : "").append("f").append(i);
+        }
+
+        final File dataSetsFile = SyntheticData.writeDataSets(rows);
+
+        final XltProperties props = XltProperties.getInstance();
+        props.setProperty("browserdefinition", browserDefinitions.toString());
+        props.setProperty(FakeBrowserTestCase.class.getName() + ".dataSetsFile", dataSetsFile.getAbsolutePath());
+        props.setProperty(XltPropertyKey.FAKE_NEW_SESSION_LATENCY, Long.toString(newSessionLatency));
+        props.setProperty(XltPropertyKey.FAKE_COMMAND_LATENCY, Long.toString(commandLatency));
+        props.setProperty(XltPropertyKey.DRIVER_POOL_ENABLED, Boolean.toString(pooling));
+    }
+
+    /**
+     * Runs all test methods of the test class.
+     */
+    @Benchmark
+    public int run() throws Throwable
+    {
+        final int[] counts = new int[2];
+
+        final RunNotifier notifier = new RunNotifier();
+        notifier.addListener(new RunListener()
+        {
+            @Override
+            public void testFinished(final Description description)
+            {
+                synchronized (counts)
+                {
+                    counts[0]++;
+                }
+            }
+
+            @Override
+            public void testFailure(final Failure failure)
+            {
+                synchronized (counts)
+                {
+                    counts[1]++;
+                }
+            }
+        });
+
+        new AnnotationRunner(FakeBrowserTestCase.class).run(notifier);
+
+        if (counts[1] > 0)
+        {
+            throw new IllegalStateException(counts[1] + " of " + counts[0] + " test methods failed");
+        }
+
+        return counts[0];
+    }
+}
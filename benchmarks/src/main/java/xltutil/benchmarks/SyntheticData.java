@@ -0,0 +1,135 @@
+package xltutil.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+/**
+ * Creates the synthetic browser profiles and data set files the benchmarks run against.
+ */
+final class SyntheticData
+{
+    /**
+     * The browser types the synthetic profiles cycle through.
+     */
+    private static final String[] BROWSERS =
+    {
+        "chrome", "firefox", "edge", "chrome", "firefox"
+    };
+
+    /**
+     * Default constructor. Declared private to prevent external instantiation.
+     */
+    private SyntheticData()
+    {
+    }
+
+    /**
+     * Returns the browser tag of the profile with the given index.
+     *
+     * @param index
+     *            the profile index
+     * @return the browser tag
+     */
+    static String browserTag(final int index)
+    {
+        return "p" + index;
+    }
+
+    /**
+     * Returns the properties of a single synthetic browser profile, as seen by the browser configuration mapper.
+     *
+     * @param index
+     *            the profile index
+     * @return the profile properties
+     */
+    static Map<String, String> profileProperties(final int index)
+    {
+        final Map<String, String> properties = new HashMap<String, String>();
+        properties.put("browserTag", browserTag(index));
+        properties.put("name", "Profile " + index);
+        properties.put("browser", BROWSERS[index % BROWSERS.length]);
+        properties.put("browserResolution", (1000 + index % 500) + "x" + (700 + index % 300));
+        if (index % 4 == 0)
+        {
+            properties.put("testEnvironment", "grid" + index % 3);
+        }
+
+        return properties;
+    }
+
+    /**
+     * Defines the given number of synthetic browser profiles in the XLT properties, plus the test environments they
+     * refer to.
+     *
+     * @param profiles
+     *            the number of profiles
+     */
+    static void defineProfiles(final int profiles)
+    {
+        final XltProperties props = XltProperties.getInstance();
+        for (int i = 0; i < profiles; i++)
+        {
+            for (final Map.Entry<String, String> entry : profileProperties(i).entrySet())
+            {
+                if (!"browserTag".equals(entry.getKey()))
+                {
+                    props.setProperty("browserprofile." + browserTag(i) + "." + entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        for (int i = 0; i < 3; i++)
+        {
+            props.setProperty("browserprofile.testEnvironment.grid" + i + ".url", "http://grid" + i + ".example.com:4444/wd/hub");
+        }
+    }
+
+    /**
+     * Defines the given number of browser profiles that run against the fake WebDriver endpoint, tagged f0, f1, ...
+     *
+     * @param profiles
+     *            the number of profiles
+     */
+    static void defineFakeProfiles(final int profiles)
+    {
+        final XltProperties props = XltProperties.getInstance();
+        for (int i = 0; i < profiles; i++)
+        {
+            props.setProperty("browserprofile.f" + i + ".name", "Fake " + i);
+            props.setProperty("browserprofile.f" + i + ".browser", "fake");
+        }
+    }
+
+    /**
+     * Writes a CSV data set file with the given number of rows to a temporary file.
+     *
+     * @param rows
+     *            the number of data rows
+     * @return the file, which is deleted on JVM exit
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    static File writeDataSets(final int rows) throws IOException
+    {
+        final File file = File.createTempFile("benchmark_datasets", ".csv");
+        file.deleteOnExit();
+
+        try (final Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+        {
+            writer.write("id,sku,color,quantity,description\n");
+            for (int i = 0; i < rows; i++)
+            {
+                writer.write(i + "," + (100000 + i) + "," + (i % 2 == 0 ? "red" : "blue") + "," + i % 10 + ",\"product " + i + ", size M\"\n");
+            }
+        }
+
+        return file;
+    }
+}
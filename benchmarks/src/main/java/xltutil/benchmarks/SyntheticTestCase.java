@@ -0,0 +1,22 @@
+package xltutil.benchmarks;
+
+import org.junit.Test;
+
+import xltutil.AbstractAnnotatedWebDriverTestCase;
+import xltutil.annotation.TestTargets;
+
+/**
+ * A test case that targets the first ten synthetic browser profiles. Which of them are actually used is controlled by
+ * the <code>browserdefinition</code> property.
+ */
+@TestTargets(
+{
+    "p0", "p1", "p2", "p3", "p4", "p5", "p6", "p7", "p8", "p9"
+})
+public class SyntheticTestCase extends AbstractAnnotatedWebDriverTestCase
+{
+    @Test
+    public void test()
+    {
+    }
+}
@@ -0,0 +1,60 @@
+package xltutil.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xltutil.annotation.TestTargets;
+import xltutil.runner.helper.AnnotationRunnerHelper;
+
+/**
+ * Measures the lookup of the {@link TestTargets} annotation, which is done for each test class during suite discovery.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestTargetsBenchmark
+{
+    /**
+     * The annotation is found at the class itself.
+     */
+    @Benchmark
+    public List<TestTargets> getTestTargets_Direct()
+    {
+        return AnnotationRunnerHelper.getTestTargets(SyntheticTestCase.class);
+    }
+
+    /**
+     * The annotation has to be looked up in the super classes.
+     */
+    @Benchmark
+    public List<TestTargets> getTestTargets_Inherited()
+    {
+        return AnnotationRunnerHelper.getTestTargets(DeepTestCase.class);
+    }
+
+    static class Level1 extends SyntheticTestCase
+    {
+    }
+
+    static class Level2 extends Level1
+    {
+    }
+
+    static class Level3 extends Level2
+    {
+    }
+
+    static class DeepTestCase extends Level3
+    {
+    }
+}
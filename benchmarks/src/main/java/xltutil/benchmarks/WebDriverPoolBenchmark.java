@@ -0,0 +1,99 @@
+package xltutil.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.WebDriver;
+
+import xltutil.driver.WebDriverPool;
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.mapper.PropertiesToBrowserConfigurationMapper;
+
+/**
+ * Measures the bookkeeping overhead of leasing a driver from the pool and returning it, using fake drivers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class WebDriverPoolBenchmark
+{
+    /**
+     * The number of different browser profiles the drivers are pooled for.
+     */
+    @Param(
+    {
+        "1", "10", "100"
+    })
+    public int profiles;
+
+    private BrowserConfigurationDto[] configs;
+
+    private WebDriverPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        pool = new WebDriverPool(profiles * 4, TimeUnit.MINUTES.toMillis(10));
+
+        final PropertiesToBrowserConfigurationMapper mapper = new PropertiesToBrowserConfigurationMapper();
+        configs = new BrowserConfigurationDto[profiles];
+        for (int i = 0; i < profiles; i++)
+        {
+            configs[i] = mapper.toDto(SyntheticData.profileProperties(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Leases a driver, creating a fake one if the pool has none, and returns it to the pool.
+     */
+    @Benchmark
+    public void leaseAndRelease(final ThreadState threadState)
+    {
+        final BrowserConfigurationDto config = configs[threadState.next(configs.length)];
+
+        WebDriver driver = pool.lease(config);
+        if (driver == null)
+        {
+            driver = FakeWebDriver.create();
+        }
+
+        pool.release(config, driver);
+    }
+
+    /**
+     * Picks the browser profiles round-robin per thread.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState
+    {
+        private int counter;
+
+        int next(final int bound)
+        {
+            return counter++ % bound;
+        }
+    }
+}
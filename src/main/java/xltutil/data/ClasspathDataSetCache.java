@@ -0,0 +1,137 @@
+package xltutil.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.xceptance.xlt.api.data.DataSetProvider;
+import com.xceptance.xlt.engine.data.DataSetProviderFactory;
+
+/**
+ * JVM-wide cache of the data sets read from class path resources. Test classes that refer to the same data set resource
+ * share the parsed result. CSV resources are parsed right from the resource stream with the format settings of XLT's CSV
+ * data set provider, see {@link CsvDataSetReader}. Other formats, and CSV if these settings cannot be honored, are read
+ * by the XLT data set provider configured for the file extension, which requires a copy of the resource in a temporary
+ * file. CSV resources that are to be streamed do not get here, see {@link StreamingDataSetList}.
+ * <p>
+ * The data sets are cached in a compact {@link DataSetStore}, which hands out a new map for each data set access.
+ */
+public final class ClasspathDataSetCache
+{
+    /**
+     * The cached data sets mapped by resource URL.
+     */
+    private static final ConcurrentMap<String, List<Map<String, String>>> cache = new ConcurrentHashMap<String, List<Map<String, String>>>();
+
+    private ClasspathDataSetCache()
+    {
+    }
+
+    /**
+     * Returns the data sets contained in the given class path resource. The resource is read only on first access.
+     *
+     * @param resource
+     *            the resource URL
+     * @return the data sets
+     * @throws IOException
+     *             if the resource cannot be read
+     */
+    public static List<Map<String, String>> getDataSets(final URL resource) throws IOException
+    {
+        final String key = resource.toExternalForm();
+
+        List<Map<String, String>> dataSets = cache.get(key);
+        if (dataSets == null)
+        {
+            // concurrent readers may parse the resource twice, but only one result is kept
+            final List<Map<String, String>> newDataSets = readDataSets(resource);
+            dataSets = cache.putIfAbsent(key, newDataSets);
+            if (dataSets == null)
+            {
+                dataSets = newDataSets;
+            }
+        }
+
+        return dataSets;
+    }
+
+    /**
+     * Clears the cache.
+     */
+    public static void clear()
+    {
+        cache.clear();
+    }
+
+    /**
+     * Reads the data sets from the given resource.
+     *
+     * @param resource
+     *            the resource URL
+     * @return the data sets
+     * @throws IOException
+     *             if the resource cannot be read
+     */
+    private static List<Map<String, String>> readDataSets(final URL resource) throws IOException
+    {
+        final String extension = FilenameUtils.getExtension(resource.getPath());
+
+        if ("csv".equalsIgnoreCase(extension) && CsvDataSetReader.isCompatible())
+        {
+            try (final CsvDataSetReader reader = new CsvDataSetReader(new InputStreamReader(resource.openStream(), CsvDataSetReader.getCharset())))
+            {
+                return DataSetStore.read(reader);
+            }
+        }
+
+        return DataSetStore.of(readDataSetsViaTempFile(resource, extension));
+    }
+
+    /**
+     * Reads the data sets from the given resource using the XLT data set provider responsible for the file extension.
+     * As the providers can only read files, the resource is copied to a temporary file first.
+     *
+     * @param resource
+     *            the resource URL
+     * @param extension
+     *            the file extension of the resource
+     * @return the data sets
+     * @throws IOException
+     *             if the resource cannot be read
+     */
+    private static List<Map<String, String>> readDataSetsViaTempFile(final URL resource, final String extension) throws IOException
+    {
+        File batchDataFile = null;
+        try
+        {
+            // copy the stream to a temporary file
+            batchDataFile = File.createTempFile("dataSets_", "." + extension);
+            try (final InputStream input = resource.openStream(); final OutputStream output = new FileOutputStream(batchDataFile))
+            {
+                IOUtils.copy(input, output);
+            }
+
+            // read the data sets from the temporary file
+            final DataSetProvider dataSetProvider = DataSetProviderFactory.getInstance().createDataSetProvider(extension);
+
+            return dataSetProvider.getAllDataSets(batchDataFile);
+        }
+        finally
+        {
+            // clean up
+            FileUtils.deleteQuietly(batchDataFile);
+        }
+    }
+}
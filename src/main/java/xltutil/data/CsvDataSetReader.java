@@ -0,0 +1,343 @@
+package xltutil.data;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.xceptance.xlt.api.util.XltLogger;
+import com.xceptance.xlt.api.util.XltProperties;
+
+/**
+ * Reads test data sets from a CSV source one record at a time. The first record holds the column names, each following
+ * record is returned as a data set that maps column names to values. Fields may be enclosed in double quotes to contain
+ * separators, line breaks or (doubled) quotes. Empty lines and lines starting with <code>#</code> are skipped.
+ * <p>
+ * The format follows the CSV data set provider of XLT, including its settings for the field separator and the file
+ * encoding. Whether a configuration can be read this way at all is told by {@link #isCompatible()}. In contrast to the
+ * XLT data set providers, which always read the complete file, only the current record is held in memory.
+ */
+public class CsvDataSetReader implements Closeable
+{
+    /**
+     * The XLT property that replaces the data set provider for CSV files.
+     */
+    private static final String PROP_CSV_PROVIDER = "com.xceptance.xlt.data.dataSetProviders.csv";
+
+    /**
+     * The XLT property holding the field separator of CSV data set files.
+     */
+    private static final String PROP_CSV_SEPARATOR = PROP_CSV_PROVIDER + ".separator";
+
+    /**
+     * The XLT property holding the encoding of CSV data set files.
+     */
+    private static final String PROP_CSV_ENCODING = PROP_CSV_PROVIDER + ".encoding";
+
+    /**
+     * The default field separator.
+     */
+    private static final String DEFAULT_SEPARATOR = ",";
+
+    /**
+     * The quote character.
+     */
+    static final char QUOTE = '"';
+
+    /**
+     * The first character of a comment line.
+     */
+    static final char COMMENT = '#';
+
+    /**
+     * The underlying reader.
+     */
+    private final BufferedReader reader;
+
+    /**
+     * The field separator.
+     */
+    private final char separator;
+
+    /**
+     * The column names, or <code>null</code> if the header has not been read yet.
+     */
+    private String[] columnNames;
+
+    /**
+     * Constructor. Uses the field separator configured for XLT.
+     *
+     * @param reader
+     *            the reader to read the CSV data from
+     */
+    public CsvDataSetReader(final Reader reader)
+    {
+        this(reader, getSeparator(), null);
+    }
+
+    /**
+     * Constructor for a source that starts after the header, e.g. at a record found before.
+     *
+     * @param reader
+     *            the reader to read the CSV data from
+     * @param separator
+     *            the field separator
+     * @param columnNames
+     *            the column names, or <code>null</code> to read them from the source
+     */
+    CsvDataSetReader(final Reader reader, final char separator, final String[] columnNames)
+    {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.separator = separator;
+        this.columnNames = columnNames;
+    }
+
+    /**
+     * Checks whether CSV data set files, as configured for XLT, can be read by this class: the CSV data set provider of
+     * XLT has not been replaced, and the separator and encoding are valid. The encoding has to represent line breaks,
+     * quotes, comment marks and the separator as single ASCII bytes, like UTF-8 or ISO-8859-1 do, so that records can be
+     * located by byte offset.
+     *
+     * @return whether CSV data set files can be read by this class
+     */
+    public static boolean isCompatible()
+    {
+        final XltProperties props = XltProperties.getInstance();
+        if (StringUtils.isNotBlank(props.getProperty(PROP_CSV_PROVIDER, "")))
+        {
+            XltLogger.runTimeLogger.debug("Custom CSV data set provider configured");
+            return false;
+        }
+
+        final String separator = props.getProperty(PROP_CSV_SEPARATOR, DEFAULT_SEPARATOR);
+        if (separator.length() != 1)
+        {
+            XltLogger.runTimeLogger.debug("CSV separator is not a single character: " + separator);
+            return false;
+        }
+
+        final Charset charset;
+        try
+        {
+            charset = getCharset();
+        }
+        catch (final IllegalArgumentException e)
+        {
+            XltLogger.runTimeLogger.debug("Unsupported CSV encoding", e);
+            return false;
+        }
+
+        final String specialCharacters = "\r\n" + QUOTE + COMMENT + separator;
+
+        return Arrays.equals(specialCharacters.getBytes(charset), specialCharacters.getBytes(StandardCharsets.US_ASCII))
+               && StandardCharsets.US_ASCII.newEncoder().canEncode(specialCharacters);
+    }
+
+    /**
+     * Returns the field separator configured for XLT.
+     *
+     * @return the separator
+     */
+    static char getSeparator()
+    {
+        return XltProperties.getInstance().getProperty(PROP_CSV_SEPARATOR, DEFAULT_SEPARATOR).charAt(0);
+    }
+
+    /**
+     * Returns the encoding of CSV data set files configured for XLT.
+     *
+     * @return the encoding
+     * @throws IllegalArgumentException
+     *             if the encoding is not supported
+     */
+    public static Charset getCharset()
+    {
+        return Charset.forName(XltProperties.getInstance().getProperty(PROP_CSV_ENCODING, StandardCharsets.UTF_8.name()).trim());
+    }
+
+    /**
+     * Returns whether the given line starts a record, i.e. it is neither empty nor a comment.
+     *
+     * @param line
+     *            the line
+     * @return whether the line starts a record
+     */
+    static boolean isRecordStart(final String line)
+    {
+        return !line.trim().isEmpty() && line.charAt(0) != COMMENT;
+    }
+
+    /**
+     * Returns the column names.
+     *
+     * @return the column names, or <code>null</code> if the source is empty
+     * @throws IOException
+     *             if an I/O error occurred
+     */
+    public String[] getColumnNames() throws IOException
+    {
+        if (columnNames == null)
+        {
+            columnNames = readRecord();
+        }
+
+        return columnNames;
+    }
+
+    /**
+     * Reads the next data set.
+     *
+     * @return the data set, or <code>null</code> if there are no more data sets
+     * @throws IOException
+     *             if an I/O error occurred
+     */
+    public Map<String, String> readDataSet() throws IOException
+    {
+        final String[] values = readValues();
+        if (values == null)
+        {
+            return null;
+        }
+
+        final Map<String, String> dataSet = new LinkedHashMap<String, String>();
+        for (int i = 0; i < columnNames.length; i++)
+        {
+            dataSet.put(columnNames[i], values[i]);
+        }
+
+        return dataSet;
+    }
+
+    /**
+     * Reads the values of the next data set in column order. Missing trailing values are returned as empty strings.
+     *
+     * @return the values, or <code>null</code> if there are no more data sets
+     * @throws IOException
+     *             if an I/O error occurred
+     */
+    public String[] readValues() throws IOException
+    {
+        if (getColumnNames() == null)
+        {
+            return null;
+        }
+
+        final String[] record = readRecord();
+        if (record == null)
+        {
+            return null;
+        }
+
+        final String[] values = new String[columnNames.length];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = i < record.length ? record[i] : "";
+        }
+
+        return values;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
+    {
+        reader.close();
+    }
+
+    /**
+     * Reads and splits the next record, which may span multiple lines if a quoted field contains line breaks. Empty
+     * lines and comment lines before the record are skipped.
+     *
+     * @return the fields of the record, or <code>null</code> if the end of the source was reached
+     * @throws IOException
+     *             if an I/O error occurred or the last quoted field is not terminated
+     */
+    private String[] readRecord() throws IOException
+    {
+        String line = reader.readLine();
+        while (line != null && !isRecordStart(line))
+        {
+            line = reader.readLine();
+        }
+
+        if (line == null)
+        {
+            return null;
+        }
+
+        final List<String> fields = new ArrayList<String>();
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+
+        while (true)
+        {
+            if (i == line.length())
+            {
+                if (!quoted)
+                {
+                    fields.add(field.toString());
+                    break;
+                }
+
+                // quoted field continues on the next line
+                line = reader.readLine();
+                if (line == null)
+                {
+                    throw new IOException("Unterminated quoted field in CSV data");
+                }
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+
+            final char c = line.charAt(i++);
+            if (quoted)
+            {
+                if (c == QUOTE)
+                {
+                    if (i < line.length() && line.charAt(i) == QUOTE)
+                    {
+                        // escaped quote
+                        field.append(QUOTE);
+                        i++;
+                    }
+                    else
+                    {
+                        quoted = false;
+                    }
+                }
+                else
+                {
+                    field.append(c);
+                }
+            }
+            else if (c == QUOTE)
+            {
+                quoted = true;
+            }
+            else if (c == separator)
+            {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else
+            {
+                field.append(c);
+            }
+        }
+
+        return fields.toArray(new String[fields.size()]);
+    }
+}
@@ -0,0 +1,108 @@
+package xltutil.data;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * JVM-wide index of the files in the data set directories. Looking up candidate data set files for each test class
+ * would otherwise cost dozens of file system calls per class. Instead, each directory is listed only once, when it is
+ * looked into for the first time, and all further lookups are answered from memory.
+ * <p>
+ * If data set files are created or removed while the tests are running, the index can be switched off via
+ * {@link XltPropertyKey#DATA_SETS_FILE_INDEX_ENABLED}.
+ */
+public final class DataSetFileIndex
+{
+    /**
+     * Accepts regular files only.
+     */
+    private static final FileFilter FILES_ONLY = new FileFilter()
+    {
+        @Override
+        public boolean accept(final File file)
+        {
+            return file.isFile();
+        }
+    };
+
+    /**
+     * The names of the files in a directory mapped by directory path.
+     */
+    private static final ConcurrentMap<String, Set<String>> fileNamesByDirectory = new ConcurrentHashMap<String, Set<String>>();
+
+    private DataSetFileIndex()
+    {
+    }
+
+    /**
+     * Checks whether the given file exists and is a regular file.
+     *
+     * @param directory
+     *            the base directory
+     * @param fileName
+     *            the file name, possibly containing sub directories
+     * @return whether the file exists
+     */
+    public static boolean isFile(final File directory, final String fileName)
+    {
+        final File file = new File(directory, fileName);
+
+        if (!XltProperties.getInstance().getProperty(XltPropertyKey.DATA_SETS_FILE_INDEX_ENABLED, true))
+        {
+            return file.isFile();
+        }
+
+        return getFileNames(file.getParentFile()).contains(file.getName());
+    }
+
+    /**
+     * Clears the index.
+     */
+    public static void clear()
+    {
+        fileNamesByDirectory.clear();
+    }
+
+    /**
+     * Returns the names of the files in the given directory, listing the directory if not done before.
+     *
+     * @param directory
+     *            the directory
+     * @return the file names
+     */
+    private static Set<String> getFileNames(final File directory)
+    {
+        final String key = directory.getPath();
+
+        Set<String> fileNames = fileNamesByDirectory.get(key);
+        if (fileNames == null)
+        {
+            final File[] files = directory.listFiles(FILES_ONLY);
+            if (files == null || files.length == 0)
+            {
+                fileNames = Collections.emptySet();
+            }
+            else
+            {
+                fileNames = new HashSet<String>();
+                for (final File file : files)
+                {
+                    fileNames.add(file.getName());
+                }
+            }
+
+            fileNamesByDirectory.putIfAbsent(key, fileNames);
+        }
+
+        return fileNames;
+    }
+}
@@ -0,0 +1,240 @@
+package xltutil.data;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * A compact, column-oriented store of test data sets. Instead of one map per data set, the store holds one value array
+ * per column, and equal values within a column share the same string instance. Test methods refer to their data set by
+ * index only.
+ * <p>
+ * {@link #get(int)} returns a new, modifiable map for the data set, so tests may change their data set without affecting
+ * other tests.
+ */
+public class DataSetStore extends AbstractList<Map<String, String>> implements RandomAccess
+{
+    /**
+     * The column names.
+     */
+    private final String[] columnNames;
+
+    /**
+     * The values per column, indexed by data set. A value is <code>null</code> if the data set has no such column.
+     */
+    private final String[][] columns;
+
+    /**
+     * The number of data sets.
+     */
+    private final int size;
+
+    /**
+     * Constructor.
+     *
+     * @param columnNames
+     *            the column names
+     * @param columns
+     *            the values per column
+     * @param size
+     *            the number of data sets
+     */
+    private DataSetStore(final String[] columnNames, final String[][] columns, final int size)
+    {
+        this.columnNames = columnNames;
+        this.columns = columns;
+        this.size = size;
+    }
+
+    /**
+     * Creates a store holding the given data sets.
+     *
+     * @param dataSets
+     *            the data sets
+     * @return the store
+     */
+    public static DataSetStore of(final List<Map<String, String>> dataSets)
+    {
+        if (dataSets instanceof DataSetStore)
+        {
+            return (DataSetStore) dataSets;
+        }
+
+        // collect the column names in order of appearance
+        final Set<String> names = new LinkedHashSet<String>();
+        for (final Map<String, String> dataSet : dataSets)
+        {
+            names.addAll(dataSet.keySet());
+        }
+
+        final String[] columnNames = names.toArray(new String[names.size()]);
+        final String[][] columns = new String[columnNames.length][dataSets.size()];
+
+        for (int c = 0; c < columnNames.length; c++)
+        {
+            final Map<String, String> uniqueValues = new HashMap<String, String>();
+
+            int row = 0;
+            for (final Map<String, String> dataSet : dataSets)
+            {
+                columns[c][row++] = unique(uniqueValues, dataSet.get(columnNames[c]));
+            }
+        }
+
+        return new DataSetStore(columnNames, columns, dataSets.size());
+    }
+
+    /**
+     * Creates a store holding all data sets provided by the given reader.
+     *
+     * @param reader
+     *            the reader
+     * @return the store
+     * @throws IOException
+     *             if an I/O error occurred
+     */
+    public static DataSetStore read(final CsvDataSetReader reader) throws IOException
+    {
+        final String[] columnNames = reader.getColumnNames();
+        if (columnNames == null)
+        {
+            return new DataSetStore(new String[0], new String[0][], 0);
+        }
+
+        final List<Map<String, String>> uniqueValues = new ArrayList<Map<String, String>>();
+        final List<String[]> columnList = new ArrayList<String[]>();
+        for (int c = 0; c < columnNames.length; c++)
+        {
+            uniqueValues.add(new HashMap<String, String>());
+            columnList.add(new String[16]);
+        }
+
+        int size = 0;
+        for (String[] values = reader.readValues(); values != null; values = reader.readValues())
+        {
+            for (int c = 0; c < columnNames.length; c++)
+            {
+                String[] column = columnList.get(c);
+                if (size == column.length)
+                {
+                    column = Arrays.copyOf(column, column.length * 2);
+                    columnList.set(c, column);
+                }
+                column[size] = unique(uniqueValues.get(c), values[c]);
+            }
+            size++;
+        }
+
+        final String[][] columns = new String[columnNames.length][];
+        for (int c = 0; c < columnNames.length; c++)
+        {
+            columns[c] = Arrays.copyOf(columnList.get(c), size);
+        }
+
+        return new DataSetStore(columnNames, columns, size);
+    }
+
+    /**
+     * Returns the column names.
+     *
+     * @return the column names
+     */
+    public String[] getColumnNames()
+    {
+        return columnNames.clone();
+    }
+
+    /**
+     * Returns the value of the given column in the given data set.
+     *
+     * @param index
+     *            the data set index
+     * @param columnName
+     *            the column name
+     * @return the value, or <code>null</code> if there is no such column
+     */
+    public String getValue(final int index, final String columnName)
+    {
+        for (int c = 0; c < columnNames.length; c++)
+        {
+            if (columnNames[c].equals(columnName))
+            {
+                return columns[c][index];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns a new map holding the data set at the given index.
+     *
+     * @param index
+     *            the data set index
+     * @return the data set
+     */
+    @Override
+    public Map<String, String> get(final int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        final Map<String, String> dataSet = new LinkedHashMap<String, String>();
+        for (int c = 0; c < columnNames.length; c++)
+        {
+            final String value = columns[c][index];
+            if (value != null)
+            {
+                dataSet.put(columnNames[c], value);
+            }
+        }
+
+        return dataSet;
+    }
+
+    /**
+     * Returns the instance of the given value that is shared by all data sets in the same column.
+     *
+     * @param uniqueValues
+     *            the values seen so far in the column
+     * @param value
+     *            the value
+     * @return the shared value
+     */
+    private static String unique(final Map<String, String> uniqueValues, final String value)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+
+        final String existing = uniqueValues.get(value);
+        if (existing != null)
+        {
+            return existing;
+        }
+
+        uniqueValues.put(value, value);
+
+        return value;
+    }
+}
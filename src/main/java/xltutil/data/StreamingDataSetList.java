@@ -0,0 +1,286 @@
+package xltutil.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A read-only list of the data sets contained in a CSV file that keeps none of them in memory. Iterating the list reads
+ * the file incrementally, so each iteration re-reads the file.
+ * <p>
+ * The file is scanned once up front to count the data sets and to remember the byte offset of each of them, so random
+ * access via {@link #get(int)} reads a single data set only. The file is read with the settings of XLT's CSV data set
+ * provider, see {@link CsvDataSetReader}. Files that cannot be read this way must not be streamed, see
+ * {@link CsvDataSetReader#isCompatible()}.
+ */
+public class StreamingDataSetList extends AbstractList<Map<String, String>>
+{
+    /**
+     * The location of the CSV data.
+     */
+    private final URL url;
+
+    /**
+     * The encoding of the CSV data.
+     */
+    private final Charset charset;
+
+    /**
+     * The field separator.
+     */
+    private final char separator;
+
+    /**
+     * The column names, or <code>null</code> if the data is empty.
+     */
+    private final String[] columnNames;
+
+    /**
+     * The byte offset of each data set.
+     */
+    private final long[] offsets;
+
+    /**
+     * Constructor. Scans the data once to locate the data sets.
+     *
+     * @param url
+     *            the location of the CSV data
+     * @throws IOException
+     *             if the data cannot be read
+     */
+    public StreamingDataSetList(final URL url) throws IOException
+    {
+        this.url = url;
+        charset = CsvDataSetReader.getCharset();
+        separator = CsvDataSetReader.getSeparator();
+
+        StringBuilder header = null;
+        long[] recordOffsets = new long[64];
+        int count = 0;
+
+        try (final InputStream in = new BufferedInputStream(url.openStream()))
+        {
+            final ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long offset = 0;
+            boolean quoted = false;
+
+            while (true)
+            {
+                final long lineOffset = offset;
+                final boolean lastLine = !readLine(in, line);
+                offset += line.size() + (lastLine ? 0 : 1);
+
+                final String text = new String(line.toByteArray(), charset);
+                if (quoted ? count == 0 : CsvDataSetReader.isRecordStart(text))
+                {
+                    if (header == null || quoted)
+                    {
+                        // collect the header, which may span multiple lines as well
+                        header = header == null ? new StringBuilder(text) : header.append('\n').append(text);
+                    }
+                    else
+                    {
+                        if (count == recordOffsets.length)
+                        {
+                            recordOffsets = Arrays.copyOf(recordOffsets, 2 * count);
+                        }
+                        recordOffsets[count++] = lineOffset;
+                    }
+                }
+
+                // the parser enters and leaves quoted mode at each quote, and doubled quotes cancel out
+                quoted ^= StringUtils.countMatches(text, "\"") % 2 == 1;
+
+                if (lastLine)
+                {
+                    break;
+                }
+            }
+        }
+
+        if (quoted)
+        {
+            throw new IOException("Unterminated quoted field in CSV data: " + url);
+        }
+
+        // the header is parsed just like the data sets
+        columnNames = header == null ? null : new CsvDataSetReader(new StringReader(header.toString()), separator, null).getColumnNames();
+        offsets = Arrays.copyOf(recordOffsets, count);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return offsets.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> get(final int index)
+    {
+        if (index < 0 || index >= offsets.length)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + offsets.length);
+        }
+
+        try (final InputStream in = url.openStream())
+        {
+            skipFully(in, offsets[index]);
+
+            return new CsvDataSetReader(new InputStreamReader(in, charset), separator, columnNames).readDataSet();
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException("Failed to read data set " + index + " from " + url, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Map<String, String>> iterator()
+    {
+        return new DataSetIterator();
+    }
+
+    /**
+     * Reads the next line into the given buffer, without the line terminator. A carriage return before the line feed is
+     * kept, as it is part of the line for the byte offsets, and ignored when the line is checked.
+     *
+     * @param in
+     *            the input stream
+     * @param line
+     *            the buffer, which is cleared first
+     * @return <code>false</code> if the end of the stream was reached instead of a line feed
+     * @throws IOException
+     *             if an I/O error occurred
+     */
+    private static boolean readLine(final InputStream in, final ByteArrayOutputStream line) throws IOException
+    {
+        line.reset();
+
+        int b;
+        while ((b = in.read()) != -1)
+        {
+            if (b == '\n')
+            {
+                return true;
+            }
+            line.write(b);
+        }
+
+        return false;
+    }
+
+    /**
+     * Skips the given number of bytes.
+     *
+     * @param in
+     *            the input stream
+     * @param count
+     *            the number of bytes to skip
+     * @throws IOException
+     *             if an I/O error occurred or the stream ended before
+     */
+    private static void skipFully(final InputStream in, final long count) throws IOException
+    {
+        long remaining = count;
+        while (remaining > 0)
+        {
+            final long skipped = in.skip(remaining);
+            if (skipped <= 0)
+            {
+                if (in.read() == -1)
+                {
+                    throw new EOFException("Data set file is shorter than expected");
+                }
+                remaining--;
+            }
+            else
+            {
+                remaining -= skipped;
+            }
+        }
+    }
+
+    /**
+     * Iterates the data sets by reading the CSV data incrementally. The reader is opened on first access and closed once
+     * all data sets have been read.
+     */
+    private class DataSetIterator implements Iterator<Map<String, String>>
+    {
+        private CsvDataSetReader reader;
+
+        private Map<String, String> next;
+
+        private int returned;
+
+        @Override
+        public boolean hasNext()
+        {
+            if (next == null && returned < offsets.length)
+            {
+                try
+                {
+                    if (reader == null)
+                    {
+                        // start at the first data set, the header is known already
+                        final InputStream in = url.openStream();
+                        reader = new CsvDataSetReader(new InputStreamReader(in, charset), separator, columnNames);
+                        skipFully(in, offsets[0]);
+                    }
+
+                    next = reader.readDataSet();
+                }
+                catch (final IOException e)
+                {
+                    IOUtils.closeQuietly(reader);
+                    throw new UncheckedIOException("Failed to read data sets from " + url, e);
+                }
+
+                if (next == null || returned + 1 == offsets.length)
+                {
+                    IOUtils.closeQuietly(reader);
+                }
+            }
+
+            return next != null;
+        }
+
+        @Override
+        public Map<String, String> next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+
+            final Map<String, String> dataSet = next;
+            next = null;
+            returned++;
+
+            return dataSet;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package xltutil.driver;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.service.DriverService;
+
+import com.xceptance.xlt.api.util.XltLogger;
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Quits drivers in the background so that the next test does not have to wait for a slow browser or remote grid to
+ * shut down. Each quit is bounded by a timeout, which starts when the quit starts. If a driver does not quit in time,
+ * its driver server process is killed.
+ * <p>
+ * A quit that has timed out may still hang in socket I/O, which cannot be interrupted. The worker thread running it is
+ * given up and replaced by a new one, up to as many replacements as there are regular worker threads, so that hanging
+ * quits do not hold up the others.
+ * <p>
+ * Each runner uses its own instance to be able to wait for the drivers it has handed over, while the worker threads are
+ * shared by all instances.
+ */
+public class AsyncDriverTeardown
+{
+    /**
+     * The default time in milliseconds a driver is given to quit.
+     */
+    private static final long DEFAULT_TIMEOUT = 30000;
+
+    /**
+     * The number of regular worker threads.
+     */
+    private static final int threads = Math.max(1, XltProperties.getInstance().getProperty(XltPropertyKey.TEARDOWN_THREADS,
+                                                                                            Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * The threads that quit the drivers.
+     */
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                                                                              new LinkedBlockingQueue<Runnable>(),
+                                                                              new DaemonThreadFactory("DriverTeardown"));
+
+    /**
+     * The thread that enforces the timeouts.
+     */
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+        new DaemonThreadFactory("DriverTeardown-Watchdog"));
+
+    /**
+     * The number of worker threads hanging in a timed-out quit that have been replaced. Guarded by the class.
+     */
+    private static int replacedWorkers;
+
+    /**
+     * The quits that have not finished yet.
+     */
+    private final Set<Future<?>> pendingQuits = Collections.newSetFromMap(new ConcurrentHashMap<Future<?>, Boolean>());
+
+    /**
+     * The time in milliseconds a driver is given to quit.
+     */
+    private final long timeout;
+
+    /**
+     * Constructor.
+     *
+     * @param timeout
+     *            the time in milliseconds a driver is given to quit
+     */
+    public AsyncDriverTeardown(final long timeout)
+    {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns a new instance if asynchronous teardown is enabled.
+     *
+     * @return the new instance, or <code>null</code> if asynchronous teardown is disabled
+     */
+    public static AsyncDriverTeardown fromProperties()
+    {
+        final XltProperties props = XltProperties.getInstance();
+        if (props.getProperty(XltPropertyKey.TEARDOWN_ASYNC, false))
+        {
+            return new AsyncDriverTeardown(props.getProperty(XltPropertyKey.TEARDOWN_TIMEOUT, DEFAULT_TIMEOUT));
+        }
+
+        return null;
+    }
+
+    /**
+     * Quits the given driver in the background.
+     *
+     * @param driver
+     *            the driver
+     */
+    public void quit(final WebDriver driver)
+    {
+        final QuitTask quitTask = new QuitTask(driver);
+
+        pendingQuits.add(quitTask);
+        executor.execute(quitTask);
+    }
+
+    /**
+     * Waits until all drivers handed over to this instance have quit or have been killed.
+     */
+    public void awaitCompletion()
+    {
+        for (final Future<?> pendingQuit : pendingQuits)
+        {
+            try
+            {
+                pendingQuit.get();
+            }
+            catch (final CancellationException | ExecutionException e)
+            {
+                // timed out or failed, nothing left to wait for
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Kills the driver server process of the given driver. This is possible only for local drivers that started a driver
+     * server of their own. Sessions on a shared driver server or a remote grid are abandoned instead.
+     *
+     * @param driver
+     *            the driver
+     */
+    static void forceKill(final WebDriver driver)
+    {
+        final DriverService service = DriverServiceRegistry.getDedicatedService(driver);
+        if (service == null)
+        {
+            XltLogger.runTimeLogger.warn("Driver has no driver server of its own, abandoning its session");
+            return;
+        }
+
+        try
+        {
+            service.stop();
+        }
+        catch (final RuntimeException e)
+        {
+            XltLogger.runTimeLogger.warn("Failed to kill the driver server", e);
+        }
+    }
+
+    /**
+     * Gives up the worker thread hanging in the given timed-out quit and starts a replacement, unless the maximum
+     * number of replacements is reached.
+     *
+     * @param quitTask
+     *            the timed-out quit, already cancelled
+     */
+    private static synchronized void replaceWorker(final QuitTask quitTask)
+    {
+        if (replacedWorkers < threads)
+        {
+            replacedWorkers++;
+            quitTask.workerReplaced = true;
+
+            // grow the maximum first, it must never be below the core size
+            executor.setMaximumPoolSize(threads + replacedWorkers);
+            executor.setCorePoolSize(threads + replacedWorkers);
+        }
+        else
+        {
+            XltLogger.runTimeLogger.warn("Too many hanging driver quits, not replacing the worker thread");
+        }
+    }
+
+    /**
+     * Shrinks the pool again once the worker thread of a timed-out quit has returned after all.
+     *
+     * @param quitTask
+     *            the timed-out quit
+     */
+    private static synchronized void retireWorker(final QuitTask quitTask)
+    {
+        if (quitTask.workerReplaced)
+        {
+            replacedWorkers--;
+
+            // shrink the core size first, it must never exceed the maximum
+            executor.setCorePoolSize(threads + replacedWorkers);
+            executor.setMaximumPoolSize(threads + replacedWorkers);
+        }
+    }
+
+    /**
+     * Quits a driver. The timeout starts when the quit starts, not when it is queued, so quits waiting for a free worker
+     * thread are never killed.
+     */
+    private class QuitTask extends FutureTask<Void>
+    {
+        private final WebDriver driver;
+
+        /**
+         * Whether the worker thread running this quit has been replaced. Guarded by {@link AsyncDriverTeardown}.
+         */
+        private boolean workerReplaced;
+
+        private QuitTask(final WebDriver driver)
+        {
+            super(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        driver.quit();
+                    }
+                    catch (final WebDriverException e)
+                    {
+                        // WebDriver might already be closed
+                    }
+                    finally
+                    {
+                        // the watchdog may have released the permit already, releasing twice has no effect
+                        DriverAdmissionControl.releaseDriver(driver);
+                    }
+                }
+            }, null);
+
+            this.driver = driver;
+        }
+
+        @Override
+        public void run()
+        {
+            final ScheduledFuture<?> timeoutTask = watchdog.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    synchronized (AsyncDriverTeardown.class)
+                    {
+                        if (!QuitTask.this.cancel(true))
+                        {
+                            return;
+                        }
+
+                        // the interrupt does not end socket I/O, so the worker thread may hang for good
+                        replaceWorker(QuitTask.this);
+                    }
+
+                    XltLogger.runTimeLogger.warn("Driver did not quit within " + timeout + " ms, killing its driver server");
+                    forceKill(driver);
+
+                    // the hanging quit may never return, so do not wait for it to give back the permit
+                    DriverAdmissionControl.releaseDriver(driver);
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+
+            try
+            {
+                super.run();
+            }
+            finally
+            {
+                timeoutTask.cancel(false);
+
+                if (isCancelled())
+                {
+                    retireWorker(this);
+                }
+            }
+        }
+
+        @Override
+        protected void done()
+        {
+            pendingQuits.remove(this);
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so that hanging quits never keep the JVM alive.
+     */
+    static class DaemonThreadFactory implements ThreadFactory
+    {
+        private final String name;
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        DaemonThreadFactory(final String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable r)
+        {
+            final Thread thread = new Thread(r, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package xltutil.driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+
+import com.xceptance.xlt.api.util.XltLogger;
+
+/**
+ * The browser slots of a browser family that are shared by all JVMs on a machine. Each slot is a lock file in a common
+ * directory, and a JVM occupies a slot while it holds an exclusive lock on the file. The operating system releases the
+ * locks of a JVM that dies, so slots never leak.
+ */
+class BrowserSlots
+{
+    /**
+     * The directory holding the lock files.
+     */
+    private final File directory;
+
+    /**
+     * The name of the browser family, used as prefix of the lock file names.
+     */
+    private final String familyName;
+
+    /**
+     * The number of slots.
+     */
+    private final int count;
+
+    /**
+     * Constructor.
+     *
+     * @param directory
+     *            the directory holding the lock files
+     * @param familyName
+     *            the name of the browser family
+     * @param count
+     *            the number of slots
+     */
+    BrowserSlots(final File directory, final String familyName, final int count)
+    {
+        this.directory = directory;
+        this.familyName = familyName;
+        this.count = count;
+    }
+
+    /**
+     * Occupies a free slot, if any.
+     *
+     * @return the slot, or <code>null</code> if all slots are occupied
+     * @throws IOException
+     *             if a lock file cannot be created or locked
+     */
+    Slot tryAcquire() throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+        {
+            throw new IOException("Can not create lock directory: " + directory);
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            final FileChannel channel = FileChannel.open(new File(directory, familyName + "-" + i + ".lock").toPath(),
+                                                         StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = null;
+            try
+            {
+                lock = channel.tryLock();
+            }
+            catch (final OverlappingFileLockException e)
+            {
+                // occupied by this JVM already
+            }
+            finally
+            {
+                if (lock == null)
+                {
+                    channel.close();
+                }
+            }
+
+            if (lock != null)
+            {
+                return new Slot(lock);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * An occupied slot.
+     */
+    static class Slot
+    {
+        private final FileLock lock;
+
+        private Slot(final FileLock lock)
+        {
+            this.lock = lock;
+        }
+
+        /**
+         * Frees the slot.
+         */
+        void release()
+        {
+            try
+            {
+                // closing the channel releases the lock
+                lock.channel().close();
+            }
+            catch (final IOException e)
+            {
+                XltLogger.runTimeLogger.warn("Failed to release browser slot", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package xltutil.driver;
+
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Resets a browser to a clean state, so that it can be used for the next test instead of being quit and relaunched.
+ */
+public interface BrowserStateResetter
+{
+    /**
+     * Closes all but one window, clears cookies, web storage, and cache as far as supported, and navigates to a blank
+     * page.
+     *
+     * @param driver
+     *            the driver
+     * @return whether the driver could be reset; if not, the driver must not be used for another test
+     */
+    boolean reset(WebDriver driver);
+}
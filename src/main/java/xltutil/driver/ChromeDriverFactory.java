@@ -0,0 +1,149 @@
+package xltutil.driver;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.MutableCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import com.xceptance.xlt.api.util.XltProperties;
+import com.xceptance.xlt.api.webdriver.XltChromeDriver;
+
+import xltutil.driver.DriverServiceRegistry.DriverType;
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.dto.ProxyConfigurationDto;
+import xltutil.runner.helper.AnnotationRunnerHelper;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Creates local Chrome browsers. Subclasses may tune the created browsers, e.g. via DevTools commands, and replace this
+ * factory by registering themselves for the same browser names.
+ */
+public class ChromeDriverFactory implements DriverFactory
+{
+    private static final Collection<String> BROWSER_NAMES = Collections.unmodifiableList(Arrays.asList(BrowserType.CHROME,
+                                                                                                        "chrome_clientperformance",
+                                                                                                        BrowserType.GOOGLECHROME,
+                                                                                                        BrowserType.ANDROID));
+
+    /**
+     * The Chrome arguments that reduce the startup time and memory footprint of a browser used for testing.
+     */
+    private static final List<String> LOW_OVERHEAD_ARGUMENTS = Arrays.asList("--disable-extensions", "--no-first-run",
+                                                                             "--no-default-browser-check",
+                                                                             "--disable-background-networking", "--disable-default-apps",
+                                                                             "--disable-sync", "--disable-component-update",
+                                                                             "--disable-translate", "--disable-dev-shm-usage");
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getBrowserNames()
+    {
+        return BROWSER_NAMES;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFamily()
+    {
+        return "chrome";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DesiredCapabilities createCapabilities(final String browser)
+    {
+        return BrowserType.ANDROID.equals(browser) ? DesiredCapabilities.android() : DesiredCapabilities.chrome();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public MutableCapabilities createOptions(final BrowserConfigurationDto config, final DesiredCapabilities capabilities)
+    {
+        // do we have a custom path?
+        final String pathToBrowser = XltProperties.getInstance().getProperty(XltPropertyKey.CHROME_PATH);
+        final ChromeOptions options = new ChromeOptions();
+
+        // This is a workaround for a changed Selenium behavior
+        // Since device emulation is not part of the "standard" it now has to be considered as experimental option.
+        // The capability class already sorts the different configurations in different maps (one for capabilities and one for
+        // experimental capabilities). The experimental options are held internal within a map of the capability map and
+        // are accessible with key "goog:chromeOptions" (constant ChromeOptions.CAPABILITY). So all we have to do is to copy the
+        // keys and values of that special map and set it as experimental option inside ChromeOptions.
+        Map<String, String> experimentalOptions = null;
+        try
+        {
+            experimentalOptions = (Map<String, String>) capabilities.getCapability(ChromeOptions.CAPABILITY);
+            if (experimentalOptions != null)
+            {
+                for (Entry<String, String> entry : experimentalOptions.entrySet())
+                {
+                    options.setExperimentalOption(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            // unsure which case this can cover since only the type conversion can fail
+            // lets throw it as unchecked exception
+            // in case that makes no sense at all then just suppress it
+            throw new RuntimeException(e);
+        }
+
+        options.merge(capabilities);
+        if (StringUtils.isNotBlank(pathToBrowser))
+        {
+            options.setBinary(pathToBrowser);
+        }
+        if (config.isHeadless())
+        {
+            options.setHeadless(true);
+        }
+        if (config.isLowOverhead())
+        {
+            options.addArguments(LOW_OVERHEAD_ARGUMENTS);
+        }
+
+        return options;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebDriver createDriver(final BrowserConfigurationDto config, final ProxyConfigurationDto proxyConfig)
+    {
+        if (config.isClientperformanceEnabled())
+        {
+            // the XLT driver adds its own settings, so it gets options of its own
+            return new XltChromeDriver((ChromeOptions) AnnotationRunnerHelper.createBrowserOptions(config, proxyConfig));
+        }
+
+        // the drivers only read the options, so all sessions of a profile can share the same template
+        final Capabilities options = AnnotationRunnerHelper.getOptionsTemplate(config, proxyConfig);
+        if (DriverServiceRegistry.isEnabled())
+        {
+            return DriverServiceRegistry.createDriver(DriverType.CHROME, options);
+        }
+
+        return DriverServiceRegistry.createDedicatedDriver(DriverType.CHROME, options);
+    }
+}
@@ -0,0 +1,171 @@
+package xltutil.driver;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.CommandInfo;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.http.HttpMethod;
+
+import com.xceptance.xlt.api.util.XltLogger;
+
+/**
+ * Resets a local Chrome browser using DevTools commands sent through chromedriver. Unlike the standard WebDriver
+ * commands, these clear the cookies of all domains, the HTTP cache, and all storage of the current origin (local
+ * storage, IndexedDB, cache storage, service workers). Falls back to the generic reset if the DevTools commands are not
+ * available.
+ */
+public class ChromeStateResetter extends GenericStateResetter
+{
+    /**
+     * The name under which the chromedriver endpoint for DevTools commands is registered at the command executor.
+     */
+    private static final String EXECUTE_CDP_COMMAND = "executeCdpCommand";
+
+    /**
+     * The chromedriver endpoint for DevTools commands.
+     */
+    private static final CommandInfo EXECUTE_CDP_COMMAND_INFO = new CommandInfo("/session/:sessionId/goog/cdp/execute", HttpMethod.POST);
+
+    /**
+     * The method to register additional commands at a command executor, which is not exposed by Selenium.
+     */
+    private static final Method defineCommandMethod;
+
+    static
+    {
+        Method method = null;
+        try
+        {
+            method = HttpCommandExecutor.class.getDeclaredMethod("defineCommand", String.class, CommandInfo.class);
+            method.setAccessible(true);
+        }
+        catch (final ReflectiveOperationException | SecurityException e)
+        {
+            XltLogger.runTimeLogger.debug("DevTools commands are not available, Chrome is reset with WebDriver commands only", e);
+        }
+        defineCommandMethod = method;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void clearState(final WebDriver driver)
+    {
+        if (driver instanceof RemoteWebDriver)
+        {
+            try
+            {
+                clearBrowsingData((RemoteWebDriver) driver);
+                clearWebStorage(driver);
+                return;
+            }
+            catch (final IOException | ReflectiveOperationException | WebDriverException e)
+            {
+                XltLogger.runTimeLogger.debug("Failed to reset Chrome via DevTools, falling back to WebDriver commands", e);
+            }
+        }
+
+        super.clearState(driver);
+    }
+
+    /**
+     * Clears the storage of the current origin, all cookies, and the cache via DevTools commands.
+     *
+     * @param driver
+     *            the driver
+     * @throws IOException
+     *             if a command could not be sent
+     * @throws ReflectiveOperationException
+     *             if the DevTools endpoint could not be registered
+     */
+    private static void clearBrowsingData(final RemoteWebDriver driver) throws IOException, ReflectiveOperationException
+    {
+        final String origin = getOrigin(driver.getCurrentUrl());
+        if (origin != null)
+        {
+            final Map<String, Object> params = new HashMap<String, Object>();
+            params.put("origin", origin);
+            params.put("storageTypes", "all");
+
+            executeCdpCommand(driver, "Storage.clearDataForOrigin", params);
+        }
+
+        executeCdpCommand(driver, "Network.clearBrowserCookies", Collections.<String, Object>emptyMap());
+        executeCdpCommand(driver, "Network.clearBrowserCache", Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * Sends a DevTools command to the browser of the given driver.
+     *
+     * @param driver
+     *            the driver
+     * @param command
+     *            the DevTools command, e.g. "Network.clearBrowserCookies"
+     * @param params
+     *            the command parameters
+     * @throws IOException
+     *             if the command could not be sent
+     * @throws ReflectiveOperationException
+     *             if the DevTools endpoint could not be registered
+     */
+    private static void executeCdpCommand(final RemoteWebDriver driver, final String command, final Map<String, Object> params)
+        throws IOException, ReflectiveOperationException
+    {
+        final CommandExecutor commandExecutor = driver.getCommandExecutor();
+        if (defineCommandMethod == null || !(commandExecutor instanceof HttpCommandExecutor))
+        {
+            throw new WebDriverException("DevTools commands are not supported by this driver");
+        }
+
+        // registering the same command again does no harm
+        defineCommandMethod.invoke(commandExecutor, EXECUTE_CDP_COMMAND, EXECUTE_CDP_COMMAND_INFO);
+
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("cmd", command);
+        parameters.put("params", params);
+
+        final Response response = commandExecutor.execute(new Command(driver.getSessionId(), EXECUTE_CDP_COMMAND, parameters));
+        if (response.getStatus() != null && response.getStatus() != 0)
+        {
+            throw new WebDriverException("DevTools command " + command + " failed: " + response.getValue());
+        }
+    }
+
+    /**
+     * Returns the origin of the given URL.
+     *
+     * @param url
+     *            the URL
+     * @return the origin, or <code>null</code> if the URL has no origin, e.g. "about:blank"
+     */
+    private static String getOrigin(final String url)
+    {
+        try
+        {
+            final URL parsedUrl = new URL(url);
+            if (!"http".equals(parsedUrl.getProtocol()) && !"https".equals(parsedUrl.getProtocol()))
+            {
+                return null;
+            }
+
+            return parsedUrl.getProtocol() + "://" + parsedUrl.getHost() + (parsedUrl.getPort() < 0 ? "" : ":" + parsedUrl.getPort());
+        }
+        catch (final MalformedURLException e)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,495 @@
+package xltutil.driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openqa.selenium.WebDriver;
+
+import com.xceptance.xlt.api.util.XltLogger;
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Limits the number of local browsers that are alive at the same time, separately per browser family (chrome, firefox,
+ * ...). A permit is taken before a local browser is launched and given back when the browser has quit. Requests that
+ * exceed the limit are queued in arrival order and keep their place while waiting. Meanwhile, idle browsers in the
+ * {@link WebDriverPool} are quit in the background to make room.
+ * <p>
+ * The limit of a family is either configured explicitly or derived from the number of processors and the physical
+ * memory not reserved for the JVM heap, whichever allows fewer browsers.
+ * <p>
+ * By default, the limit applies per JVM only. If several JVMs share a machine, e.g. forked test JVMs, they can share
+ * the limit via a common lock directory, see {@link XltPropertyKey#ADMISSION_LOCK_DIRECTORY}. A browser then also needs
+ * one of the slots represented by the lock files, see {@link BrowserSlots}. All JVMs must use the same limits.
+ * <p>
+ * The admission control is opt-in, see {@link XltPropertyKey#ADMISSION_ENABLED}.
+ */
+public class DriverAdmissionControl
+{
+    /**
+     * The default memory in MB a single browser is expected to need.
+     */
+    private static final long DEFAULT_MEMORY_PER_BROWSER = 512;
+
+    /**
+     * The time in milliseconds to wait for a permit before idle pooled browsers are evicted again.
+     */
+    private static final long EVICTION_INTERVAL = 1000;
+
+    /**
+     * The thread that evicts idle pooled browsers on behalf of the waiting requests.
+     */
+    private static final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(
+        new AsyncDriverTeardown.DaemonThreadFactory("DriverAdmission-Evictor"));
+
+    /**
+     * The process-wide instance, if any.
+     */
+    private static DriverAdmissionControl instance;
+
+    /**
+     * The browser families mapped by name.
+     */
+    private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<String, Family>();
+
+    /**
+     * The permits held by the browsers. Guarded by itself.
+     */
+    private final Map<WebDriver, Admission> admittedDrivers = new IdentityHashMap<WebDriver, Admission>();
+
+    /**
+     * The limit of families without an explicit limit.
+     */
+    private final int defaultLimit;
+
+    /**
+     * The directory of the lock files shared with other JVMs, or <code>null</code> if the limits apply to this JVM
+     * only.
+     */
+    private final File lockDirectory;
+
+    /**
+     * Constructor.
+     *
+     * @param defaultLimit
+     *            the maximum number of browsers per family unless configured otherwise for a family
+     */
+    public DriverAdmissionControl(final int defaultLimit)
+    {
+        this(defaultLimit, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param defaultLimit
+     *            the maximum number of browsers per family unless configured otherwise for a family
+     * @param lockDirectory
+     *            the directory of the lock files shared with other JVMs, or <code>null</code> to limit the browsers
+     *            of this JVM only
+     */
+    public DriverAdmissionControl(final int defaultLimit, final File lockDirectory)
+    {
+        this.defaultLimit = Math.max(1, defaultLimit);
+        this.lockDirectory = lockDirectory;
+    }
+
+    /**
+     * Returns the process-wide admission control.
+     *
+     * @return the admission control, or <code>null</code> if admission control is disabled
+     */
+    public static synchronized DriverAdmissionControl getInstance()
+    {
+        if (instance == null)
+        {
+            final XltProperties props = XltProperties.getInstance();
+            if (props.getProperty(XltPropertyKey.ADMISSION_ENABLED, false))
+            {
+                final long memoryPerBrowser = props.getProperty(XltPropertyKey.ADMISSION_MEMORY_PER_BROWSER, DEFAULT_MEMORY_PER_BROWSER);
+                final int limit = props.getProperty(XltPropertyKey.ADMISSION_MAX_BROWSERS, deriveLimit(memoryPerBrowser * 1024 * 1024));
+
+                final String lockDirectory = props.getProperty(XltPropertyKey.ADMISSION_LOCK_DIRECTORY, "");
+
+                instance = new DriverAdmissionControl(limit, StringUtils.isBlank(lockDirectory) ? null : new File(lockDirectory.trim()));
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Discards the process-wide admission control, so that the next call to {@link #getInstance()} reads the settings
+     * again. Browsers admitted before keep their permits until they quit.
+     */
+    static synchronized void invalidate()
+    {
+        instance = null;
+    }
+
+    /**
+     * Gives back the permit held by the given browser, if admission control is enabled. To be called once the browser
+     * has quit or is abandoned.
+     *
+     * @param driver
+     *            the driver
+     */
+    public static void releaseDriver(final WebDriver driver)
+    {
+        final DriverAdmissionControl admissionControl = getInstance();
+        if (admissionControl != null)
+        {
+            admissionControl.release(driver);
+        }
+    }
+
+    /**
+     * Logs the limits and waits of the process-wide admission control, if there is one.
+     */
+    public static void logStatisticsInstance()
+    {
+        final DriverAdmissionControl admissionControl;
+        synchronized (DriverAdmissionControl.class)
+        {
+            admissionControl = instance;
+        }
+
+        if (admissionControl != null)
+        {
+            admissionControl.logStatistics();
+        }
+    }
+
+    /**
+     * Waits until a browser of the given family may be launched. Every successful call must be followed by either
+     * {@link #admitted(WebDriver, String)} or {@link #cancel(String)}.
+     *
+     * @param familyName
+     *            the browser family
+     * @throws InterruptedException
+     *             if the thread was interrupted while waiting
+     */
+    public void acquire(final String familyName) throws InterruptedException
+    {
+        final Family family = getFamily(familyName);
+        final long startTime = System.nanoTime();
+        boolean waited = false;
+
+        // a timed try respects the fairness of the semaphore, unlike the plain one
+        if (!family.semaphore.tryAcquire(0, TimeUnit.MILLISECONDS))
+        {
+            waited = true;
+
+            // idle pooled browsers hold permits as well, so make room for the waiting request; the request itself
+            // waits only once, so it never loses its place in the queue
+            final ScheduledFuture<?> eviction = evictor.scheduleWithFixedDelay(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    evictIdleDriver();
+                }
+            }, 0, EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+            try
+            {
+                family.semaphore.acquire();
+            }
+            finally
+            {
+                eviction.cancel(false);
+            }
+        }
+
+        if (family.slots != null)
+        {
+            try
+            {
+                waited |= acquireSlot(family);
+            }
+            catch (final InterruptedException e)
+            {
+                family.semaphore.release();
+                throw e;
+            }
+        }
+
+        final long waitTime = waited ? (System.nanoTime() - startTime) / 1000000 : 0;
+        family.recordAdmission(waited, waitTime);
+
+        if (waited)
+        {
+            XltLogger.runTimeLogger.debug("Waited " + waitTime + " ms to launch a browser of family: " + familyName);
+        }
+    }
+
+    /**
+     * Occupies one of the slots shared with other JVMs for the given family, waiting until one is free. If the lock
+     * files cannot be used, the browser is admitted without a slot.
+     *
+     * @param family
+     *            the family
+     * @return whether it was necessary to wait
+     * @throws InterruptedException
+     *             if the thread was interrupted while waiting
+     */
+    private boolean acquireSlot(final Family family) throws InterruptedException
+    {
+        try
+        {
+            BrowserSlots.Slot slot = family.slots.tryAcquire();
+            final boolean waited = slot == null;
+            while (slot == null)
+            {
+                // the other JVMs hold the remaining slots, make room in this JVM at least
+                evictIdleDriver();
+                Thread.sleep(EVICTION_INTERVAL);
+
+                slot = family.slots.tryAcquire();
+            }
+
+            family.addUnassignedSlot(slot);
+
+            return waited;
+        }
+        catch (final IOException e)
+        {
+            XltLogger.runTimeLogger.warn("Failed to take a browser slot shared with other JVMs, admitting the browser anyway", e);
+            return false;
+        }
+    }
+
+    /**
+     * Assigns the permit taken by {@link #acquire(String)} to the launched browser.
+     *
+     * @param driver
+     *            the driver
+     * @param familyName
+     *            the browser family
+     */
+    public void admitted(final WebDriver driver, final String familyName)
+    {
+        final Family family = getFamily(familyName);
+        final Admission admission = new Admission(family, family.pollUnassignedSlot());
+
+        synchronized (admittedDrivers)
+        {
+            admittedDrivers.put(driver, admission);
+        }
+    }
+
+    /**
+     * Gives back the permit taken by {@link #acquire(String)} if the browser could not be launched.
+     *
+     * @param familyName
+     *            the browser family
+     */
+    public void cancel(final String familyName)
+    {
+        final Family family = getFamily(familyName);
+        family.release(family.pollUnassignedSlot());
+    }
+
+    /**
+     * Gives back the permit held by the given browser. Calling this more than once for a browser or for a browser
+     * without a permit has no effect.
+     *
+     * @param driver
+     *            the driver
+     */
+    public void release(final WebDriver driver)
+    {
+        final Admission admission;
+        synchronized (admittedDrivers)
+        {
+            admission = admittedDrivers.remove(driver);
+        }
+
+        if (admission != null)
+        {
+            admission.family.release(admission.slot);
+        }
+    }
+
+    /**
+     * Logs, per browser family, the limit, the number of launched browsers, and how long they had to wait.
+     */
+    public void logStatistics()
+    {
+        if (families.isEmpty())
+        {
+            return;
+        }
+
+        final StringBuilder sb = new StringBuilder("Browser admission:");
+        sb.append(String.format("%n%-12s %8s %8s %8s %12s %12s", "Family", "Limit", "Admitted", "Waited", "MeanWait[ms]", "MaxWait[ms]"));
+        for (final Family family : new TreeMap<String, Family>(families).values())
+        {
+            synchronized (family)
+            {
+                sb.append(String.format("%n%-12s %8d %8d %8d %12d %12d", family.name, family.limit, family.admissions, family.waits,
+                                        family.waits == 0 ? 0 : family.totalWaitTime / family.waits, family.maxWaitTime));
+            }
+        }
+
+        XltLogger.runTimeLogger.info(sb.toString());
+    }
+
+    /**
+     * Returns the family with the given name, creating it on first use.
+     *
+     * @param familyName
+     *            the name of the family
+     * @return the family
+     */
+    private Family getFamily(final String familyName)
+    {
+        Family family = families.get(familyName);
+        if (family == null)
+        {
+            final int limit = XltProperties.getInstance().getProperty(XltPropertyKey.ADMISSION_MAX_BROWSERS + "." + familyName, defaultLimit);
+
+            final Family newFamily = new Family(familyName, Math.max(1, limit), lockDirectory);
+            family = families.putIfAbsent(familyName, newFamily);
+            if (family == null)
+            {
+                family = newFamily;
+            }
+        }
+
+        return family;
+    }
+
+    /**
+     * Quits one idle browser of the process-wide pool, if any, to give back its permit.
+     */
+    private static void evictIdleDriver()
+    {
+        final WebDriverPool driverPool = WebDriverPool.getInstance();
+        if (driverPool != null)
+        {
+            driverPool.evictIdleDriver();
+        }
+    }
+
+    /**
+     * Returns the number of browsers this machine can run at the same time, limited by the number of processors and the
+     * physical memory not reserved for the JVM heap.
+     *
+     * @param memoryPerBrowser
+     *            the memory in bytes a single browser is expected to need
+     * @return the number of browsers, at least 1
+     */
+    static int deriveLimit(final long memoryPerBrowser)
+    {
+        int limit = Runtime.getRuntime().availableProcessors();
+
+        final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean && memoryPerBrowser > 0)
+        {
+            final long physicalMemory = ((com.sun.management.OperatingSystemMXBean) osBean).getTotalPhysicalMemorySize();
+            final long availableMemory = physicalMemory - Runtime.getRuntime().maxMemory();
+
+            limit = (int) Math.min(limit, availableMemory / memoryPerBrowser);
+        }
+
+        return Math.max(1, limit);
+    }
+
+    /**
+     * The permits and statistics of a browser family.
+     */
+    private static class Family
+    {
+        private final String name;
+
+        private final int limit;
+
+        private final Semaphore semaphore;
+
+        private final BrowserSlots slots;
+
+        private final Deque<BrowserSlots.Slot> unassignedSlots = new ArrayDeque<BrowserSlots.Slot>();
+
+        private long admissions;
+
+        private long waits;
+
+        private long totalWaitTime;
+
+        private long maxWaitTime;
+
+        private Family(final String name, final int limit, final File lockDirectory)
+        {
+            this.name = name;
+            this.limit = limit;
+            this.semaphore = new Semaphore(limit, true);
+            this.slots = lockDirectory == null ? null : new BrowserSlots(lockDirectory, name, limit);
+        }
+
+        /**
+         * Keeps a slot taken by {@link DriverAdmissionControl#acquire(String)} until the browser has been launched. The
+         * slots are interchangeable, so it does not matter which launch takes which slot.
+         */
+        private synchronized void addUnassignedSlot(final BrowserSlots.Slot slot)
+        {
+            unassignedSlots.add(slot);
+        }
+
+        private synchronized BrowserSlots.Slot pollUnassignedSlot()
+        {
+            return unassignedSlots.poll();
+        }
+
+        private void release(final BrowserSlots.Slot slot)
+        {
+            if (slot != null)
+            {
+                slot.release();
+            }
+            semaphore.release();
+        }
+
+        private synchronized void recordAdmission(final boolean waited, final long waitTime)
+        {
+            admissions++;
+            if (waited)
+            {
+                waits++;
+                totalWaitTime += waitTime;
+                maxWaitTime = Math.max(maxWaitTime, waitTime);
+            }
+        }
+    }
+
+    /**
+     * The permit held by an admitted browser.
+     */
+    private static class Admission
+    {
+        private final Family family;
+
+        private final BrowserSlots.Slot slot;
+
+        private Admission(final Family family, final BrowserSlots.Slot slot)
+        {
+            this.family = family;
+            this.slot = slot;
+        }
+    }
+}
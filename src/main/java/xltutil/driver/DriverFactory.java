@@ -0,0 +1,79 @@
+package xltutil.driver;
+
+import java.net.MalformedURLException;
+import java.util.Collection;
+
+import org.openqa.selenium.MutableCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.dto.ProxyConfigurationDto;
+
+/**
+ * Creates the {@link WebDriver} for a browser profile. When a profile is parsed, the factory for the value of its
+ * property <code>browserprofile.&lt;tag&gt;.browser</code> provides the capabilities, and the factory for the
+ * resulting browser name is bound to the profile, see {@link DriverFactoryRegistry}. Creating a driver is then a
+ * single call on the bound factory.
+ * <p>
+ * Custom factories are registered via {@link java.util.ServiceLoader}, i.e. listed in
+ * <code>META-INF/services/xltutil.driver.DriverFactory</code>, and replace the built-in factories for the names they
+ * declare. Implementations must be thread-safe and have a public no-argument constructor.
+ */
+public interface DriverFactory
+{
+    /**
+     * Returns the browser names this factory is responsible for: the values of the profile property
+     * <code>browser</code> it provides capabilities for, and the browser names of the capabilities it creates drivers
+     * for. Names are case-insensitive.
+     *
+     * @return the browser names
+     */
+    public Collection<String> getBrowserNames();
+
+    /**
+     * Returns the browser family, which groups the browsers that share a limit of the admission control.
+     *
+     * @return the browser family, e.g. "chrome"
+     */
+    public String getFamily();
+
+    /**
+     * Creates the initial capabilities of a profile with the given value of the profile property <code>browser</code>.
+     * Called once per profile when the profile is parsed.
+     *
+     * @param browser
+     *            the value of the profile property, in lower case
+     * @return the capabilities
+     */
+    public DesiredCapabilities createCapabilities(String browser);
+
+    /**
+     * Creates the browser specific options for a local browser of the given configuration. The default implementation
+     * returns the given capabilities unchanged.
+     *
+     * @param config
+     *            the browser configuration
+     * @param capabilities
+     *            a copy of the capabilities of the configuration that already includes the proxy settings, may be
+     *            modified or returned
+     * @return the options
+     */
+    public default MutableCapabilities createOptions(final BrowserConfigurationDto config, final DesiredCapabilities capabilities)
+    {
+        return capabilities;
+    }
+
+    /**
+     * Creates a new driver for the given browser configuration.
+     *
+     * @param config
+     *            the browser configuration
+     * @param proxyConfig
+     *            the proxy configuration, may be <code>null</code>
+     * @return the driver, or <code>null</code> if the browser is not supported here
+     * @throws MalformedURLException
+     *             if a URL in the configuration is invalid
+     */
+    public WebDriver createDriver(BrowserConfigurationDto config, ProxyConfigurationDto proxyConfig) throws MalformedURLException;
+}
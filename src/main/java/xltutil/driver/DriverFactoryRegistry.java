@@ -0,0 +1,162 @@
+package xltutil.driver;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.xceptance.xlt.api.util.XltLogger;
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.runner.helper.AnnotationRunnerHelper;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Looks up the {@link DriverFactory} for a browser name. The factories are, in increasing order of precedence:
+ * <ol>
+ * <li>the built-in factories for the supported browsers, the remote grid, and the fake browser,</li>
+ * <li>the factories registered via {@link ServiceLoader}, which replace the built-in ones for the names they
+ * declare,</li>
+ * <li>the factories configured by class name, e.g.
+ * <code>xlt.multiBrowser.driverFactory.mybrowser = com.example.MyDriverFactory</code>.</li>
+ * </ol>
+ * Lookups happen when the browser profiles are parsed only, see {@link #bind(BrowserConfigurationDto)}.
+ */
+public final class DriverFactoryRegistry
+{
+    /**
+     * The name of the factory that creates the sessions of all profiles with a test environment.
+     */
+    public static final String REMOTE = "remote";
+
+    /**
+     * The built-in and service-loaded factories mapped by lower-case browser name.
+     */
+    private static final Map<String, DriverFactory> registeredFactories = new HashMap<String, DriverFactory>();
+
+    /**
+     * The factories that have been looked up, mapped by lower-case browser name.
+     */
+    private static final ConcurrentMap<String, DriverFactory> factories = new ConcurrentHashMap<String, DriverFactory>();
+
+    /**
+     * The lower-case browser names that have been looked up without finding a factory.
+     */
+    private static final Set<String> unknownBrowserNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    static
+    {
+        register(new ChromeDriverFactory());
+        register(new FirefoxDriverFactory());
+        register(new EdgeDriverFactory());
+        register(new OperaDriverFactory());
+        register(new SafariDriverFactory());
+        register(new InternetExplorerDriverFactory());
+        register(new PhantomJSDriverFactory());
+        register(new MobileDriverFactory());
+        register(new GridDriverFactory());
+        register(new FakeDriverFactory());
+
+        for (final DriverFactory factory : ServiceLoader.load(DriverFactory.class))
+        {
+            register(factory);
+            XltLogger.runTimeLogger.info("Registered driver factory " + factory.getClass().getName() + " for: " + factory.getBrowserNames());
+        }
+    }
+
+    private DriverFactoryRegistry()
+    {
+    }
+
+    /**
+     * Returns the factory for the given browser name.
+     *
+     * @param browserName
+     *            the browser name, case-insensitive
+     * @return the factory, or <code>null</code> if there is no factory for this name
+     */
+    public static DriverFactory getFactory(final String browserName)
+    {
+        if (StringUtils.isBlank(browserName))
+        {
+            return null;
+        }
+
+        final String key = browserName.trim().toLowerCase();
+
+        DriverFactory factory = factories.get(key);
+        if (factory == null && !unknownBrowserNames.contains(key))
+        {
+            final String className = XltProperties.getInstance().getProperty(XltPropertyKey.DRIVER_FACTORY + "." + key, "");
+            factory = StringUtils.isNotBlank(className) ? createFactory(className.trim()) : registeredFactories.get(key);
+
+            if (factory == null)
+            {
+                unknownBrowserNames.add(key);
+            }
+            else
+            {
+                final DriverFactory knownFactory = factories.putIfAbsent(key, factory);
+                if (knownFactory != null)
+                {
+                    factory = knownFactory;
+                }
+            }
+        }
+
+        return factory;
+    }
+
+    /**
+     * Returns the factory that creates the drivers of the given browser configuration: the factory for the browser
+     * name of its capabilities for a local browser, or the factory named {@link #REMOTE} for a browser in a test
+     * environment.
+     *
+     * @param config
+     *            the browser configuration
+     * @return the factory, or <code>null</code> if the browser is not supported
+     */
+    public static DriverFactory bind(final BrowserConfigurationDto config)
+    {
+        return getFactory(AnnotationRunnerHelper.isLocal(config) ? config.getCapabilities().getBrowserName() : REMOTE);
+    }
+
+    /**
+     * Registers the given factory for all its browser names, replacing any factory registered before for these names.
+     *
+     * @param factory
+     *            the factory
+     */
+    private static void register(final DriverFactory factory)
+    {
+        for (final String browserName : factory.getBrowserNames())
+        {
+            registeredFactories.put(browserName.toLowerCase(), factory);
+        }
+    }
+
+    /**
+     * Creates the factory with the given class name.
+     *
+     * @param className
+     *            the class name
+     * @return the factory
+     */
+    private static DriverFactory createFactory(final String className)
+    {
+        try
+        {
+            return (DriverFactory) Class.forName(className).newInstance();
+        }
+        catch (final ReflectiveOperationException | ClassCastException e)
+        {
+            throw new IllegalArgumentException("Can not create driver factory: " + className, e);
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package xltutil.driver;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import com.xceptance.xlt.api.util.XltLogger;
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.driver.AsyncDriverTeardown.DaemonThreadFactory;
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.dto.ProxyConfigurationDto;
+import xltutil.runner.helper.AnnotationRunnerHelper;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Starts browsers in the background ahead of the tests that will need them, so that browser startup is not on the
+ * critical path of a test anymore. The prefetcher walks the browser configurations of the upcoming tests in schedule
+ * order and keeps up to a configured number of browsers launching or waiting. A test takes the oldest waiting browser
+ * for its configuration, which in turn triggers the launch of the next one. A waiting browser that is passed over by as
+ * many takes as there are tests running at the same time is not going to be taken anymore, e.g. because its test has
+ * been skipped, and is disposed of, so that it does not hold a lookahead slot and an admission permit forever.
+ * <p>
+ * The number of browsers launched concurrently is limited by the number of prefetch threads. Additionally, no further
+ * browser is launched if the free physical memory of the machine falls below a configured threshold, or if the CPU load
+ * of the machine exceeds a configured maximum, as a launching browser competes with the running tests for both.
+ * <p>
+ * The prefetcher is opt-in, see {@link XltPropertyKey#PREFETCH_DEPTH}.
+ */
+public class DriverPrefetcher
+{
+    /**
+     * The browsers launching or waiting, in schedule order. Guarded by <code>this</code>.
+     */
+    private final List<PrefetchedDriver> pendingDrivers = new ArrayList<PrefetchedDriver>();
+
+    /**
+     * The browser configurations of the upcoming tests. Guarded by <code>this</code>.
+     */
+    private final Iterator<BrowserConfigurationDto> upcomingConfigurations;
+
+    /**
+     * The proxy configuration to use for new browsers.
+     */
+    private final ProxyConfigurationDto proxyConfig;
+
+    /**
+     * The maximum number of browsers launching or waiting.
+     */
+    private final int depth;
+
+    /**
+     * The number of tests running at the same time.
+     */
+    private final int concurrency;
+
+    /**
+     * The minimum free physical memory in bytes required to launch another browser.
+     */
+    private final long minFreeMemory;
+
+    /**
+     * The maximum system CPU load in percent at which another browser is launched.
+     */
+    private final int maxCpuLoad;
+
+    /**
+     * The threads that launch the browsers.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Whether this prefetcher has been shut down. Guarded by <code>this</code>.
+     */
+    private boolean shutdown;
+
+    /**
+     * The sequence number of the next browser to launch. Guarded by <code>this</code>.
+     */
+    private long nextSequenceNumber;
+
+    /**
+     * Constructor.
+     *
+     * @param upcomingConfigurations
+     *            the browser configurations of the upcoming tests, in schedule order
+     * @param proxyConfig
+     *            the proxy configuration to use for new browsers, may be <code>null</code>
+     * @param depth
+     *            the maximum number of browsers launching or waiting
+     * @param concurrency
+     *            the number of tests running at the same time
+     * @param threads
+     *            the maximum number of browsers launched concurrently
+     * @param minFreeMemory
+     *            the minimum free physical memory in bytes required to launch another browser, or 0 for no limit
+     * @param maxCpuLoad
+     *            the maximum system CPU load in percent at which another browser is launched, or 0 for no limit
+     */
+    public DriverPrefetcher(final Iterator<BrowserConfigurationDto> upcomingConfigurations, final ProxyConfigurationDto proxyConfig,
+                            final int depth, final int concurrency, final int threads, final long minFreeMemory, final int maxCpuLoad)
+    {
+        this.upcomingConfigurations = upcomingConfigurations;
+        this.proxyConfig = proxyConfig;
+        this.depth = depth;
+        this.concurrency = Math.max(1, concurrency);
+        this.minFreeMemory = minFreeMemory;
+        this.maxCpuLoad = maxCpuLoad;
+
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), new DaemonThreadFactory("DriverPrefetcher"));
+    }
+
+    /**
+     * Returns a new prefetcher for the given browser configurations if prefetching is enabled.
+     *
+     * @param upcomingConfigurations
+     *            the browser configurations of the upcoming tests, in schedule order
+     * @param proxyConfig
+     *            the proxy configuration to use for new browsers, may be <code>null</code>
+     * @param concurrency
+     *            the number of tests running at the same time
+     * @return the new prefetcher, or <code>null</code> if prefetching is disabled
+     */
+    public static DriverPrefetcher fromProperties(final Iterator<BrowserConfigurationDto> upcomingConfigurations,
+                                                  final ProxyConfigurationDto proxyConfig, final int concurrency)
+    {
+        final XltProperties props = XltProperties.getInstance();
+
+        final int depth = props.getProperty(XltPropertyKey.PREFETCH_DEPTH, 0);
+        if (depth <= 0)
+        {
+            return null;
+        }
+
+        final int threads = props.getProperty(XltPropertyKey.PREFETCH_THREADS, 1);
+        final long minFreeMemory = props.getProperty(XltPropertyKey.PREFETCH_MIN_FREE_MEMORY, 0L) * 1024 * 1024;
+        final int maxCpuLoad = props.getProperty(XltPropertyKey.PREFETCH_MAX_CPU_LOAD, 0);
+
+        return new DriverPrefetcher(upcomingConfigurations, proxyConfig, depth, concurrency, threads, minFreeMemory, maxCpuLoad);
+    }
+
+    /**
+     * Starts launching the browsers for the first upcoming tests.
+     */
+    public synchronized void start()
+    {
+        fill();
+    }
+
+    /**
+     * Takes the oldest prefetched browser for the given configuration and starts launching the next browser. Waits if
+     * the browser is still launching. Older browsers for other configurations that have been passed over too often are
+     * disposed of.
+     *
+     * @param config
+     *            the browser configuration
+     * @return the browser, or <code>null</code> if there is none for this configuration or it could not be launched
+     */
+    public WebDriver take(final BrowserConfigurationDto config)
+    {
+        PrefetchedDriver prefetchedDriver = null;
+        final List<PrefetchedDriver> staleDrivers = new ArrayList<PrefetchedDriver>();
+        synchronized (this)
+        {
+            for (final Iterator<PrefetchedDriver> it = pendingDrivers.iterator(); it.hasNext();)
+            {
+                final PrefetchedDriver candidate = it.next();
+                if (candidate.config == config)
+                {
+                    it.remove();
+                    prefetchedDriver = candidate;
+                    break;
+                }
+            }
+
+            if (prefetchedDriver != null)
+            {
+                // the browsers before the taken one belong to earlier tests, which are running already or have been
+                // skipped
+                for (final Iterator<PrefetchedDriver> it = pendingDrivers.iterator(); it.hasNext();)
+                {
+                    final PrefetchedDriver candidate = it.next();
+                    if (candidate.sequenceNumber > prefetchedDriver.sequenceNumber)
+                    {
+                        break;
+                    }
+
+                    if (++candidate.passedOver >= concurrency)
+                    {
+                        it.remove();
+                        staleDrivers.add(candidate);
+                    }
+                }
+            }
+
+            fill();
+        }
+
+        for (final PrefetchedDriver staleDriver : staleDrivers)
+        {
+            XltLogger.runTimeLogger.debug("Disposing of prefetched browser not taken for browser tag: " + staleDriver.config.getConfigTag());
+            disposeInBackground(staleDriver);
+        }
+
+        if (prefetchedDriver == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return prefetchedDriver.driver.get();
+        }
+        catch (final ExecutionException e)
+        {
+            // let the caller create the browser the regular way, which reports the failure properly
+            XltLogger.runTimeLogger.warn("Failed to prefetch browser for browser tag: " + config.getConfigTag(), e.getCause());
+            return null;
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Stops prefetching and disposes all browsers that have not been taken. Browsers that are still launching are
+     * waited for.
+     *
+     * @param teardown
+     *            the teardown to hand the browsers over to, or <code>null</code> to quit them synchronously
+     */
+    public void shutdown(final AsyncDriverTeardown teardown)
+    {
+        final List<PrefetchedDriver> unusedDrivers;
+        synchronized (this)
+        {
+            shutdown = true;
+            unusedDrivers = new ArrayList<PrefetchedDriver>(pendingDrivers);
+            pendingDrivers.clear();
+        }
+
+        executor.shutdown();
+
+        for (final PrefetchedDriver unusedDriver : unusedDrivers)
+        {
+            final WebDriver driver;
+            try
+            {
+                driver = unusedDriver.driver.get();
+            }
+            catch (final ExecutionException | CancellationException e)
+            {
+                continue;
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            dispose(driver, teardown);
+        }
+    }
+
+    /**
+     * Disposes of the given browser that has not been taken without blocking the caller. A browser that has not started
+     * launching yet is not launched at all.
+     *
+     * @param prefetchedDriver
+     *            the browser
+     */
+    private void disposeInBackground(final PrefetchedDriver prefetchedDriver)
+    {
+        if (prefetchedDriver.driver.cancel(false))
+        {
+            return;
+        }
+
+        final Runnable disposal = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    dispose(prefetchedDriver.driver.get(), null);
+                }
+                catch (final ExecutionException | CancellationException e)
+                {
+                    // nothing was launched
+                }
+                catch (final InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        try
+        {
+            // the launch was submitted before, so it is not queued behind this task
+            executor.execute(disposal);
+        }
+        catch (final RejectedExecutionException e)
+        {
+            // shut down in the meantime
+            disposal.run();
+        }
+    }
+
+    /**
+     * Quits the given browser and gives back its admission permit.
+     *
+     * @param driver
+     *            the browser, may be <code>null</code>
+     * @param teardown
+     *            the teardown to hand the browser over to, or <code>null</code> to quit it synchronously
+     */
+    private static void dispose(final WebDriver driver, final AsyncDriverTeardown teardown)
+    {
+        if (driver == null)
+        {
+            return;
+        }
+
+        if (teardown != null)
+        {
+            teardown.quit(driver);
+        }
+        else
+        {
+            try
+            {
+                driver.quit();
+            }
+            catch (final WebDriverException e)
+            {
+                // WebDriver might already be closed
+            }
+            finally
+            {
+                DriverAdmissionControl.releaseDriver(driver);
+            }
+        }
+    }
+
+    /**
+     * Starts launching browsers for the upcoming tests until the lookahead depth, the memory limit or the CPU limit is
+     * reached. Must be called with the lock held.
+     */
+    private void fill()
+    {
+        while (!shutdown && pendingDrivers.size() < depth && upcomingConfigurations.hasNext() && hasEnoughMemory() && hasCpuHeadroom())
+        {
+            final BrowserConfigurationDto config = upcomingConfigurations.next();
+            final Future<WebDriver> driver = executor.submit(new Callable<WebDriver>()
+            {
+                @Override
+                public WebDriver call() throws Exception
+                {
+                    return AnnotationRunnerHelper.createWebdriver(config, proxyConfig);
+                }
+            });
+
+            pendingDrivers.add(new PrefetchedDriver(config, driver, nextSequenceNumber++));
+        }
+    }
+
+    /**
+     * Returns whether the machine has enough free physical memory left to launch another browser.
+     *
+     * @return <code>true</code> if there is enough memory or the free memory cannot be determined
+     */
+    private boolean hasEnoughMemory()
+    {
+        if (minFreeMemory <= 0)
+        {
+            return true;
+        }
+
+        final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean)
+        {
+            return ((com.sun.management.OperatingSystemMXBean) osBean).getFreePhysicalMemorySize() >= minFreeMemory;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns whether the CPU load of the machine leaves room to launch another browser.
+     *
+     * @return <code>true</code> if the load is low enough or cannot be determined
+     */
+    private boolean hasCpuHeadroom()
+    {
+        if (maxCpuLoad <= 0)
+        {
+            return true;
+        }
+
+        final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean)
+        {
+            // negative if not available (yet)
+            final double cpuLoad = ((com.sun.management.OperatingSystemMXBean) osBean).getSystemCpuLoad();
+
+            return cpuLoad < 0 || cpuLoad * 100 <= maxCpuLoad;
+        }
+
+        return true;
+    }
+
+    /**
+     * A browser launching or waiting for a test with a certain browser configuration.
+     */
+    private static class PrefetchedDriver
+    {
+        private final BrowserConfigurationDto config;
+
+        private final Future<WebDriver> driver;
+
+        private final long sequenceNumber;
+
+        private int passedOver;
+
+        private PrefetchedDriver(final BrowserConfigurationDto config, final Future<WebDriver> driver, final long sequenceNumber)
+        {
+            this.config = config;
+            this.driver = driver;
+            this.sequenceNumber = sequenceNumber;
+        }
+    }
+}
@@ -0,0 +1,701 @@
+package xltutil.driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.edge.EdgeDriver;
+import org.openqa.selenium.edge.EdgeDriverService;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.remote.service.DriverService;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import com.xceptance.xlt.api.util.XltLogger;
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Keeps one long-lived driver server process (chromedriver, geckodriver, or the Edge driver) per driver type, so that
+ * creating a new browser session does not have to start a new driver server each time. The driver executables are
+ * looked up the same way as for regular local drivers, i.e. via the <code>xlt.webDriver.*.pathToDriverServer</code>
+ * settings.
+ * <p>
+ * Sessions are created as the same typed drivers as without a shared service, e.g. {@link ChromeDriver}, but talk to
+ * the running service. The shared services ignore the stop request sent when a session quits, so quitting a session
+ * ends the browser only, while the service keeps running until the runner stops all services when the JVM exits, after
+ * the pooled browsers have been quit. Before each session is created, the service is checked. It is restarted if its
+ * process has died or refuses connections, or if it has failed several checks in a row; a single slow answer does not
+ * suffice. A replaced service is not stopped under running sessions, but keeps running until its last session has quit.
+ * <p>
+ * The registry is opt-in, see {@link XltPropertyKey#DRIVER_SERVICE_SHARED}. Without it, each session gets a driver
+ * service of its own, which the registry remembers as well, so that a session that does not quit can be ended by
+ * stopping its service, see {@link #getDedicatedService(WebDriver)}.
+ */
+public final class DriverServiceRegistry
+{
+    /**
+     * The driver types that can be served by a shared driver service.
+     */
+    public enum DriverType
+    {
+        CHROME, FIREFOX, EDGE
+    }
+
+    /**
+     * The result of checking a service.
+     */
+    enum Health
+    {
+        /** The service answers status requests. */
+        HEALTHY,
+
+        /** The service did not answer in time or failed to answer, which may be temporary. */
+        UNHEALTHY,
+
+        /** The service process has died or refuses connections. */
+        DEAD
+    }
+
+    /**
+     * The running services mapped by driver type. Guarded by the class.
+     */
+    private static final Map<DriverType, DriverService> services = new HashMap<DriverType, DriverService>();
+
+    /**
+     * The number of failed checks in a row per driver type. Guarded by the class.
+     */
+    private static final Map<DriverType, Integer> failedChecks = new HashMap<DriverType, Integer>();
+
+    /**
+     * The replaced services that may still serve sessions. Guarded by the class.
+     */
+    private static final Set<DriverService> retiredServices = new HashSet<DriverService>();
+
+    /**
+     * The number of failed checks in a row after which a service that still accepts connections is restarted.
+     */
+    private static final int MAX_FAILED_CHECKS = 3;
+
+    /**
+     * The services started for a single session, mapped by the session's driver. The entries go away with the drivers.
+     */
+    private static final Map<WebDriver, DriverService> dedicatedServices = Collections.synchronizedMap(new WeakHashMap<WebDriver, DriverService>());
+
+    /**
+     * The time in milliseconds a service is given to answer a status request.
+     */
+    private static final int HEALTH_CHECK_TIMEOUT = 5000;
+
+    /**
+     * Default constructor. Declared private to prevent external instantiation.
+     */
+    private DriverServiceRegistry()
+    {
+    }
+
+    /**
+     * Returns whether sessions for local browsers are to be created against a shared driver service.
+     *
+     * @return <code>true</code> if driver services are shared, <code>false</code> otherwise
+     */
+    public static boolean isEnabled()
+    {
+        return XltProperties.getInstance().getProperty(XltPropertyKey.DRIVER_SERVICE_SHARED, false);
+    }
+
+    /**
+     * Creates a new browser session against the shared driver service of the given type. If the service has died, or
+     * has failed too many checks in a row, it is restarted first.
+     *
+     * @param type
+     *            the driver type
+     * @param options
+     *            the browser options
+     * @return the new driver
+     */
+    public static WebDriver createDriver(final DriverType type, final Capabilities options)
+    {
+        final SharedService service = leaseService(type);
+        try
+        {
+            return newDriver(type, (DriverService) service, options);
+        }
+        catch (final RuntimeException e)
+        {
+            service.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the service of the given type to create a session against, after checking it, and counts the session
+     * for it right away, so that the service cannot be stopped before the session has been created.
+     *
+     * @param type
+     *            the driver type
+     * @return the service
+     */
+    private static SharedService leaseService(final DriverType type)
+    {
+        final DriverService service = getService(type);
+
+        // do not block other threads while waiting for the answer
+        final Health health = check(service);
+
+        synchronized (DriverServiceRegistry.class)
+        {
+            if (health == Health.HEALTHY)
+            {
+                failedChecks.remove(type);
+            }
+            else
+            {
+                final Integer previousFailures = failedChecks.get(type);
+                final int failures = previousFailures == null ? 1 : previousFailures + 1;
+                failedChecks.put(type, failures);
+
+                if (health == Health.DEAD || failures >= MAX_FAILED_CHECKS)
+                {
+                    XltLogger.runTimeLogger.warn("Driver service for " + type + " does not respond (" + health + ", " + failures
+                                                 + " failed checks in a row), restarting it");
+                    restartService(type, service);
+                }
+                else
+                {
+                    XltLogger.runTimeLogger.warn("Driver service for " + type + " did not answer the status request (" + failures + " of "
+                                                 + MAX_FAILED_CHECKS + " failed checks), using it anyway");
+                }
+            }
+
+            // the service may have been restarted by this or another thread
+            final SharedService current = (SharedService) getService(type);
+            current.acquire();
+
+            return current;
+        }
+    }
+
+    /**
+     * Creates a new browser session of the given type with a driver service of its own, which is stopped when the
+     * session quits.
+     *
+     * @param type
+     *            the driver type
+     * @param options
+     *            the browser options
+     * @return the new driver
+     */
+    public static WebDriver createDedicatedDriver(final DriverType type, final Capabilities options)
+    {
+        final DriverService service;
+        switch (type)
+        {
+            case CHROME:
+                service = ChromeDriverService.createDefaultService();
+                break;
+            case FIREFOX:
+                service = GeckoDriverService.createDefaultService();
+                break;
+            case EDGE:
+                service = EdgeDriverService.createDefaultService();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported driver type: " + type);
+        }
+
+        final WebDriver driver = newDriver(type, service, options);
+        dedicatedServices.put(driver, service);
+
+        return driver;
+    }
+
+    /**
+     * Returns the driver service the given session was created with, if the service serves this session only.
+     *
+     * @param driver
+     *            the driver
+     * @return the service, or <code>null</code> if the session was not created via
+     *         {@link #createDedicatedDriver(DriverType, Capabilities)}
+     */
+    public static DriverService getDedicatedService(final WebDriver driver)
+    {
+        return dedicatedServices.get(driver);
+    }
+
+    /**
+     * Creates a new browser session of the given type against the given service.
+     *
+     * @param type
+     *            the driver type
+     * @param service
+     *            the driver service
+     * @param options
+     *            the browser options
+     * @return the new driver
+     */
+    private static WebDriver newDriver(final DriverType type, final DriverService service, final Capabilities options)
+    {
+        switch (type)
+        {
+            case CHROME:
+                return new ChromeDriver((ChromeDriverService) service, options);
+            case FIREFOX:
+                return new FirefoxDriver((GeckoDriverService) service, new FirefoxOptions(options));
+            case EDGE:
+                return new EdgeDriver((EdgeDriverService) service, options);
+            default:
+                throw new IllegalArgumentException("Unsupported driver type: " + type);
+        }
+    }
+
+    /**
+     * Checks whether the given service is alive and answers status requests. Creating a session takes far longer than
+     * this check.
+     *
+     * @param service
+     *            the service
+     * @return the result of the check
+     */
+    static Health check(final DriverService service)
+    {
+        if (!service.isRunning())
+        {
+            return Health.DEAD;
+        }
+
+        try
+        {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(service.getUrl(), "/status").openConnection();
+            connection.setConnectTimeout(HEALTH_CHECK_TIMEOUT);
+            connection.setReadTimeout(HEALTH_CHECK_TIMEOUT);
+            try
+            {
+                return connection.getResponseCode() == HttpURLConnection.HTTP_OK ? Health.HEALTHY : Health.UNHEALTHY;
+            }
+            finally
+            {
+                connection.disconnect();
+            }
+        }
+        catch (final ConnectException e)
+        {
+            return Health.DEAD;
+        }
+        catch (final IOException e)
+        {
+            // most likely a timeout, the service may just be busy
+            return Health.UNHEALTHY;
+        }
+    }
+
+    /**
+     * Returns the running service of the given type, starting it if necessary.
+     *
+     * @param type
+     *            the driver type
+     * @return the running service
+     */
+    static synchronized DriverService getService(final DriverType type)
+    {
+        final DriverService service = services.get(type);
+        if (service != null && service.isRunning())
+        {
+            return service;
+        }
+
+        return restartService(type, service);
+    }
+
+    /**
+     * Replaces the given service, if it is still the current one, by a new one. The replaced service keeps running
+     * until its last session has quit.
+     *
+     * @param type
+     *            the driver type
+     * @param deadService
+     *            the service to replace, may be <code>null</code>
+     * @return the new running service
+     */
+    static synchronized DriverService restartService(final DriverType type, final DriverService deadService)
+    {
+        final DriverService current = services.get(type);
+        if (current != deadService && current != null && current.isRunning())
+        {
+            // another thread has restarted the service already
+            return current;
+        }
+
+        failedChecks.remove(type);
+        for (final Iterator<DriverService> it = retiredServices.iterator(); it.hasNext();)
+        {
+            if (!it.next().isRunning())
+            {
+                it.remove();
+            }
+        }
+
+        if (current != null)
+        {
+            retiredServices.add(current);
+            ((SharedService) current).retire();
+        }
+
+        final DriverService service = createService(type);
+        try
+        {
+            service.start();
+        }
+        catch (final IOException e)
+        {
+            throw new WebDriverException("Failed to start the driver service for " + type, e);
+        }
+
+        services.put(type, service);
+
+        return service;
+    }
+
+    /**
+     * Stops all services, including replaced ones that still serve sessions. A service will be started again when it is
+     * needed next time.
+     */
+    public static synchronized void stopAll()
+    {
+        for (final DriverService service : services.values())
+        {
+            stopQuietly(service);
+        }
+        for (final DriverService service : retiredServices)
+        {
+            stopQuietly(service);
+        }
+        services.clear();
+        retiredServices.clear();
+        failedChecks.clear();
+    }
+
+    /**
+     * Creates a new, not yet started service of the given type. The driver executable is taken from the corresponding
+     * system property, which the runner sets from the XLT settings.
+     *
+     * @param type
+     *            the driver type
+     * @return the service
+     */
+    private static DriverService createService(final DriverType type)
+    {
+        switch (type)
+        {
+            case CHROME:
+                return new ChromeDriverService.Builder()
+                {
+                    @Override
+                    protected ChromeDriverService createDriverService(final File exe, final int port, final ImmutableList<String> args,
+                                                                      final ImmutableMap<String, String> environment)
+                    {
+                        try
+                        {
+                            return new SharedChromeDriverService(exe, port, args, environment);
+                        }
+                        catch (final IOException e)
+                        {
+                            throw new WebDriverException(e);
+                        }
+                    }
+                }.usingAnyFreePort().build();
+            case FIREFOX:
+                return new GeckoDriverService.Builder()
+                {
+                    @Override
+                    protected GeckoDriverService createDriverService(final File exe, final int port, final ImmutableList<String> args,
+                                                                     final ImmutableMap<String, String> environment)
+                    {
+                        try
+                        {
+                            return new SharedGeckoDriverService(exe, port, args, environment);
+                        }
+                        catch (final IOException e)
+                        {
+                            throw new WebDriverException(e);
+                        }
+                    }
+                }.usingAnyFreePort().build();
+            case EDGE:
+                return new EdgeDriverService.Builder()
+                {
+                    @Override
+                    protected EdgeDriverService createDriverService(final File exe, final int port, final ImmutableList<String> args,
+                                                                    final ImmutableMap<String, String> environment)
+                    {
+                        try
+                        {
+                            return new SharedEdgeDriverService(exe, port, args, environment);
+                        }
+                        catch (final IOException e)
+                        {
+                            throw new WebDriverException(e);
+                        }
+                    }
+                }.usingAnyFreePort().build();
+            default:
+                throw new IllegalArgumentException("Unsupported driver type: " + type);
+        }
+    }
+
+    /**
+     * Stops the given service and ignores any error.
+     *
+     * @param service
+     *            the service
+     */
+    private static void stopQuietly(final DriverService service)
+    {
+        try
+        {
+            ((SharedService) service).shutdown();
+        }
+        catch (final RuntimeException e)
+        {
+            XltLogger.runTimeLogger.warn("Failed to stop driver service", e);
+        }
+    }
+
+    /**
+     * A driver service that keeps running when a session quits and is stopped by the registry only. Selenium calls
+     * {@link DriverService#stop()} whenever a session quits, which releases the session instead.
+     */
+    interface SharedService
+    {
+        /**
+         * Counts a new session, before it is created.
+         */
+        void acquire();
+
+        /**
+         * Counts a session as ended. Stops a retired service once it has no sessions anymore.
+         */
+        void release();
+
+        /**
+         * Marks the service as replaced. Stops it right away if it has no sessions, or else once its last session has
+         * ended.
+         */
+        void retire();
+
+        /**
+         * Stops the service right away.
+         */
+        void shutdown();
+    }
+
+    /**
+     * Counts the sessions of a shared service and tells when a retired service is to be stopped.
+     */
+    private static class SessionCounter
+    {
+        private int sessions;
+
+        private boolean retired;
+
+        private synchronized void acquire()
+        {
+            sessions++;
+        }
+
+        /**
+         * @return whether the service is to be stopped now
+         */
+        private synchronized boolean release()
+        {
+            // never drop below zero, e.g. if a failed quit is repeated
+            sessions = Math.max(0, sessions - 1);
+
+            return retired && sessions == 0;
+        }
+
+        /**
+         * @return whether the service is to be stopped now
+         */
+        private synchronized boolean retire()
+        {
+            retired = true;
+
+            return sessions == 0;
+        }
+    }
+
+    /**
+     * The shared chromedriver service.
+     */
+    private static class SharedChromeDriverService extends ChromeDriverService implements SharedService
+    {
+        private final SessionCounter sessions = new SessionCounter();
+
+        private SharedChromeDriverService(final File exe, final int port, final ImmutableList<String> args,
+            final ImmutableMap<String, String> environment)
+            throws IOException
+        {
+            super(exe, port, args, environment);
+        }
+
+        @Override
+        public void stop()
+        {
+            // called whenever a session quits, keep running for the next session
+            release();
+        }
+
+        @Override
+        public void acquire()
+        {
+            sessions.acquire();
+        }
+
+        @Override
+        public void release()
+        {
+            if (sessions.release())
+            {
+                super.stop();
+            }
+        }
+
+        @Override
+        public void retire()
+        {
+            if (sessions.retire())
+            {
+                super.stop();
+            }
+        }
+
+        @Override
+        public void shutdown()
+        {
+            super.stop();
+        }
+    }
+
+    /**
+     * The shared geckodriver service.
+     */
+    private static class SharedGeckoDriverService extends GeckoDriverService implements SharedService
+    {
+        private final SessionCounter sessions = new SessionCounter();
+
+        private SharedGeckoDriverService(final File exe, final int port, final ImmutableList<String> args,
+            final ImmutableMap<String, String> environment)
+            throws IOException
+        {
+            super(exe, port, args, environment);
+        }
+
+        @Override
+        public void stop()
+        {
+            // called whenever a session quits, keep running for the next session
+            release();
+        }
+
+        @Override
+        public void acquire()
+        {
+            sessions.acquire();
+        }
+
+        @Override
+        public void release()
+        {
+            if (sessions.release())
+            {
+                super.stop();
+            }
+        }
+
+        @Override
+        public void retire()
+        {
+            if (sessions.retire())
+            {
+                super.stop();
+            }
+        }
+
+        @Override
+        public void shutdown()
+        {
+            super.stop();
+        }
+    }
+
+    /**
+     * The shared Edge driver service.
+     */
+    private static class SharedEdgeDriverService extends EdgeDriverService implements SharedService
+    {
+        private final SessionCounter sessions = new SessionCounter();
+
+        private SharedEdgeDriverService(final File exe, final int port, final ImmutableList<String> args,
+            final ImmutableMap<String, String> environment)
+            throws IOException
+        {
+            super(exe, port, args, environment);
+        }
+
+        @Override
+        public void stop()
+        {
+            // called whenever a session quits, keep running for the next session
+            release();
+        }
+
+        @Override
+        public void acquire()
+        {
+            sessions.acquire();
+        }
+
+        @Override
+        public void release()
+        {
+            if (sessions.release())
+            {
+                super.stop();
+            }
+        }
+
+        @Override
+        public void retire()
+        {
+            if (sessions.retire())
+            {
+                super.stop();
+            }
+        }
+
+        @Override
+        public void shutdown()
+        {
+            super.stop();
+        }
+    }
+}
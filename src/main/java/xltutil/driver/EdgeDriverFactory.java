@@ -0,0 +1,80 @@
+package xltutil.driver;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.MutableCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.edge.EdgeOptions;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import xltutil.driver.DriverServiceRegistry.DriverType;
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.dto.ProxyConfigurationDto;
+import xltutil.runner.helper.AnnotationRunnerHelper;
+
+/**
+ * Creates local Edge browsers.
+ */
+public class EdgeDriverFactory implements DriverFactory
+{
+    private static final Collection<String> BROWSER_NAMES = Collections.unmodifiableList(Arrays.asList("edge", BrowserType.EDGE));
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getBrowserNames()
+    {
+        return BROWSER_NAMES;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFamily()
+    {
+        return "edge";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DesiredCapabilities createCapabilities(final String browser)
+    {
+        return DesiredCapabilities.edge();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MutableCapabilities createOptions(final BrowserConfigurationDto config, final DesiredCapabilities capabilities)
+    {
+        final EdgeOptions options = new EdgeOptions();
+        options.merge(capabilities);
+
+        return options;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebDriver createDriver(final BrowserConfigurationDto config, final ProxyConfigurationDto proxyConfig)
+    {
+        // the drivers only read the options, so all sessions of a profile can share the same template
+        final Capabilities options = AnnotationRunnerHelper.getOptionsTemplate(config, proxyConfig);
+        if (DriverServiceRegistry.isEnabled())
+        {
+            return DriverServiceRegistry.createDriver(DriverType.EDGE, options);
+        }
+
+        return DriverServiceRegistry.createDedicatedDriver(DriverType.EDGE, options);
+    }
+}
@@ -0,0 +1,99 @@
+package xltutil.driver;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.dto.ProxyConfigurationDto;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Creates {@link RemoteWebDriver} instances connected to a process-wide {@link FakeWebDriverServer}, which is started
+ * on first use. Used for profiles with <code>browser = fake</code> to run and benchmark tests without any browser
+ * installed. The latencies of the server are configured via {@link XltPropertyKey#FAKE_NEW_SESSION_LATENCY},
+ * {@link XltPropertyKey#FAKE_COMMAND_LATENCY}, and {@link XltPropertyKey#FAKE_QUIT_LATENCY}.
+ */
+public class FakeDriverFactory implements DriverFactory
+{
+    /**
+     * The browser name of fake browsers.
+     */
+    public static final String BROWSER_NAME = "fake";
+
+    /**
+     * The process-wide server, if started.
+     */
+    private static FakeWebDriverServer server;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getBrowserNames()
+    {
+        return Collections.singletonList(BROWSER_NAME);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFamily()
+    {
+        return BROWSER_NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DesiredCapabilities createCapabilities(final String browser)
+    {
+        final DesiredCapabilities capabilities = new DesiredCapabilities();
+        capabilities.setBrowserName(BROWSER_NAME);
+
+        return capabilities;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebDriver createDriver(final BrowserConfigurationDto config, final ProxyConfigurationDto proxyConfig)
+    {
+        return new RemoteWebDriver(getServer().getUrl(), config.getCapabilities());
+    }
+
+    /**
+     * Returns the process-wide server, starting it if needed.
+     *
+     * @return the server
+     */
+    public static synchronized FakeWebDriverServer getServer()
+    {
+        if (server == null)
+        {
+            final XltProperties props = XltProperties.getInstance();
+            try
+            {
+                server = new FakeWebDriverServer(props.getProperty(XltPropertyKey.FAKE_NEW_SESSION_LATENCY, 0L),
+                                                 props.getProperty(XltPropertyKey.FAKE_COMMAND_LATENCY, 0L),
+                                                 props.getProperty(XltPropertyKey.FAKE_QUIT_LATENCY, 0L));
+            }
+            catch (final IOException e)
+            {
+                throw new WebDriverException("Can not start the fake WebDriver server", e);
+            }
+        }
+
+        return server;
+    }
+}
@@ -0,0 +1,440 @@
+package xltutil.driver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-process stand-in for a W3C WebDriver endpoint, which lets the runner be exercised and benchmarked without any
+ * browser installed. Sessions are kept in memory only: the server remembers the current URL and answers all other
+ * commands with neutral values (one window, no cookies, scripts return <code>null</code>, every element lookup finds a
+ * dummy element). Configurable latencies simulate the time a real browser needs to start, to process a command, and to
+ * quit. Session requests with the capability {@link #REJECT_SESSION_CAPABILITY} fail like a misconfigured browser.
+ * <p>
+ * The server can also be run as a process of its own, which then stands in for a driver executable such as
+ * chromedriver, see {@link #main(String[])}.
+ */
+public class FakeWebDriverServer
+{
+    /**
+     * The capability that makes a session request fail with a "session not created" error.
+     */
+    public static final String REJECT_SESSION_CAPABILITY = "fake:rejectSession";
+
+    /**
+     * The W3C key of an element reference.
+     */
+    private static final String ELEMENT_KEY = "element-6066-11e4-a52e-4f735466cecf";
+
+    /**
+     * The handle of the only window of a session.
+     */
+    private static final String WINDOW_HANDLE = "fake-window";
+
+    /**
+     * Matches a session command path and captures the session ID and the command.
+     */
+    private static final Pattern SESSION_COMMAND = Pattern.compile("/session/([^/]+)(/.*)?");
+
+    /**
+     * Matches the URL in the body of a navigation command.
+     */
+    private static final Pattern URL_PARAMETER = Pattern.compile("\"url\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"");
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The threads that handle the requests.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The current URL of each session mapped by session ID.
+     */
+    private final ConcurrentMap<String, String> sessions = new ConcurrentHashMap<String, String>();
+
+    /**
+     * The time in milliseconds to create a session.
+     */
+    private final long newSessionLatency;
+
+    /**
+     * The time in milliseconds to process any other command.
+     */
+    private final long commandLatency;
+
+    /**
+     * The time in milliseconds to end a session.
+     */
+    private final long quitLatency;
+
+    /**
+     * Constructor. Starts the server on a free local port.
+     *
+     * @param newSessionLatency
+     *            the time in milliseconds to create a session
+     * @param commandLatency
+     *            the time in milliseconds to process any other command
+     * @param quitLatency
+     *            the time in milliseconds to end a session
+     * @throws IOException
+     *             if the server could not be started
+     */
+    public FakeWebDriverServer(final long newSessionLatency, final long commandLatency, final long quitLatency) throws IOException
+    {
+        this(0, newSessionLatency, commandLatency, quitLatency);
+    }
+
+    /**
+     * Constructor. Starts the server on the given local port.
+     *
+     * @param port
+     *            the port, or 0 for a free port
+     * @param newSessionLatency
+     *            the time in milliseconds to create a session
+     * @param commandLatency
+     *            the time in milliseconds to process any other command
+     * @param quitLatency
+     *            the time in milliseconds to end a session
+     * @throws IOException
+     *             if the server could not be started
+     */
+    public FakeWebDriverServer(final int port, final long newSessionLatency, final long commandLatency, final long quitLatency)
+        throws IOException
+    {
+        this.newSessionLatency = newSessionLatency;
+        this.commandLatency = commandLatency;
+        this.quitLatency = quitLatency;
+
+        executor = Executors.newCachedThreadPool(new AsyncDriverTeardown.DaemonThreadFactory("FakeWebDriverServer"));
+
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler()
+        {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException
+            {
+                try
+                {
+                    handleRequest(exchange);
+                }
+                finally
+                {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Runs the server until the process is killed. Accepts the same port argument as the driver executables, i.e.
+     * <code>--port=&lt;port&gt;</code>, and ignores all other arguments.
+     *
+     * @param args
+     *            the command line arguments
+     * @throws Exception
+     *             if the server could not be started
+     */
+    public static void main(final String[] args) throws Exception
+    {
+        int port = 0;
+        for (final String arg : args)
+        {
+            if (arg.startsWith("--port="))
+            {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            }
+        }
+
+        new FakeWebDriverServer(port, 0, 0, 0);
+
+        // the request threads are daemon threads, so keep the process alive
+        while (true)
+        {
+            Thread.sleep(Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Returns the URL of the endpoint, to be passed to a {@link org.openqa.selenium.remote.RemoteWebDriver}.
+     *
+     * @return the URL
+     */
+    public URL getUrl()
+    {
+        try
+        {
+            return new URL("http://localhost:" + server.getAddress().getPort());
+        }
+        catch (final MalformedURLException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the number of sessions that have not been ended yet.
+     *
+     * @return the number of sessions
+     */
+    public int getSessionCount()
+    {
+        return sessions.size();
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop()
+    {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Answers a single WebDriver command.
+     *
+     * @param exchange
+     *            the HTTP exchange
+     * @throws IOException
+     *             if the response could not be sent
+     */
+    private void handleRequest(final HttpExchange exchange) throws IOException
+    {
+        final String method = exchange.getRequestMethod();
+        final String path = exchange.getRequestURI().getPath();
+        final String body = readBody(exchange.getRequestBody());
+
+        if ("POST".equals(method) && ("/session".equals(path) || "/session/".equals(path)))
+        {
+            sleep(newSessionLatency);
+
+            if (body.contains(REJECT_SESSION_CAPABILITY))
+            {
+                sendError(exchange, 500, "session not created", "Rejected by capability " + REJECT_SESSION_CAPABILITY);
+                return;
+            }
+
+            final String sessionId = UUID.randomUUID().toString();
+            sessions.put(sessionId, "about:blank");
+
+            sendValue(exchange, "{\"sessionId\":\"" + sessionId + "\",\"capabilities\":{\"browserName\":\"fake\",\"browserVersion\":\"1.0\","
+                                + "\"platformName\":\"any\",\"acceptInsecureCerts\":false}}");
+            return;
+        }
+
+        if ("GET".equals(method) && "/status".equals(path))
+        {
+            sendValue(exchange, "{\"ready\":true,\"message\":\"fake\"}");
+            return;
+        }
+
+        final Matcher matcher = SESSION_COMMAND.matcher(path);
+        if (!matcher.matches())
+        {
+            sendError(exchange, 404, "unknown command", "Unknown command: " + method + " " + path);
+            return;
+        }
+
+        final String sessionId = matcher.group(1);
+        final String command = matcher.group(2) == null ? "" : matcher.group(2);
+
+        if (!sessions.containsKey(sessionId))
+        {
+            sendError(exchange, 404, "invalid session id", "No such session: " + sessionId);
+            return;
+        }
+
+        if ("DELETE".equals(method) && command.isEmpty())
+        {
+            sleep(quitLatency);
+            sessions.remove(sessionId);
+            sendValue(exchange, "null");
+            return;
+        }
+
+        sleep(commandLatency);
+
+        if ("/url".equals(command))
+        {
+            if ("POST".equals(method))
+            {
+                final Matcher urlMatcher = URL_PARAMETER.matcher(body);
+                if (urlMatcher.find())
+                {
+                    sessions.put(sessionId, StringEscapeUtils.unescapeJson(urlMatcher.group(1)));
+                }
+                sendValue(exchange, "null");
+            }
+            else
+            {
+                sendValue(exchange, "\"" + StringEscapeUtils.escapeJson(sessions.get(sessionId)) + "\"");
+            }
+        }
+        else if ("/title".equals(command))
+        {
+            sendValue(exchange, "\"Fake\"");
+        }
+        else if ("/window".equals(command) && "GET".equals(method))
+        {
+            sendValue(exchange, "\"" + WINDOW_HANDLE + "\"");
+        }
+        else if ("/window/handles".equals(command) || ("/window".equals(command) && "DELETE".equals(method)))
+        {
+            sendValue(exchange, "[\"" + WINDOW_HANDLE + "\"]");
+        }
+        else if ("/window/rect".equals(command))
+        {
+            sendValue(exchange, "{\"x\":0,\"y\":0,\"width\":1280,\"height\":1024}");
+        }
+        else if ("/cookie".equals(command) && "GET".equals(method))
+        {
+            sendValue(exchange, "[]");
+        }
+        else if ("/element".equals(command) || command.matches("/element/[^/]+/element"))
+        {
+            sendValue(exchange, "{\"" + ELEMENT_KEY + "\":\"fake-element\"}");
+        }
+        else if ("/elements".equals(command) || command.matches("/element/[^/]+/elements"))
+        {
+            sendValue(exchange, "[{\"" + ELEMENT_KEY + "\":\"fake-element\"}]");
+        }
+        else if (command.matches("/element/[^/]+/(text|name|attribute/.*|property/.*|css/.*)"))
+        {
+            sendValue(exchange, "\"\"");
+        }
+        else if (command.matches("/element/[^/]+/(displayed|enabled|selected)"))
+        {
+            sendValue(exchange, "true");
+        }
+        else
+        {
+            // navigation, clicks, typing, scripts, timeouts, cookie deletion, ...
+            sendValue(exchange, "null");
+        }
+    }
+
+    /**
+     * Sends a successful response with the given JSON value.
+     *
+     * @param exchange
+     *            the HTTP exchange
+     * @param value
+     *            the JSON value
+     * @throws IOException
+     *             if the response could not be sent
+     */
+    private static void sendValue(final HttpExchange exchange, final String value) throws IOException
+    {
+        send(exchange, 200, "{\"value\":" + value + "}");
+    }
+
+    /**
+     * Sends an error response.
+     *
+     * @param exchange
+     *            the HTTP exchange
+     * @param status
+     *            the HTTP status code
+     * @param error
+     *            the W3C error code
+     * @param message
+     *            the error message
+     * @throws IOException
+     *             if the response could not be sent
+     */
+    private static void sendError(final HttpExchange exchange, final int status, final String error, final String message) throws IOException
+    {
+        send(exchange, status, "{\"value\":{\"error\":\"" + error + "\",\"message\":\"" + StringEscapeUtils.escapeJson(message)
+                               + "\",\"stacktrace\":\"\"}}");
+    }
+
+    /**
+     * Sends the given JSON response.
+     *
+     * @param exchange
+     *            the HTTP exchange
+     * @param status
+     *            the HTTP status code
+     * @param json
+     *            the response body
+     * @throws IOException
+     *             if the response could not be sent
+     */
+    private static void send(final HttpExchange exchange, final int status, final String json) throws IOException
+    {
+        final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (final OutputStream out = exchange.getResponseBody())
+        {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Reads the complete request body.
+     *
+     * @param in
+     *            the request body stream
+     * @return the body
+     * @throws IOException
+     *             if the body could not be read
+     */
+    private static String readBody(final InputStream in) throws IOException
+    {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0)
+        {
+            body.write(buffer, 0, read);
+        }
+
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Simulates the given latency.
+     *
+     * @param millis
+     *            the latency in milliseconds
+     */
+    private static void sleep(final long millis)
+    {
+        if (millis > 0)
+        {
+            try
+            {
+                Thread.sleep(millis);
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
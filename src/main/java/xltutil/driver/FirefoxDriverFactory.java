@@ -0,0 +1,138 @@
+package xltutil.driver;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.MutableCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import com.xceptance.xlt.api.util.XltProperties;
+import com.xceptance.xlt.api.webdriver.XltFirefoxDriver;
+
+import xltutil.driver.DriverServiceRegistry.DriverType;
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.dto.ProxyConfigurationDto;
+import xltutil.runner.helper.AnnotationRunnerHelper;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Creates local Firefox browsers.
+ */
+public class FirefoxDriverFactory implements DriverFactory
+{
+    @SuppressWarnings("deprecation")
+    private static final Collection<String> BROWSER_NAMES = Collections.unmodifiableList(Arrays.asList(BrowserType.FIREFOX,
+                                                                                                        "firefox_clientperformance",
+                                                                                                        BrowserType.FIREFOX_CHROME,
+                                                                                                        BrowserType.FIREFOX_PROXY));
+
+    /**
+     * The Firefox preferences that reduce the startup time and background activity of a browser used for testing.
+     */
+    private static final Map<String, Object> LOW_OVERHEAD_PREFERENCES = new LinkedHashMap<String, Object>();
+
+    static
+    {
+        LOW_OVERHEAD_PREFERENCES.put("browser.shell.checkDefaultBrowser", false);
+        LOW_OVERHEAD_PREFERENCES.put("browser.startup.homepage_override.mstone", "ignore");
+        LOW_OVERHEAD_PREFERENCES.put("app.update.enabled", false);
+        LOW_OVERHEAD_PREFERENCES.put("extensions.update.enabled", false);
+        LOW_OVERHEAD_PREFERENCES.put("datareporting.policy.dataSubmissionEnabled", false);
+        LOW_OVERHEAD_PREFERENCES.put("toolkit.telemetry.enabled", false);
+        LOW_OVERHEAD_PREFERENCES.put("network.captive-portal-service.enabled", false);
+        LOW_OVERHEAD_PREFERENCES.put("browser.safebrowsing.malware.enabled", false);
+        LOW_OVERHEAD_PREFERENCES.put("browser.safebrowsing.phishing.enabled", false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getBrowserNames()
+    {
+        return BROWSER_NAMES;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFamily()
+    {
+        return "firefox";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DesiredCapabilities createCapabilities(final String browser)
+    {
+        return DesiredCapabilities.firefox();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MutableCapabilities createOptions(final BrowserConfigurationDto config, final DesiredCapabilities capabilities)
+    {
+        final FirefoxOptions options = new FirefoxOptions(capabilities);
+        final String pathToBrowser = XltProperties.getInstance().getProperty(XltPropertyKey.FIREFOX_PATH);
+        if (StringUtils.isNotBlank(pathToBrowser))
+        {
+            options.setBinary(pathToBrowser);
+        }
+        if (config.isHeadless())
+        {
+            options.setHeadless(true);
+        }
+        if (config.isLowOverhead())
+        {
+            for (final Entry<String, Object> preference : LOW_OVERHEAD_PREFERENCES.entrySet())
+            {
+                if (preference.getValue() instanceof Boolean)
+                {
+                    options.addPreference(preference.getKey(), (Boolean) preference.getValue());
+                }
+                else
+                {
+                    options.addPreference(preference.getKey(), preference.getValue().toString());
+                }
+            }
+        }
+
+        return options;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebDriver createDriver(final BrowserConfigurationDto config, final ProxyConfigurationDto proxyConfig)
+    {
+        if (config.isClientperformanceEnabled())
+        {
+            // the XLT driver adds its own settings, so it gets options of its own
+            return new XltFirefoxDriver((FirefoxOptions) AnnotationRunnerHelper.createBrowserOptions(config, proxyConfig));
+        }
+
+        // the drivers only read the options, so all sessions of a profile can share the same template
+        final Capabilities options = AnnotationRunnerHelper.getOptionsTemplate(config, proxyConfig);
+        if (DriverServiceRegistry.isEnabled())
+        {
+            return DriverServiceRegistry.createDriver(DriverType.FIREFOX, options);
+        }
+
+        return DriverServiceRegistry.createDedicatedDriver(DriverType.FIREFOX, options);
+    }
+}
@@ -0,0 +1,92 @@
+package xltutil.driver;
+
+import java.util.Iterator;
+import java.util.Set;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import com.xceptance.xlt.api.util.XltLogger;
+
+/**
+ * Resets a browser using standard WebDriver commands only, so it works with any browser. Cookies and web storage are
+ * cleared for the current page only, as WebDriver does not give access to other domains.
+ */
+public class GenericStateResetter implements BrowserStateResetter
+{
+    /**
+     * Clears the web storage of the current page.
+     */
+    private static final String CLEAR_WEB_STORAGE_SCRIPT = "try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean reset(final WebDriver driver)
+    {
+        try
+        {
+            final Set<String> windowHandles = driver.getWindowHandles();
+            if (windowHandles.isEmpty())
+            {
+                return false;
+            }
+
+            // close all windows but the first one
+            final Iterator<String> it = windowHandles.iterator();
+            final String mainWindow = it.next();
+            while (it.hasNext())
+            {
+                driver.switchTo().window(it.next());
+                driver.close();
+            }
+            driver.switchTo().window(mainWindow);
+
+            clearState(driver);
+
+            driver.get("about:blank");
+
+            return true;
+        }
+        catch (final WebDriverException e)
+        {
+            XltLogger.runTimeLogger.debug("Failed to reset driver", e);
+            return false;
+        }
+    }
+
+    /**
+     * Clears the cookies and the web storage of the current page.
+     *
+     * @param driver
+     *            the driver
+     */
+    protected void clearState(final WebDriver driver)
+    {
+        driver.manage().deleteAllCookies();
+        clearWebStorage(driver);
+    }
+
+    /**
+     * Clears the local and session storage of the current page.
+     *
+     * @param driver
+     *            the driver
+     */
+    protected static void clearWebStorage(final WebDriver driver)
+    {
+        if (driver instanceof JavascriptExecutor)
+        {
+            try
+            {
+                ((JavascriptExecutor) driver).executeScript(CLEAR_WEB_STORAGE_SCRIPT);
+            }
+            catch (final WebDriverException e)
+            {
+                // not all browsers allow script execution on every page, so ignore it
+            }
+        }
+    }
+}
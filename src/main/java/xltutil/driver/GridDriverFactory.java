@@ -0,0 +1,65 @@
+package xltutil.driver;
+
+import java.net.MalformedURLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.dto.ProxyConfigurationDto;
+import xltutil.runner.helper.BrowserProfileRegistry;
+
+/**
+ * Creates the remote sessions of all profiles with a test environment, see {@link GridSessionFactory}. Registered for
+ * the name {@link DriverFactoryRegistry#REMOTE}.
+ */
+public class GridDriverFactory implements DriverFactory
+{
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getBrowserNames()
+    {
+        return Collections.singletonList(DriverFactoryRegistry.REMOTE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFamily()
+    {
+        return DriverFactoryRegistry.REMOTE;
+    }
+
+    /**
+     * Always fails, since {@link DriverFactoryRegistry#REMOTE} names the grid rather than a browser. A profile for a
+     * test environment names the browser to request from the grid instead.
+     *
+     * @throws IllegalArgumentException
+     *             always
+     */
+    @Override
+    public DesiredCapabilities createCapabilities(final String browser)
+    {
+        throw new IllegalArgumentException("'" + browser + "' is not a browser, specify the browser to request from the test environment, e.g. "
+                                           + "browserprofile.<name>.browser = chrome");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebDriver createDriver(final BrowserConfigurationDto config, final ProxyConfigurationDto proxyConfig) throws MalformedURLException
+    {
+        final String testEnvironment = config.getTestEnvironment();
+        final Map<String, String> propertiesForEnvironment = BrowserProfileRegistry.getInstance().getTestEnvironmentProperties(testEnvironment);
+
+        // establish connection to target website, bounded by the timeouts of the test environment
+        return GridSessionFactory.createDriver(testEnvironment, propertiesForEnvironment, proxyConfig, config.getCapabilities());
+    }
+}
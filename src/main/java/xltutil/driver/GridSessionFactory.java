@@ -0,0 +1,490 @@
+package xltutil.driver;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+
+import com.xceptance.xlt.api.engine.Session;
+import com.xceptance.xlt.api.util.XltLogger;
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.dto.ProxyConfigurationDto;
+import xltutil.runner.helper.AnnotationRunnerHelper;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Creates remote browser sessions on Selenium grids without blocking a test thread indefinitely. Each test environment
+ * has its own connect, read, and new-session timeouts. Session requests that failed because of a timeout, a transport
+ * error, or an internal grid error are retried with jittered exponential backoff. After too many consecutive failures of
+ * this kind, a circuit breaker rejects all session requests for the environment for a while, so that a grid that is down
+ * is not hammered by every test. Requests the grid refused, e.g. because of unsupported capabilities, fail right away
+ * and do not count as grid failures, since retrying them would not help.
+ * <p>
+ * All settings are read from <code>browserprofile.testEnvironment.&lt;name&gt;.*</code>, falling back to the global
+ * <code>xlt.multiBrowser.grid.*</code> settings. Timeouts, retries, and rejections are reported as XLT events and
+ * summarized in the log once all runners have finished.
+ */
+public final class GridSessionFactory
+{
+    /**
+     * The prefix of the global grid settings, which is stripped to get the name of a test environment setting.
+     */
+    private static final String GRID_PREFIX = "xlt.multiBrowser.grid.";
+
+    /**
+     * The default connect timeout in milliseconds.
+     */
+    private static final long DEFAULT_CONNECT_TIMEOUT = 10000;
+
+    /**
+     * The default time in milliseconds a new session may take.
+     */
+    private static final long DEFAULT_NEW_SESSION_TIMEOUT = 300000;
+
+    /**
+     * The default number of retries.
+     */
+    private static final int DEFAULT_RETRIES = 2;
+
+    /**
+     * The default delay in milliseconds before the first retry.
+     */
+    private static final long DEFAULT_RETRY_BACKOFF = 1000;
+
+    /**
+     * The default maximum delay in milliseconds between two retries.
+     */
+    private static final long DEFAULT_RETRY_MAX_BACKOFF = 30000;
+
+    /**
+     * The default number of consecutive failures that open the circuit breaker.
+     */
+    private static final int DEFAULT_CIRCUIT_BREAKER_FAILURES = 5;
+
+    /**
+     * The default time in milliseconds the circuit breaker stays open.
+     */
+    private static final long DEFAULT_CIRCUIT_BREAKER_OPEN_TIME = 60000;
+
+    /**
+     * The threads that wait for new sessions, so that the requesting thread can give up after the timeout.
+     */
+    private static final ExecutorService sessionCreator = Executors.newCachedThreadPool(new AsyncDriverTeardown.DaemonThreadFactory("GridSession"));
+
+    /**
+     * The state of the test environments mapped by name.
+     */
+    private static final ConcurrentMap<String, Grid> grids = new ConcurrentHashMap<String, Grid>();
+
+    /**
+     * Default constructor. Declared private to prevent external instantiation.
+     */
+    private GridSessionFactory()
+    {
+    }
+
+    /**
+     * Creates a new session on the grid of the given test environment.
+     *
+     * @param testEnvironment
+     *            the name of the test environment
+     * @param environmentProperties
+     *            the settings of the test environment
+     * @param proxyConfig
+     *            the proxy configuration, may be <code>null</code>
+     * @param capabilities
+     *            the desired capabilities
+     * @return the driver
+     * @throws MalformedURLException
+     *             if the grid URL is invalid
+     * @throws WebDriverException
+     *             if the session could not be created, even after retrying, the grid refused it, or the circuit breaker
+     *             is open
+     */
+    public static RemoteWebDriver createDriver(final String testEnvironment, final Map<String, String> environmentProperties,
+                                               final ProxyConfigurationDto proxyConfig, final Capabilities capabilities)
+        throws MalformedURLException
+    {
+        final URL gridUrl = new URL(environmentProperties.get("url"));
+        final String gridUsername = environmentProperties.get("username");
+        final String gridPassword = environmentProperties.get("password");
+
+        final long connectTimeout = getSetting(environmentProperties, XltPropertyKey.GRID_CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT);
+        final long readTimeout = getSetting(environmentProperties, XltPropertyKey.GRID_READ_TIMEOUT, 0);
+        final long newSessionTimeout = getSetting(environmentProperties, XltPropertyKey.GRID_NEW_SESSION_TIMEOUT, DEFAULT_NEW_SESSION_TIMEOUT);
+        final long retries = getSetting(environmentProperties, XltPropertyKey.GRID_RETRIES, DEFAULT_RETRIES);
+        final long backoff = getSetting(environmentProperties, XltPropertyKey.GRID_RETRY_BACKOFF, DEFAULT_RETRY_BACKOFF);
+        final long maxBackoff = getSetting(environmentProperties, XltPropertyKey.GRID_RETRY_MAX_BACKOFF, DEFAULT_RETRY_MAX_BACKOFF);
+
+        final Grid grid = getGrid(testEnvironment, environmentProperties);
+
+        for (int attempt = 0;; attempt++)
+        {
+            if (!grid.isAvailable())
+            {
+                grid.rejections.incrementAndGet();
+                logEvent("MultiBrowser.GridCircuitOpen", testEnvironment, "Session request rejected, the grid failed too often");
+
+                throw new WebDriverException("Grid of test environment '" + testEnvironment + "' failed too often, rejecting new sessions for now");
+            }
+
+            try
+            {
+                final HttpCommandExecutor commandExecutor = AnnotationRunnerHelper.createGridExecutor(proxyConfig, gridUrl, gridUsername,
+                                                                                                      gridPassword, connectTimeout,
+                                                                                                      readTimeout);
+                final RemoteWebDriver driver = newSession(commandExecutor, capabilities, newSessionTimeout);
+
+                grid.onSuccess();
+                grid.sessions.incrementAndGet();
+
+                return driver;
+            }
+            catch (final WebDriverException e)
+            {
+                grid.failures.incrementAndGet();
+                if (!isRetryable(e))
+                {
+                    // the grid is up, but refused the request
+                    throw e;
+                }
+
+                grid.onFailure();
+                if (e instanceof TimeoutException)
+                {
+                    grid.timeouts.incrementAndGet();
+                    logEvent("MultiBrowser.GridTimeout", testEnvironment, "No session within " + newSessionTimeout + " ms");
+                }
+
+                if (attempt >= retries)
+                {
+                    throw e;
+                }
+
+                grid.retries.incrementAndGet();
+                logEvent("MultiBrowser.GridRetry", testEnvironment, e.getClass().getSimpleName() + ": " + StringUtils.substringBefore(e.getMessage(), "\n"));
+
+                sleep(getBackoff(attempt, backoff, maxBackoff));
+            }
+        }
+    }
+
+    /**
+     * Logs the session statistics of all test environments.
+     */
+    public static void logStatistics()
+    {
+        if (grids.isEmpty())
+        {
+            return;
+        }
+
+        final StringBuilder sb = new StringBuilder("Grid sessions:");
+        sb.append(String.format("%n%-30s %8s %8s %8s %8s %8s", "Environment", "Sessions", "Failures", "Timeouts", "Retries", "Rejected"));
+        for (final Map.Entry<String, Grid> entry : new TreeMap<String, Grid>(grids).entrySet())
+        {
+            final Grid grid = entry.getValue();
+            sb.append(String.format("%n%-30s %8d %8d %8d %8d %8d", entry.getKey(), grid.sessions.get(), grid.failures.get(), grid.timeouts.get(),
+                                    grid.retries.get(), grid.rejections.get()));
+        }
+
+        XltLogger.runTimeLogger.info(sb.toString());
+    }
+
+    /**
+     * Creates a new session, but waits for it only up to the given timeout. A session that arrives after the timeout
+     * is quit right away.
+     *
+     * @param commandExecutor
+     *            the command executor for the grid
+     * @param capabilities
+     *            the desired capabilities
+     * @param timeout
+     *            the timeout in milliseconds, 0 for no timeout
+     * @return the driver
+     */
+    private static RemoteWebDriver newSession(final HttpCommandExecutor commandExecutor, final Capabilities capabilities, final long timeout)
+    {
+        final Future<RemoteWebDriver> session = sessionCreator.submit(new Callable<RemoteWebDriver>()
+        {
+            @Override
+            public RemoteWebDriver call()
+            {
+                return new RemoteWebDriver(commandExecutor, capabilities);
+            }
+        });
+
+        try
+        {
+            return timeout > 0 ? session.get(timeout, TimeUnit.MILLISECONDS) : session.get();
+        }
+        catch (final java.util.concurrent.TimeoutException e)
+        {
+            abandon(session);
+            throw new TimeoutException("No session within " + timeout + " ms");
+        }
+        catch (final ExecutionException e)
+        {
+            if (e.getCause() instanceof WebDriverException)
+            {
+                throw (WebDriverException) e.getCause();
+            }
+            throw new WebDriverException(e.getCause());
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            abandon(session);
+            throw new WebDriverException("Interrupted while waiting for a new session", e);
+        }
+    }
+
+    /**
+     * Quits the session of the given request as soon as it has been created, so it does not occupy the grid.
+     *
+     * @param session
+     *            the pending session request
+     */
+    private static void abandon(final Future<RemoteWebDriver> session)
+    {
+        sessionCreator.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    session.get().quit();
+                }
+                catch (final ExecutionException | WebDriverException e)
+                {
+                    // no session has been created, or it is gone already
+                }
+                catch (final InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns whether the given session request failure may be transient: a timeout, a transport error, or an unknown
+     * error, which is what the grid reports for internal errors (HTTP 5xx). All other failures, such as
+     * {@link org.openqa.selenium.SessionNotCreatedException} or {@link org.openqa.selenium.InvalidArgumentException},
+     * are answers of a working grid and would fail again.
+     *
+     * @param e
+     *            the failure
+     * @return whether the request should be retried
+     */
+    static boolean isRetryable(final WebDriverException e)
+    {
+        if (e instanceof TimeoutException || e instanceof UnreachableBrowserException || e.getClass() == WebDriverException.class)
+        {
+            return true;
+        }
+
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause())
+        {
+            if (cause instanceof IOException)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the delay before the given retry: exponential backoff with a random jitter of up to half the delay, so
+     * that tests failing at the same time do not retry in lockstep.
+     *
+     * @param attempt
+     *            the number of the failed attempt, starting at 0
+     * @param backoff
+     *            the delay in milliseconds before the first retry
+     * @param maxBackoff
+     *            the maximum delay in milliseconds
+     * @return the delay in milliseconds
+     */
+    static long getBackoff(final int attempt, final long backoff, final long maxBackoff)
+    {
+        final long delay = Math.min(maxBackoff, backoff << Math.min(attempt, 30));
+        if (delay <= 1)
+        {
+            return Math.max(0, delay);
+        }
+
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Returns the state of the given test environment, creating it on first use.
+     *
+     * @param testEnvironment
+     *            the name of the test environment
+     * @param environmentProperties
+     *            the settings of the test environment
+     * @return the state
+     */
+    private static Grid getGrid(final String testEnvironment, final Map<String, String> environmentProperties)
+    {
+        Grid grid = grids.get(testEnvironment);
+        if (grid == null)
+        {
+            final Grid newGrid = new Grid((int) getSetting(environmentProperties, XltPropertyKey.GRID_CIRCUIT_BREAKER_FAILURES,
+                                                           DEFAULT_CIRCUIT_BREAKER_FAILURES),
+                                          getSetting(environmentProperties, XltPropertyKey.GRID_CIRCUIT_BREAKER_OPEN_TIME,
+                                                     DEFAULT_CIRCUIT_BREAKER_OPEN_TIME));
+            grid = grids.putIfAbsent(testEnvironment, newGrid);
+            if (grid == null)
+            {
+                grid = newGrid;
+            }
+        }
+
+        return grid;
+    }
+
+    /**
+     * Returns a numeric setting of a test environment. The setting is named like the global one without the
+     * <code>xlt.multiBrowser.grid.</code> prefix.
+     *
+     * @param environmentProperties
+     *            the settings of the test environment
+     * @param globalKey
+     *            the key of the global setting
+     * @param defaultValue
+     *            the value to use if neither the test environment nor the global setting is configured, or the setting
+     *            of the test environment is not a number
+     * @return the value
+     */
+    static long getSetting(final Map<String, String> environmentProperties, final String globalKey, final long defaultValue)
+    {
+        final String name = globalKey.substring(GRID_PREFIX.length());
+        final String value = environmentProperties.get(name);
+        if (StringUtils.isNotBlank(value))
+        {
+            try
+            {
+                return Long.parseLong(value.trim());
+            }
+            catch (final NumberFormatException e)
+            {
+                XltLogger.runTimeLogger.warn("Invalid value '" + value + "' of test environment setting '" + name + "', using " + defaultValue);
+                return defaultValue;
+            }
+        }
+
+        return XltProperties.getInstance().getProperty(globalKey, defaultValue);
+    }
+
+    /**
+     * Reports an event for the given test environment.
+     *
+     * @param name
+     *            the event name
+     * @param testEnvironment
+     *            the name of the test environment
+     * @param message
+     *            the event message
+     */
+    private static void logEvent(final String name, final String testEnvironment, final String message)
+    {
+        XltLogger.runTimeLogger.warn(name + " [" + testEnvironment + "]: " + message);
+        Session.getCurrent().getDataManager().logEvent(name + " [" + testEnvironment + "]", message);
+    }
+
+    /**
+     * Sleeps for the given time.
+     *
+     * @param millis
+     *            the time in milliseconds
+     */
+    private static void sleep(final long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new WebDriverException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    /**
+     * The circuit breaker and statistics of a test environment.
+     */
+    private static class Grid
+    {
+        private final AtomicLong sessions = new AtomicLong();
+
+        private final AtomicLong failures = new AtomicLong();
+
+        private final AtomicLong timeouts = new AtomicLong();
+
+        private final AtomicLong retries = new AtomicLong();
+
+        private final AtomicLong rejections = new AtomicLong();
+
+        private final int failureThreshold;
+
+        private final long openTime;
+
+        private int consecutiveFailures;
+
+        private long openUntil;
+
+        private Grid(final int failureThreshold, final long openTime)
+        {
+            this.failureThreshold = failureThreshold;
+            this.openTime = openTime;
+        }
+
+        /**
+         * Returns whether session requests may be sent to the grid, i.e. the circuit breaker is closed or its open
+         * time is over. In the latter case, the next request decides whether it opens again.
+         */
+        private synchronized boolean isAvailable()
+        {
+            return failureThreshold <= 0 || consecutiveFailures < failureThreshold || System.currentTimeMillis() >= openUntil;
+        }
+
+        private synchronized void onSuccess()
+        {
+            consecutiveFailures = 0;
+        }
+
+        private synchronized void onFailure()
+        {
+            consecutiveFailures++;
+            if (failureThreshold > 0 && consecutiveFailures >= failureThreshold)
+            {
+                openUntil = System.currentTimeMillis() + openTime;
+            }
+        }
+    }
+}
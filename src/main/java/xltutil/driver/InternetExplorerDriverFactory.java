@@ -0,0 +1,73 @@
+package xltutil.driver;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openqa.selenium.MutableCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.ie.InternetExplorerDriver;
+import org.openqa.selenium.ie.InternetExplorerOptions;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.dto.ProxyConfigurationDto;
+import xltutil.runner.helper.AnnotationRunnerHelper;
+
+/**
+ * Creates local Internet Explorer browsers.
+ */
+public class InternetExplorerDriverFactory implements DriverFactory
+{
+    @SuppressWarnings("deprecation")
+    private static final Collection<String> BROWSER_NAMES = Collections.unmodifiableList(Arrays.asList("internetexplorer", BrowserType.IE,
+                                                                                                        BrowserType.IE_HTA,
+                                                                                                        BrowserType.IEXPLORE,
+                                                                                                        BrowserType.IEXPLORE_PROXY));
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getBrowserNames()
+    {
+        return BROWSER_NAMES;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFamily()
+    {
+        return "ie";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DesiredCapabilities createCapabilities(final String browser)
+    {
+        return DesiredCapabilities.internetExplorer();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MutableCapabilities createOptions(final BrowserConfigurationDto config, final DesiredCapabilities capabilities)
+    {
+        return new InternetExplorerOptions(capabilities);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebDriver createDriver(final BrowserConfigurationDto config, final ProxyConfigurationDto proxyConfig)
+    {
+        return new InternetExplorerDriver((InternetExplorerOptions) AnnotationRunnerHelper.createBrowserOptions(config, proxyConfig));
+    }
+}
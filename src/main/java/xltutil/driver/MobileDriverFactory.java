@@ -0,0 +1,58 @@
+package xltutil.driver;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.dto.ProxyConfigurationDto;
+
+/**
+ * Provides the capabilities of iPhone and iPad profiles. These run in a test environment only, so no local driver is
+ * created.
+ */
+public class MobileDriverFactory implements DriverFactory
+{
+    private static final Collection<String> BROWSER_NAMES = Collections.unmodifiableList(Arrays.asList(BrowserType.IPHONE,
+                                                                                                        BrowserType.IPAD));
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getBrowserNames()
+    {
+        return BROWSER_NAMES;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFamily()
+    {
+        return "ios";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DesiredCapabilities createCapabilities(final String browser)
+    {
+        return "ipad".equals(browser) ? DesiredCapabilities.ipad() : DesiredCapabilities.iphone();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebDriver createDriver(final BrowserConfigurationDto config, final ProxyConfigurationDto proxyConfig)
+    {
+        return null;
+    }
+}
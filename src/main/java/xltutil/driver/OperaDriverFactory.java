@@ -0,0 +1,82 @@
+package xltutil.driver;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openqa.selenium.MutableCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.opera.OperaDriver;
+import org.openqa.selenium.opera.OperaOptions;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.dto.ProxyConfigurationDto;
+import xltutil.runner.helper.AnnotationRunnerHelper;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Creates local Opera browsers.
+ */
+public class OperaDriverFactory implements DriverFactory
+{
+    private static final Collection<String> BROWSER_NAMES = Collections.unmodifiableList(Arrays.asList(BrowserType.OPERA,
+                                                                                                        BrowserType.OPERA_BLINK));
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getBrowserNames()
+    {
+        return BROWSER_NAMES;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFamily()
+    {
+        return "opera";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DesiredCapabilities createCapabilities(final String browser)
+    {
+        return DesiredCapabilities.operaBlink();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MutableCapabilities createOptions(final BrowserConfigurationDto config, final DesiredCapabilities capabilities)
+    {
+        final OperaOptions options = new OperaOptions();
+        options.merge(capabilities);
+        final String pathToBrowser = XltProperties.getInstance().getProperty(XltPropertyKey.OPERA_PATH);
+        if (StringUtils.isNotBlank(pathToBrowser))
+        {
+            options.setBinary(pathToBrowser);
+        }
+
+        return options;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebDriver createDriver(final BrowserConfigurationDto config, final ProxyConfigurationDto proxyConfig)
+    {
+        return new OperaDriver((OperaOptions) AnnotationRunnerHelper.createBrowserOptions(config, proxyConfig));
+    }
+}
@@ -0,0 +1,59 @@
+package xltutil.driver;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.phantomjs.PhantomJSDriver;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.dto.ProxyConfigurationDto;
+import xltutil.runner.helper.AnnotationRunnerHelper;
+
+/**
+ * Creates local PhantomJS browsers.
+ */
+public class PhantomJSDriverFactory implements DriverFactory
+{
+    @SuppressWarnings("deprecation")
+    private static final Collection<String> BROWSER_NAMES = Collections.singletonList(BrowserType.PHANTOMJS);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getBrowserNames()
+    {
+        return BROWSER_NAMES;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFamily()
+    {
+        return "phantomjs";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("deprecation")
+    @Override
+    public DesiredCapabilities createCapabilities(final String browser)
+    {
+        return DesiredCapabilities.phantomjs();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebDriver createDriver(final BrowserConfigurationDto config, final ProxyConfigurationDto proxyConfig)
+    {
+        return new PhantomJSDriver(AnnotationRunnerHelper.createBrowserOptions(config, proxyConfig));
+    }
+}
@@ -0,0 +1,71 @@
+package xltutil.driver;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openqa.selenium.MutableCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.safari.SafariDriver;
+import org.openqa.selenium.safari.SafariOptions;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.dto.ProxyConfigurationDto;
+import xltutil.runner.helper.AnnotationRunnerHelper;
+
+/**
+ * Creates local Safari browsers.
+ */
+public class SafariDriverFactory implements DriverFactory
+{
+    @SuppressWarnings("deprecation")
+    private static final Collection<String> BROWSER_NAMES = Collections.unmodifiableList(Arrays.asList(BrowserType.SAFARI,
+                                                                                                        BrowserType.SAFARI_PROXY));
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getBrowserNames()
+    {
+        return BROWSER_NAMES;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFamily()
+    {
+        return "safari";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DesiredCapabilities createCapabilities(final String browser)
+    {
+        return DesiredCapabilities.safari();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MutableCapabilities createOptions(final BrowserConfigurationDto config, final DesiredCapabilities capabilities)
+    {
+        return new SafariOptions(capabilities);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebDriver createDriver(final BrowserConfigurationDto config, final ProxyConfigurationDto proxyConfig)
+    {
+        return new SafariDriver((SafariOptions) AnnotationRunnerHelper.createBrowserOptions(config, proxyConfig));
+    }
+}
@@ -0,0 +1,780 @@
+package xltutil.driver;
+
+import java.net.MalformedURLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import com.xceptance.xlt.api.util.XltLogger;
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.runner.helper.AnnotationRunnerHelper;
+import xltutil.runner.helper.BrowserProfileRegistry;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * A pool of idle {@link WebDriver} instances keyed by browser tag. Instead of starting a new browser for each test
+ * method, a driver is leased from the pool and returned to it afterwards. Returned drivers are reset to a clean state
+ * (cookies, storage, windows) by the {@link BrowserStateResetter} of their browser family and kept until they are
+ * leased again, exceed the maximum idle time, or have to make room for other drivers. Drivers that exceeded the maximum
+ * idle time are quit in the background, so idle browsers and remote sessions do not outlive their idle time even if the
+ * pool is not used anymore.
+ * <p>
+ * Long-lived browsers are recycled according to the limits of their browser configuration (number of uses, age, and
+ * JavaScript heap size). The age counts from the creation of the browser, see {@link #recordCreation(WebDriver)}. A browser that reached a limit stays available until a replacement has been launched in the
+ * background, so recycling never makes a test wait for a new browser.
+ * <p>
+ * The pool is opt-in, see {@link XltPropertyKey#DRIVER_POOL_ENABLED}.
+ */
+public class WebDriverPool
+{
+    /**
+     * The default maximum number of idle drivers.
+     */
+    private static final int DEFAULT_MAX_SIZE = 4;
+
+    /**
+     * The default maximum idle time in milliseconds.
+     */
+    private static final long DEFAULT_MAX_IDLE_TIME = 60000;
+
+    /**
+     * The maximum time in milliseconds {@link #shutdown()} waits for replacements that are still launching.
+     */
+    private static final long REPLACEMENT_TIMEOUT = 60000;
+
+    /**
+     * Returns the size of the JavaScript heap of the current page in bytes. Supported by Chrome only, other browsers
+     * return -1.
+     */
+    private static final String USED_HEAP_SIZE_SCRIPT = "return window.performance && window.performance.memory ? window.performance.memory.usedJSHeapSize : -1;";
+
+    /**
+     * The process-wide pool instance, if any.
+     */
+    private static WebDriverPool instance;
+
+    /**
+     * The threads that launch the replacements of recycled drivers.
+     */
+    private static final ExecutorService recycler = Executors.newCachedThreadPool(new AsyncDriverTeardown.DaemonThreadFactory("DriverRecycler"));
+
+    /**
+     * The thread that quits drivers which exceeded the maximum idle time.
+     */
+    private static final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(
+        new AsyncDriverTeardown.DaemonThreadFactory("DriverPoolSweeper"));
+
+    /**
+     * The creation times of the drivers mapped by driver, shared by all pools, since a driver is created before it is
+     * returned to a pool.
+     */
+    private static final Map<WebDriver, Long> creationTimes = Collections.synchronizedMap(new WeakHashMap<WebDriver, Long>());
+
+    /**
+     * The idle drivers mapped by pool key. Guarded by <code>this</code>.
+     */
+    private final Map<String, Deque<PooledDriver>> idleDrivers = new HashMap<String, Deque<PooledDriver>>();
+
+    /**
+     * The maximum number of idle drivers held by this pool.
+     */
+    private final int maxSize;
+
+    /**
+     * The time in milliseconds an idle driver is kept before it is evicted.
+     */
+    private final long maxIdleTime;
+
+    /**
+     * The current number of idle drivers. Guarded by <code>this</code>.
+     */
+    private int idleCount;
+
+    /**
+     * The life cycle of all drivers returned to this pool at least once. Guarded by <code>this</code>.
+     */
+    private final Map<WebDriver, Lifecycle> lifecycles = new WeakHashMap<WebDriver, Lifecycle>();
+
+    /**
+     * Whether this pool has been shut down. Guarded by <code>this</code>.
+     */
+    private boolean shutdown;
+
+    /**
+     * The number of replacements that are still launching. Guarded by <code>this</code>.
+     */
+    private int pendingReplacements;
+
+    /**
+     * The periodic eviction of expired idle drivers, or <code>null</code> if there is none.
+     */
+    private final ScheduledFuture<?> sweep;
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize
+     *            the maximum number of idle drivers
+     * @param maxIdleTime
+     *            the maximum idle time in milliseconds
+     */
+    public WebDriverPool(final int maxSize, final long maxIdleTime)
+    {
+        this.maxSize = maxSize;
+        this.maxIdleTime = maxIdleTime;
+
+        if (maxSize > 0 && maxIdleTime > 0)
+        {
+            // an expired driver is quit at most half its idle time late
+            final long interval = Math.max(1, maxIdleTime / 2);
+            sweep = sweeper.scheduleWithFixedDelay(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    evictExpiredDrivers();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        else
+        {
+            sweep = null;
+        }
+    }
+
+    /**
+     * Returns the process-wide driver pool.
+     *
+     * @return the pool, or <code>null</code> if driver pooling is disabled
+     */
+    public static synchronized WebDriverPool getInstance()
+    {
+        if (instance == null)
+        {
+            final XltProperties props = XltProperties.getInstance();
+            if (props.getProperty(XltPropertyKey.DRIVER_POOL_ENABLED, false))
+            {
+                instance = new WebDriverPool(props.getProperty(XltPropertyKey.DRIVER_POOL_MAX_SIZE, DEFAULT_MAX_SIZE),
+                                             props.getProperty(XltPropertyKey.DRIVER_POOL_MAX_IDLE_TIME, DEFAULT_MAX_IDLE_TIME));
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Shuts the process-wide driver pool down, if there is one. A new pool will be created on the next call to
+     * {@link #getInstance()}. The runner calls this when the JVM exits, so pooled drivers are reused across all test
+     * classes of a run.
+     */
+    public static void shutdownInstance()
+    {
+        final WebDriverPool pool;
+        synchronized (WebDriverPool.class)
+        {
+            pool = instance;
+            instance = null;
+        }
+
+        if (pool != null)
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Records the creation of the given driver, so that its age can be told when it is returned to a pool. Drivers whose
+     * creation has not been recorded count as created when they are first returned to a pool.
+     *
+     * @param driver
+     *            the newly created driver
+     */
+    public static void recordCreation(final WebDriver driver)
+    {
+        creationTimes.put(driver, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the creation time of the given driver.
+     *
+     * @param driver
+     *            the driver
+     * @return the creation time, or the current time if the creation has not been recorded
+     */
+    private static long getCreationTime(final WebDriver driver)
+    {
+        final Long creationTime = creationTimes.get(driver);
+
+        return creationTime != null ? creationTime : System.currentTimeMillis();
+    }
+
+    /**
+     * Leases an idle driver suitable for the given browser configuration. Drivers that do not respond anymore are quit
+     * and skipped.
+     *
+     * @param config
+     *            the browser configuration
+     * @return an idle driver, or <code>null</code> if the pool has none available
+     */
+    public WebDriver lease(final BrowserConfigurationDto config)
+    {
+        final String key = getKey(config);
+
+        while (true)
+        {
+            final PooledDriver pooledDriver;
+            final List<WebDriver> expired;
+            synchronized (this)
+            {
+                expired = evictExpired();
+
+                final Deque<PooledDriver> drivers = idleDrivers.get(key);
+                pooledDriver = drivers == null ? null : drivers.pollLast();
+                if (pooledDriver != null)
+                {
+                    idleCount--;
+                }
+            }
+
+            for (final WebDriver expiredDriver : expired)
+            {
+                quit(expiredDriver);
+            }
+
+            if (pooledDriver == null)
+            {
+                return null;
+            }
+
+            if (isAlive(pooledDriver.driver))
+            {
+                return pooledDriver.driver;
+            }
+
+            XltLogger.runTimeLogger.debug("Discarding broken pooled driver for browser tag: " + config.getConfigTag());
+            quit(pooledDriver.driver);
+        }
+    }
+
+    /**
+     * Returns a driver to the pool. The driver is reset to a clean state first. If this fails, the driver is quit
+     * instead. If the pool is full, the least recently used idle driver is evicted. If the driver reached one of the
+     * recycling limits of its browser configuration, a replacement is launched in the background.
+     *
+     * @param config
+     *            the browser configuration the driver was created for
+     * @param driver
+     *            the driver
+     */
+    public void release(final BrowserConfigurationDto config, final WebDriver driver)
+    {
+        final Lifecycle lifecycle;
+        final boolean retiring;
+        final int uses;
+        synchronized (this)
+        {
+            Lifecycle knownLifecycle = lifecycles.get(driver);
+            if (knownLifecycle == null)
+            {
+                knownLifecycle = new Lifecycle(getCreationTime(driver));
+                lifecycles.put(driver, knownLifecycle);
+            }
+            lifecycle = knownLifecycle;
+            retiring = lifecycle.retiring;
+            uses = ++lifecycle.uses;
+        }
+
+        if (retiring)
+        {
+            // the driver was leased again while its replacement was launching
+            quit(driver);
+            return;
+        }
+
+        // check the memory before the page is unloaded
+        final boolean exhausted = isExhausted(config, driver, uses, System.currentTimeMillis() - lifecycle.createdAt);
+
+        if (!AnnotationRunnerHelper.getStateResetter(config).reset(driver))
+        {
+            quit(driver);
+            return;
+        }
+
+        final List<WebDriver> evicted = new ArrayList<WebDriver>();
+        synchronized (this)
+        {
+            evicted.addAll(evictExpired());
+            addIdle(config, driver, evicted);
+            lifecycle.retiring = exhausted;
+        }
+
+        for (final WebDriver evictedDriver : evicted)
+        {
+            quit(evictedDriver);
+        }
+
+        if (exhausted && !evicted.contains(driver))
+        {
+            replace(config, driver);
+        }
+    }
+
+    /**
+     * Quits the least recently used idle driver, and any driver that exceeded the maximum idle time, to make room for a
+     * new browser.
+     *
+     * @return whether a driver was quit
+     */
+    public boolean evictIdleDriver()
+    {
+        final List<WebDriver> evicted;
+        synchronized (this)
+        {
+            evicted = evictExpired();
+            if (evicted.isEmpty() && idleCount > 0)
+            {
+                evicted.add(evictOldest());
+            }
+        }
+
+        for (final WebDriver evictedDriver : evicted)
+        {
+            quit(evictedDriver);
+        }
+
+        return !evicted.isEmpty();
+    }
+
+    /**
+     * Quits all idle drivers that exceeded the maximum idle time. Called periodically in the background.
+     */
+    private void evictExpiredDrivers()
+    {
+        final List<WebDriver> expired;
+        synchronized (this)
+        {
+            expired = evictExpired();
+        }
+
+        for (final WebDriver expiredDriver : expired)
+        {
+            quit(expiredDriver);
+        }
+    }
+
+    /**
+     * Quits all idle drivers. Waits for replacements that are still launching and quits them as well, so no browser
+     * outlives the pool.
+     */
+    public void shutdown()
+    {
+        if (sweep != null)
+        {
+            sweep.cancel(false);
+        }
+
+        final List<WebDriver> drivers = new ArrayList<WebDriver>();
+        synchronized (this)
+        {
+            shutdown = true;
+
+            for (final Deque<PooledDriver> pooledDrivers : idleDrivers.values())
+            {
+                for (final PooledDriver pooledDriver : pooledDrivers)
+                {
+                    drivers.add(pooledDriver.driver);
+                }
+            }
+            idleDrivers.clear();
+            idleCount = 0;
+        }
+
+        for (final WebDriver driver : drivers)
+        {
+            quit(driver);
+        }
+
+        awaitReplacements();
+    }
+
+    /**
+     * Waits until all replacements that are still launching have been added to the pool or, after the shutdown, quit.
+     */
+    private synchronized void awaitReplacements()
+    {
+        final long deadline = System.currentTimeMillis() + REPLACEMENT_TIMEOUT;
+        try
+        {
+            long remaining;
+            while (pendingReplacements > 0 && (remaining = deadline - System.currentTimeMillis()) > 0)
+            {
+                wait(remaining);
+            }
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if (pendingReplacements > 0)
+        {
+            XltLogger.runTimeLogger.warn("Gave up waiting for " + pendingReplacements + " replacement driver(s) to launch");
+        }
+    }
+
+    /**
+     * Adds the given driver to the idle drivers. Evicts the least recently used idle drivers if the pool is full. Must
+     * be called while holding the lock.
+     *
+     * @param config
+     *            the browser configuration the driver was created for
+     * @param driver
+     *            the driver
+     * @param evicted
+     *            receives the evicted drivers, which still need to be quit, possibly including the given driver
+     */
+    private void addIdle(final BrowserConfigurationDto config, final WebDriver driver, final List<WebDriver> evicted)
+    {
+        if (maxSize <= 0 || shutdown)
+        {
+            evicted.add(driver);
+            return;
+        }
+
+        while (idleCount >= maxSize)
+        {
+            evicted.add(evictOldest());
+        }
+
+        final String key = getKey(config);
+        Deque<PooledDriver> drivers = idleDrivers.get(key);
+        if (drivers == null)
+        {
+            drivers = new ArrayDeque<PooledDriver>();
+            idleDrivers.put(key, drivers);
+        }
+        drivers.addLast(new PooledDriver(driver, System.currentTimeMillis()));
+        idleCount++;
+    }
+
+    /**
+     * Removes the given driver from the idle drivers. Must be called while holding the lock.
+     *
+     * @param config
+     *            the browser configuration the driver was created for
+     * @param driver
+     *            the driver
+     * @return whether the driver was idle
+     */
+    private boolean removeIdle(final BrowserConfigurationDto config, final WebDriver driver)
+    {
+        final String key = getKey(config);
+        final Deque<PooledDriver> drivers = idleDrivers.get(key);
+        if (drivers != null)
+        {
+            for (final Iterator<PooledDriver> it = drivers.iterator(); it.hasNext();)
+            {
+                if (it.next().driver == driver)
+                {
+                    it.remove();
+                    idleCount--;
+                    if (drivers.isEmpty())
+                    {
+                        idleDrivers.remove(key);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Launches a replacement for the given driver in the background. Once the replacement is ready, it is added to the
+     * idle drivers and the given driver is quit, unless it is in use. In that case, it is quit when it is returned.
+     *
+     * @param config
+     *            the browser configuration the driver was created for
+     * @param driver
+     *            the driver to retire
+     */
+    private void replace(final BrowserConfigurationDto config, final WebDriver driver)
+    {
+        XltLogger.runTimeLogger.debug("Recycling driver for browser tag: " + config.getConfigTag());
+
+        synchronized (this)
+        {
+            pendingReplacements++;
+        }
+
+        recycler.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    launchReplacement(config, driver);
+                }
+                finally
+                {
+                    synchronized (WebDriverPool.this)
+                    {
+                        pendingReplacements--;
+                        WebDriverPool.this.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Launches a replacement for the given driver and swaps it in. If the pool has been shut down in the meantime, the
+     * replacement is quit right away.
+     *
+     * @param config
+     *            the browser configuration the driver was created for
+     * @param driver
+     *            the driver to retire
+     */
+    private void launchReplacement(final BrowserConfigurationDto config, final WebDriver driver)
+    {
+        WebDriver replacement = null;
+        try
+        {
+            replacement = AnnotationRunnerHelper.createWebdriver(config, BrowserProfileRegistry.getInstance().getProxyConfiguration());
+        }
+        catch (final MalformedURLException | WebDriverException e)
+        {
+            XltLogger.runTimeLogger.warn("Failed to launch a replacement driver for browser tag: " + config.getConfigTag(), e);
+        }
+
+        final List<WebDriver> retired = new ArrayList<WebDriver>();
+        synchronized (this)
+        {
+            if (removeIdle(config, driver))
+            {
+                retired.add(driver);
+            }
+
+            if (replacement != null)
+            {
+                lifecycles.put(replacement, new Lifecycle(getCreationTime(replacement)));
+                addIdle(config, replacement, retired);
+            }
+        }
+
+        for (final WebDriver retiredDriver : retired)
+        {
+            quit(retiredDriver);
+        }
+    }
+
+    /**
+     * Returns whether the given driver reached one of the recycling limits of its browser configuration.
+     *
+     * @param config
+     *            the browser configuration the driver was created for
+     * @param driver
+     *            the driver
+     * @param uses
+     *            the number of test methods the driver has been used for
+     * @param age
+     *            the time in milliseconds since the driver was created
+     * @return whether the driver should be replaced
+     */
+    private static boolean isExhausted(final BrowserConfigurationDto config, final WebDriver driver, final int uses, final long age)
+    {
+        if (config.getRecycleMaxUses() > 0 && uses >= config.getRecycleMaxUses())
+        {
+            return true;
+        }
+
+        if (config.getRecycleMaxAge() > 0 && age >= config.getRecycleMaxAge())
+        {
+            return true;
+        }
+
+        if (config.getRecycleMaxMemory() > 0 && driver instanceof JavascriptExecutor)
+        {
+            try
+            {
+                final Object usedHeapSize = ((JavascriptExecutor) driver).executeScript(USED_HEAP_SIZE_SCRIPT);
+
+                return usedHeapSize instanceof Number && ((Number) usedHeapSize).longValue() >= config.getRecycleMaxMemory() * 1024 * 1024;
+            }
+            catch (final WebDriverException e)
+            {
+                // not all pages allow script execution
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes all idle drivers that exceeded the maximum idle time. Must be called while holding the lock.
+     *
+     * @return the removed drivers, which still need to be quit
+     */
+    private List<WebDriver> evictExpired()
+    {
+        final List<WebDriver> expired = new ArrayList<WebDriver>();
+        final long oldestAllowed = System.currentTimeMillis() - maxIdleTime;
+
+        for (final Iterator<Deque<PooledDriver>> it = idleDrivers.values().iterator(); it.hasNext();)
+        {
+            final Deque<PooledDriver> drivers = it.next();
+            while (!drivers.isEmpty() && drivers.peekFirst().idleSince < oldestAllowed)
+            {
+                expired.add(drivers.pollFirst().driver);
+                idleCount--;
+            }
+            if (drivers.isEmpty())
+            {
+                it.remove();
+            }
+        }
+
+        return expired;
+    }
+
+    /**
+     * Removes the least recently used idle driver. Must be called while holding the lock and only if there is at least
+     * one idle driver.
+     *
+     * @return the removed driver, which still needs to be quit
+     */
+    private WebDriver evictOldest()
+    {
+        Deque<PooledDriver> oldest = null;
+        for (final Deque<PooledDriver> drivers : idleDrivers.values())
+        {
+            if (!drivers.isEmpty() && (oldest == null || drivers.peekFirst().idleSince < oldest.peekFirst().idleSince))
+            {
+                oldest = drivers;
+            }
+        }
+
+        final WebDriver driver = oldest.pollFirst().driver;
+        idleCount--;
+
+        final Set<Map.Entry<String, Deque<PooledDriver>>> entries = idleDrivers.entrySet();
+        for (final Iterator<Map.Entry<String, Deque<PooledDriver>>> it = entries.iterator(); it.hasNext();)
+        {
+            if (it.next().getValue().isEmpty())
+            {
+                it.remove();
+            }
+        }
+
+        return driver;
+    }
+
+    /**
+     * Checks whether the given driver still responds.
+     *
+     * @param driver
+     *            the driver
+     * @return whether the driver is usable
+     */
+    private static boolean isAlive(final WebDriver driver)
+    {
+        try
+        {
+            driver.getWindowHandle();
+            return true;
+        }
+        catch (final WebDriverException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Quits the given driver and ignores any error.
+     *
+     * @param driver
+     *            the driver
+     */
+    private static void quit(final WebDriver driver)
+    {
+        try
+        {
+            driver.quit();
+        }
+        catch (final WebDriverException e)
+        {
+            // driver might already be gone, nothing we can do about it
+        }
+        finally
+        {
+            DriverAdmissionControl.releaseDriver(driver);
+        }
+    }
+
+    /**
+     * Returns the key under which drivers for the given configuration are pooled. The browser tag identifies the
+     * profile, and with it the capabilities.
+     *
+     * @param config
+     *            the browser configuration
+     * @return the pool key
+     */
+    private static String getKey(final BrowserConfigurationDto config)
+    {
+        return config.getConfigTag();
+    }
+
+    /**
+     * The usage of a driver since it was created.
+     */
+    private static class Lifecycle
+    {
+        private final long createdAt;
+
+        private int uses;
+
+        private boolean retiring;
+
+        private Lifecycle(final long createdAt)
+        {
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * An idle driver together with the time it was returned to the pool.
+     */
+    private static class PooledDriver
+    {
+        private final WebDriver driver;
+
+        private final long idleSince;
+
+        private PooledDriver(final WebDriver driver, final long idleSince)
+        {
+            this.driver = driver;
+            this.idleSince = idleSince;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package xltutil.dto;
 
 import org.openqa.selenium.remote.DesiredCapabilities;
 
+import xltutil.driver.DriverFactory;
+
 /**
  * POJO class to hold browser configurations
  */
@@ -21,6 +23,18 @@ public class BrowserConfigurationDto
 
     private boolean clientperformanceEnabled;
 
+    private boolean headless;
+
+    private boolean lowOverhead;
+
+    private int recycleMaxUses;
+
+    private long recycleMaxAge;
+
+    private long recycleMaxMemory;
+
+    private DriverFactory driverFactory;
+
     public String getConfigTag()
     {
         return browserTag;
@@ -90,4 +104,64 @@ public class BrowserConfigurationDto
     {
         this.clientperformanceEnabled = clientperformanceEnabled;
     }
+
+    public boolean isHeadless()
+    {
+        return headless;
+    }
+
+    public void setHeadless(boolean headless)
+    {
+        this.headless = headless;
+    }
+
+    public boolean isLowOverhead()
+    {
+        return lowOverhead;
+    }
+
+    public void setLowOverhead(boolean lowOverhead)
+    {
+        this.lowOverhead = lowOverhead;
+    }
+
+    public int getRecycleMaxUses()
+    {
+        return recycleMaxUses;
+    }
+
+    public void setRecycleMaxUses(int recycleMaxUses)
+    {
+        this.recycleMaxUses = recycleMaxUses;
+    }
+
+    public long getRecycleMaxAge()
+    {
+        return recycleMaxAge;
+    }
+
+    public void setRecycleMaxAge(long recycleMaxAge)
+    {
+        this.recycleMaxAge = recycleMaxAge;
+    }
+
+    public long getRecycleMaxMemory()
+    {
+        return recycleMaxMemory;
+    }
+
+    public void setRecycleMaxMemory(long recycleMaxMemory)
+    {
+        this.recycleMaxMemory = recycleMaxMemory;
+    }
+
+    public DriverFactory getDriverFactory()
+    {
+        return driverFactory;
+    }
+
+    public void setDriverFactory(DriverFactory driverFactory)
+    {
+        this.driverFactory = driverFactory;
+    }
 }
@@ -7,13 +7,20 @@ import org.apache.commons.lang3.StringUtils;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.driver.DriverFactory;
+import xltutil.driver.DriverFactoryRegistry;
 import xltutil.dto.BrowserConfigurationDto;
 import xltutil.interfaces.IMapper;
+import xltutil.runner.helper.XltPropertyKey;
 
 public class PropertiesToBrowserConfigurationMapper implements IMapper<Map<String, String>, BrowserConfigurationDto>
 {
     private static final String BROWSER = "browser";
 
+    private static final String CLIENT_PERFORMANCE_SUFFIX = "_clientperformance";
+
     private static final String BROWSER_VERSION = "version";
 
     private static final String PLATFORM = "platform";
@@ -30,6 +37,16 @@ public class PropertiesToBrowserConfigurationMapper implements IMapper<Map<Strin
 
     private static final String TEST_ENVIRONMENT = "testEnvironment";
 
+    private static final String HEADLESS = "headless";
+
+    private static final String LOW_OVERHEAD = "lowOverhead";
+
+    private static final String RECYCLE_MAX_USES = "recycle.maxUses";
+
+    private static final String RECYCLE_MAX_AGE = "recycle.maxAge";
+
+    private static final String RECYCLE_MAX_MEMORY = "recycle.maxMemory";
+
     // Appium specific properties
     private static final String APPIUM_VERSION = "appiumVersion";
 
@@ -52,57 +69,12 @@ public class PropertiesToBrowserConfigurationMapper implements IMapper<Map<Strin
         if (emulatedBrowser != null)
             emulatedBrowser = emulatedBrowser.toLowerCase();
 
-        if ("iphone".equals(emulatedBrowser))
-        {
-            capabilities = DesiredCapabilities.iphone();
-        }
-        else if ("ipad".equals(emulatedBrowser))
-        {
-            capabilities = DesiredCapabilities.ipad();
-        }
-        else if ("android".equals(emulatedBrowser))
-        {
-            capabilities = DesiredCapabilities.android();
-        }
-        else if ("firefox".equals(emulatedBrowser))
-        {
-            capabilities = DesiredCapabilities.firefox();
-        }
-        else if ("firefox_clientperformance".equals(emulatedBrowser))
-        {
-            capabilities = DesiredCapabilities.firefox();
-            clientperformanceEnabled = true;
-        }
-        else if ("chrome".equals(emulatedBrowser))
-        {
-            capabilities = DesiredCapabilities.chrome();
-        }
-        else if ("chrome_clientperformance".equals(emulatedBrowser))
-        {
-            capabilities = DesiredCapabilities.chrome();
-            clientperformanceEnabled = true;
-        }
-        else if ("internetexplorer".equals(emulatedBrowser))
+        // the factory for the browser provides the capabilities, unknown browsers default to Firefox
+        final DriverFactory browserFactory = DriverFactoryRegistry.getFactory(emulatedBrowser);
+        if (browserFactory != null)
         {
-            capabilities = DesiredCapabilities.internetExplorer();
-        }
-        else if("edge".equals(emulatedBrowser))
-        {
-            capabilities = DesiredCapabilities.edge();
-        }
-        else if("opera".equals(emulatedBrowser))
-        {
-            capabilities = DesiredCapabilities.operaBlink();
-        }
-        else if("phantomjs".equals(emulatedBrowser))
-        {
-            @SuppressWarnings("deprecation")
-            final DesiredCapabilities phantomCaps =  DesiredCapabilities.phantomjs();
-            capabilities = phantomCaps;
-        }
-        else if ("safari".equals(emulatedBrowser))
-        {
-            capabilities = DesiredCapabilities.safari();
+            capabilities = browserFactory.createCapabilities(emulatedBrowser.trim());
+            clientperformanceEnabled = emulatedBrowser.trim().endsWith(CLIENT_PERFORMANCE_SUFFIX);
         }
         else
         {
@@ -195,15 +167,68 @@ public class PropertiesToBrowserConfigurationMapper implements IMapper<Map<Strin
             }
         }
 
+        /*
+         * Headless and low-overhead mode for local browsers, the profile setting overrides the global one
+         */
+        final XltProperties props = XltProperties.getInstance();
+        r.setHeadless(getFlag(o, HEADLESS, props.getProperty(XltPropertyKey.HEADLESS, false)));
+        r.setLowOverhead(getFlag(o, LOW_OVERHEAD, props.getProperty(XltPropertyKey.LOW_OVERHEAD, false)));
+
+        /*
+         * Recycling of pooled and reused browsers, the profile setting overrides the global one
+         */
+        r.setRecycleMaxUses((int) getNumber(o, RECYCLE_MAX_USES, props.getProperty(XltPropertyKey.RECYCLE_MAX_USES, 0)));
+        r.setRecycleMaxAge(getNumber(o, RECYCLE_MAX_AGE, props.getProperty(XltPropertyKey.RECYCLE_MAX_AGE, 0L)));
+        r.setRecycleMaxMemory(getNumber(o, RECYCLE_MAX_MEMORY, props.getProperty(XltPropertyKey.RECYCLE_MAX_MEMORY, 0L)));
+
         capabilities.setCapability("name", o.get("name"));
         r.setCapabilities(capabilities);
         r.setConfigTag(o.get("browserTag"));
         r.setName(o.get("name"));
         r.setClientperformanceEnabled(clientperformanceEnabled);
 
+        // resolve the driver factory once, so creating a driver is a single call
+        r.setDriverFactory(DriverFactoryRegistry.bind(r));
+
         return r;
     }
 
+    /**
+     * Returns the boolean value of the given profile property, or the default value if the property is not set.
+     *
+     * @param o
+     *            the profile properties
+     * @param key
+     *            the property key
+     * @param defaultValue
+     *            the default value
+     * @return the value
+     */
+    private static boolean getFlag(final Map<String, String> o, final String key, final boolean defaultValue)
+    {
+        final String value = o.get(key);
+
+        return StringUtils.isBlank(value) ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Returns the numeric value of the given profile property, or the default value if the property is not set.
+     *
+     * @param o
+     *            the profile properties
+     * @param key
+     *            the property key
+     * @param defaultValue
+     *            the default value
+     * @return the value
+     */
+    private static long getNumber(final Map<String, String> o, final String key, final long defaultValue)
+    {
+        final String value = o.get(key);
+
+        return StringUtils.isBlank(value) ? defaultValue : Long.parseLong(value.trim());
+    }
+
     @Override
     public Map<String, String> fromDto(BrowserConfigurationDto o)
     {
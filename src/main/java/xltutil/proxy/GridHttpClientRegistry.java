@@ -0,0 +1,226 @@
+package xltutil.proxy;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import com.xceptance.xlt.api.util.XltLogger;
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.dto.ProxyConfigurationDto;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Process-wide registry of pooled HTTP clients used to talk to Selenium grids. There is one client per combination of
+ * grid URL, proxy and credentials, so that all remote driver sessions for the same grid share kept-alive connections
+ * instead of paying for new TCP/TLS handshakes and leaking a connection pool per session.
+ */
+public final class GridHttpClientRegistry
+{
+    /**
+     * The default maximum number of connections per route.
+     */
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+
+    /**
+     * The default time in milliseconds after which idle connections are closed.
+     */
+    private static final long DEFAULT_MAX_IDLE_TIME = 30000;
+
+    /**
+     * The shared clients mapped by client key. Guarded by the class lock.
+     */
+    private static final Map<String, CloseableHttpClient> clients = new HashMap<String, CloseableHttpClient>();
+
+    private GridHttpClientRegistry()
+    {
+    }
+
+    /**
+     * Returns the shared HTTP client for the given grid, proxy and credentials. The client is created on first use.
+     *
+     * @param proxyConfig
+     *            the proxy configuration, may be <code>null</code>
+     * @param gridUrl
+     *            the grid URL
+     * @param gridUsername
+     *            the grid user name, may be <code>null</code>
+     * @param gridPassword
+     *            the grid password, may be <code>null</code>
+     * @return the shared client
+     */
+    public static CloseableHttpClient getClient(final ProxyConfigurationDto proxyConfig, final URL gridUrl, final String gridUsername,
+                                                final String gridPassword)
+    {
+        return getClient(proxyConfig, gridUrl, gridUsername, gridPassword, 0, 0);
+    }
+
+    /**
+     * Returns the shared HTTP client for the given grid, proxy, credentials, and timeouts. The client is created on
+     * first use.
+     *
+     * @param proxyConfig
+     *            the proxy configuration, may be <code>null</code>
+     * @param gridUrl
+     *            the grid URL
+     * @param gridUsername
+     *            the grid user name, may be <code>null</code>
+     * @param gridPassword
+     *            the grid password, may be <code>null</code>
+     * @param connectTimeout
+     *            the time in milliseconds to establish or lease a connection, 0 for no timeout
+     * @param readTimeout
+     *            the time in milliseconds to wait for response data, 0 for no timeout
+     * @return the shared client
+     */
+    public static synchronized CloseableHttpClient getClient(final ProxyConfigurationDto proxyConfig, final URL gridUrl,
+                                                             final String gridUsername, final String gridPassword,
+                                                             final long connectTimeout, final long readTimeout)
+    {
+        final String key = getKey(proxyConfig, gridUrl, gridUsername, gridPassword) + "|" + connectTimeout + "|" + readTimeout;
+
+        CloseableHttpClient client = clients.get(key);
+        if (client == null)
+        {
+            client = createClient(proxyConfig, gridUrl, gridUsername, gridPassword, connectTimeout, readTimeout);
+            clients.put(key, client);
+        }
+
+        return client;
+    }
+
+    /**
+     * Closes all shared clients and their connection pools. Clients requested afterwards will be created anew.
+     */
+    public static void closeAll()
+    {
+        final List<CloseableHttpClient> clientsToClose;
+        synchronized (GridHttpClientRegistry.class)
+        {
+            clientsToClose = new ArrayList<CloseableHttpClient>(clients.values());
+            clients.clear();
+        }
+
+        for (final CloseableHttpClient client : clientsToClose)
+        {
+            try
+            {
+                client.close();
+            }
+            catch (final IOException e)
+            {
+                XltLogger.runTimeLogger.debug("Failed to close grid HTTP client", e);
+            }
+        }
+    }
+
+    /**
+     * Creates a new pooled client.
+     *
+     * @param proxyConfig
+     *            the proxy configuration, may be <code>null</code>
+     * @param gridUrl
+     *            the grid URL
+     * @param gridUsername
+     *            the grid user name, may be <code>null</code>
+     * @param gridPassword
+     *            the grid password, may be <code>null</code>
+     * @param connectTimeout
+     *            the time in milliseconds to establish or lease a connection, 0 for no timeout
+     * @param readTimeout
+     *            the time in milliseconds to wait for response data, 0 for no timeout
+     * @return the client
+     */
+    private static CloseableHttpClient createClient(final ProxyConfigurationDto proxyConfig, final URL gridUrl, final String gridUsername,
+                                                    final String gridPassword, final long connectTimeout, final long readTimeout)
+    {
+        final XltProperties props = XltProperties.getInstance();
+        final int maxConnectionsPerRoute = props.getProperty(XltPropertyKey.GRID_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+        final long maxIdleTime = props.getProperty(XltPropertyKey.GRID_MAX_IDLE_TIME, DEFAULT_MAX_IDLE_TIME);
+
+        // create a configuration for accessing target site via proxy (if a proxy is defined)
+        // the proxy and the destination site will have different or no credentials for accessing them
+        // so we need to create different authentication scopes and link them with the credentials
+        final BasicCredentialsProvider basicCredentialsProvider = new BasicCredentialsProvider();
+
+        // create credentials for proxy access
+        if (proxyConfig != null //
+            && !StringUtils.isEmpty(proxyConfig.getUsername()) //
+            && !StringUtils.isEmpty(proxyConfig.getPassword()))
+        {
+            final AuthScope proxyAuth = new AuthScope(proxyConfig.getHost(), Integer.valueOf(proxyConfig.getPort()));
+            final Credentials proxyCredentials = new UsernamePasswordCredentials(proxyConfig.getUsername(), proxyConfig.getPassword());
+            basicCredentialsProvider.setCredentials(proxyAuth, proxyCredentials);
+        }
+
+        // create credentials for target website
+        if (!StringUtils.isEmpty(gridUsername))
+        {
+            final AuthScope gridAuth = new AuthScope(gridUrl.getHost(), gridUrl.getPort());
+            final Credentials gridCredentials = new UsernamePasswordCredentials(gridUsername, gridPassword);
+            basicCredentialsProvider.setCredentials(gridAuth, gridCredentials);
+        }
+
+        // pool the connections, all sessions of a grid share the same route
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setMaxTotal(Math.max(maxConnectionsPerRoute, connectionManager.getMaxTotal()));
+
+        // now create a http client, set the custom proxy and inject the credentials
+        final HttpClientBuilder clientBuilder = HttpClientBuilder.create();
+        clientBuilder.setConnectionManager(connectionManager);
+        clientBuilder.setDefaultCredentialsProvider(basicCredentialsProvider);
+        clientBuilder.evictExpiredConnections();
+        clientBuilder.evictIdleConnections(maxIdleTime, TimeUnit.MILLISECONDS);
+        clientBuilder.setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout((int) connectTimeout)
+                                                           .setConnectionRequestTimeout((int) connectTimeout)
+                                                           .setSocketTimeout((int) readTimeout).build());
+        if (proxyConfig != null)
+            clientBuilder.setProxy(new HttpHost(proxyConfig.getHost(), Integer.valueOf(proxyConfig.getPort())));
+
+        return clientBuilder.build();
+    }
+
+    /**
+     * Returns the key under which the client for the given settings is registered.
+     *
+     * @param proxyConfig
+     *            the proxy configuration, may be <code>null</code>
+     * @param gridUrl
+     *            the grid URL
+     * @param gridUsername
+     *            the grid user name, may be <code>null</code>
+     * @param gridPassword
+     *            the grid password, may be <code>null</code>
+     * @return the key
+     */
+    private static String getKey(final ProxyConfigurationDto proxyConfig, final URL gridUrl, final String gridUsername,
+                                 final String gridPassword)
+    {
+        final StringBuilder key = new StringBuilder();
+        key.append(gridUrl.getProtocol()).append("://").append(gridUrl.getHost()).append(':').append(gridUrl.getPort());
+        key.append('|').append(gridUsername).append('|').append(gridPassword);
+        if (proxyConfig != null)
+        {
+            key.append('|').append(proxyConfig.getHost()).append(':').append(proxyConfig.getPort());
+            key.append('|').append(proxyConfig.getUsername()).append('|').append(proxyConfig.getPassword());
+        }
+
+        return key.toString();
+    }
+}
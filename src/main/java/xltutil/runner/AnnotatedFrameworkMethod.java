@@ -5,28 +5,52 @@ import java.util.Map;
 
 import org.junit.runners.model.FrameworkMethod;
 
+import xltutil.data.DataSetStore;
 import xltutil.dto.BrowserConfigurationDto;
 
 /**
  * A specialization of {@link FrameworkMethod}, which replaces the default method name with the provided name and the
  * test data set used.
+ * <p>
+ * To keep the footprint of a large number of instances small, the data set may be referenced by index into a shared
+ * {@link DataSetStore}, and the method name is computed on request only.
  */
 public class AnnotatedFrameworkMethod extends FrameworkMethod
 {
     /**
-     * The test data set to use.
+     * The format used if none is given explicitly.
+     */
+    private static final DisplayNameFormat DEFAULT_NAME_FORMAT = new DisplayNameFormat(DisplayNameFormat.DEFAULT_PATTERN, null);
+
+    /**
+     * The test data set to use, or <code>null</code> if the data set is held by {@link #dataSetStore}.
      */
     private final Map<String, String> dataSet;
 
+    /**
+     * The store holding the data set, or <code>null</code> if the data set is held by {@link #dataSet}.
+     */
+    private final DataSetStore dataSetStore;
+
+    /**
+     * The index of the test run.
+     */
+    private final int index;
+
     /**
      * The browser configuration to use.
      */
     private final BrowserConfigurationDto browserConfiguration;
 
     /**
-     * The new method name.
+     * The name to show for the test method.
+     */
+    private final String testMethodName;
+
+    /**
+     * The format of the method name.
      */
-    private final String name;
+    private final DisplayNameFormat nameFormat;
 
     /**
      * Constructor.
@@ -42,20 +66,62 @@ public class AnnotatedFrameworkMethod extends FrameworkMethod
      */
     public AnnotatedFrameworkMethod(final Method method, final String testMethodName, final BrowserConfigurationDto browserConfiguration,
         final int index, final Map<String, String> dataSet)
+    {
+        this(method, testMethodName, browserConfiguration, index, dataSet, DEFAULT_NAME_FORMAT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param method
+     *            the test method
+     * @param testMethodName
+     *            the name to show for the test method
+     * @param index
+     *            the index of the test run
+     * @param dataSet
+     *            the test data set
+     * @param nameFormat
+     *            the format of the method name
+     */
+    public AnnotatedFrameworkMethod(final Method method, final String testMethodName, final BrowserConfigurationDto browserConfiguration,
+        final int index, final Map<String, String> dataSet, final DisplayNameFormat nameFormat)
     {
         super(method);
 
         this.dataSet = dataSet;
+        this.dataSetStore = null;
+        this.index = index;
         this.browserConfiguration = browserConfiguration;
+        this.testMethodName = testMethodName;
+        this.nameFormat = nameFormat;
+    }
 
-        if (index == -1)
-        {
-            name = String.format("%s - %s", browserConfiguration.getName(), testMethodName);
-        }
-        else
-        {
-            name = String.format("%s - %s[%d] - %s", browserConfiguration.getName(), testMethodName, index, dataSet);
-        }
+    /**
+     * Constructor.
+     *
+     * @param method
+     *            the test method
+     * @param testMethodName
+     *            the name to show for the test method
+     * @param dataSetStore
+     *            the store holding the test data set
+     * @param index
+     *            the index of the test data set in the store
+     * @param nameFormat
+     *            the format of the method name
+     */
+    public AnnotatedFrameworkMethod(final Method method, final String testMethodName, final BrowserConfigurationDto browserConfiguration,
+        final DataSetStore dataSetStore, final int index, final DisplayNameFormat nameFormat)
+    {
+        super(method);
+
+        this.dataSet = null;
+        this.dataSetStore = dataSetStore;
+        this.index = index;
+        this.browserConfiguration = browserConfiguration;
+        this.testMethodName = testMethodName;
+        this.nameFormat = nameFormat;
     }
 
     /**
@@ -64,7 +130,13 @@ public class AnnotatedFrameworkMethod extends FrameworkMethod
     @Override
     public String getName()
     {
-        return name;
+        // not kept, the runner computes the name once for the description of the child
+        if (index == -1)
+        {
+            return browserConfiguration.getName() + " - " + testMethodName;
+        }
+
+        return nameFormat.format(browserConfiguration.getName(), testMethodName, index, getDataSet());
     }
 
     /**
@@ -90,8 +162,28 @@ public class AnnotatedFrameworkMethod extends FrameworkMethod
         return browserConfiguration;
     }
 
+    /**
+     * Returns the name shown for the test method.
+     *
+     * @return the test method name
+     */
+    public String getTestMethodName()
+    {
+        return testMethodName;
+    }
+
     public Map<String, String> getDataSet()
     {
-        return dataSet;
+        return dataSetStore != null ? dataSetStore.get(index) : dataSet;
+    }
+
+    /**
+     * Returns the index of the test data set.
+     *
+     * @return the index, or -1 if the test is not data-driven
+     */
+    public int getDataSetIndex()
+    {
+        return index;
     }
 }
@@ -2,27 +2,29 @@ package xltutil.runner;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 import org.junit.runner.Description;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.Statement;
 import org.openqa.selenium.WebDriver;
@@ -48,10 +50,26 @@ import com.xceptance.xlt.engine.util.XltTestRunner;
 
 import xltutil.AbstractAnnotatedScriptTestCase;
 import xltutil.annotation.TestTargets;
+import xltutil.data.ClasspathDataSetCache;
+import xltutil.data.CsvDataSetReader;
+import xltutil.data.DataSetStore;
+import xltutil.data.DataSetFileIndex;
+import xltutil.data.StreamingDataSetList;
+import xltutil.driver.AsyncDriverTeardown;
+import xltutil.driver.DriverAdmissionControl;
+import xltutil.driver.DriverPrefetcher;
+import xltutil.driver.DriverServiceRegistry;
+import xltutil.driver.GridSessionFactory;
+import xltutil.driver.WebDriverPool;
 import xltutil.dto.BrowserConfigurationDto;
 import xltutil.dto.ProxyConfigurationDto;
-import xltutil.mapper.PropertiesToProxyConfigurationMapper;
+import xltutil.proxy.GridHttpClientRegistry;
+import xltutil.runner.LazyChildList.ChildTemplate;
 import xltutil.runner.helper.AnnotationRunnerHelper;
+import xltutil.runner.helper.BrowserProfileRegistry;
+import xltutil.runner.helper.PhaseTimings;
+import xltutil.runner.helper.PhaseTimings.Phase;
+import xltutil.runner.helper.PhaseTimings.Timer;
 import xltutil.runner.helper.XltPropertyKey;
 
 /**
@@ -88,6 +106,11 @@ public class AnnotationRunner extends XltTestRunner
 
     private final ProxyConfigurationDto proxyConfig;
 
+    /**
+     * Whether to run the children of this runner in parallel.
+     */
+    private final boolean parallel;
+
     static
     {
         final String dataSetFileDirectoryName = XltProperties.getInstance().getProperty("com.xceptance.xlt.data.dataSets.dir", "");
@@ -115,10 +138,48 @@ public class AnnotationRunner extends XltTestRunner
         dataSetFileDirs.add(XlteniumScriptInterpreter.SCRIPTS_DIRECTORY);
     }
 
+    /**
+     * Whether the shutdown hook that releases the process-wide resources has been registered already. Guarded by the
+     * class.
+     */
+    private static boolean shutdownHookRegistered;
+
     /**
      * The JUnit children of this runner.
      */
-    private final List<FrameworkMethod> methods = new ArrayList<FrameworkMethod>();
+    private final List<FrameworkMethod> methods;
+
+    /**
+     * Quits the drivers of finished tests in the background, or <code>null</code> if drivers are quit synchronously.
+     */
+    private final AsyncDriverTeardown driverTeardown;
+
+    /**
+     * The idle remote sessions of this runner while it is running, which are reused by the next test method with the
+     * same browser configuration, or <code>null</code> if every test method gets a new remote session.
+     */
+    private volatile WebDriverPool remoteSessions;
+
+    /**
+     * Records the durations of the children, or <code>null</code> if durations are not recorded.
+     */
+    private final DurationHistory durationHistory;
+
+    /**
+     * Launches the browsers for upcoming test methods in the background while the runner is running, or
+     * <code>null</code> if browsers are not prefetched.
+     */
+    private volatile DriverPrefetcher prefetcher;
+
+    /**
+     * The filter applied to the children, or <code>null</code> if the children have not been filtered.
+     */
+    private Filter childFilter;
+
+    /**
+     * Whether data set files are read incrementally instead of being loaded completely.
+     */
+    private final boolean streamDataSets;
 
     /**
      * The instances of the test case mapped by test method.
@@ -147,33 +208,141 @@ public class AnnotationRunner extends XltTestRunner
             // get the browser configuration for this testcase
             final BrowserConfigurationDto config = frameworkMethod.getBrowserConfiguration();
 
-            // instantiate webdriver according to browser configuration
-            WebDriver driver = null;
+            final Timer setUpTimer = PhaseTimings.start(Phase.SET_UP, config);
             try
             {
-                driver = AnnotationRunnerHelper.createWebdriver(config, proxyConfig);
+                // reuse a remote session or lease a pooled webdriver if possible, take a prefetched one otherwise, and
+                // instantiate one according to browser configuration as a last resort; a prefetched browser not taken
+                // now is left for a later test method with this configuration
+                final WebDriverPool reusableSessions = getRemoteSessions(config);
+                WebDriver driver = reusableSessions != null ? reusableSessions.lease(config) : null;
+                if (driver == null)
+                {
+                    final WebDriverPool driverPool = WebDriverPool.getInstance();
+                    driver = driverPool != null ? driverPool.lease(config) : null;
+                }
+                if (driver == null)
+                {
+                    final DriverPrefetcher driverPrefetcher = prefetcher;
+                    driver = driverPrefetcher != null ? driverPrefetcher.take(config) : null;
+                }
+                if (driver == null)
+                {
+                    try
+                    {
+                        driver = AnnotationRunnerHelper.createWebdriver(config, proxyConfig);
+                    }
+                    catch (final MalformedURLException e)
+                    {
+                        throw new RuntimeException("An error occured during URL creation. See nested exception.", e);
+                    }
+                }
+
+                if (driver != null)
+                {
+                    // set browser window size
+                    final Timer windowSizeTimer = PhaseTimings.start(Phase.WINDOW_SIZE, config);
+                    try
+                    {
+                        AnnotationRunnerHelper.setBrowserWindowSize(config, driver);
+                    }
+                    finally
+                    {
+                        PhaseTimings.stop(windowSizeTimer);
+                    }
+
+                    testInstance.setWebDriver(driver);
+                    testInstance.setTestDataSet(frameworkMethod.getDataSet());
+
+                    _testInstances.put(frameworkMethod, testInstance);
+
+                }
+                else
+                {
+                    throw new RuntimeException("Could not create driver for browsertag: " + config.getConfigTag()
+                                               + ". Please check your browserconfigurations.");
+                }
             }
-            catch (final MalformedURLException e)
+            finally
             {
-                throw new RuntimeException("An error occured during URL creation. See nested exception.", e);
+                PhaseTimings.stop(setUpTimer);
             }
+        }
+    }
 
-            if (driver != null)
-            {
-                // set browser window size
-                AnnotationRunnerHelper.setBrowserWindowSize(config, driver);
-                testInstance.setWebDriver(driver);
-                testInstance.setTestDataSet(frameworkMethod.getDataSet());
+    /**
+     * Tears the test instance down. If remote sessions are reused or driver pooling is enabled, the browser is kept for
+     * the next test method, otherwise it is quit. The browser of a failed test method is always quit, as its state is
+     * unknown.
+     *
+     * @param method
+     *            the method
+     * @param test
+     *            the test instance
+     * @param failed
+     *            whether the test method has failed
+     */
+    protected void tearDownTest(final FrameworkMethod method, final Object test, final boolean failed)
+    {
+        Timer timer = null;
+        if (method instanceof AnnotatedFrameworkMethod)
+        {
+            timer = PhaseTimings.start(Phase.TEAR_DOWN, ((AnnotatedFrameworkMethod) method).getBrowserConfiguration());
+        }
 
-                _testInstances.put(frameworkMethod, testInstance);
+        try
+        {
+            releaseDriver(method, test, failed);
+        }
+        finally
+        {
+            PhaseTimings.stop(timer);
+        }
+    }
 
-            }
-            else
+    /**
+     * Keeps the remote session of the test instance for the next test method if remote sessions are reused, returns the
+     * browser to the pool if driver pooling is enabled, and quits it otherwise.
+     *
+     * @param method
+     *            the method
+     * @param test
+     *            the test instance
+     * @param failed
+     *            whether the test method has failed
+     */
+    private void releaseDriver(final FrameworkMethod method, final Object test, final boolean failed)
+    {
+        if (!failed && test instanceof AbstractWebDriverTestCase && method instanceof AnnotatedFrameworkMethod)
+        {
+            final BrowserConfigurationDto config = ((AnnotatedFrameworkMethod) method).getBrowserConfiguration();
+            final WebDriverPool reusableSessions = getRemoteSessions(config);
+            final WebDriverPool driverPool = reusableSessions != null ? reusableSessions : WebDriverPool.getInstance();
+            if (driverPool != null)
             {
-                throw new RuntimeException("Could not create driver for browsertag: " + config.getConfigTag()
-                                           + ". Please check your browserconfigurations.");
+                final WebDriver webDriver = ((AbstractWebDriverTestCase) test).getWebDriver();
+                if (webDriver != null)
+                {
+                    driverPool.release(config, webDriver);
+                }
+                return;
             }
         }
+
+        tearDownTest(test);
+    }
+
+    /**
+     * Returns the pool of idle remote sessions if the remote sessions of the given browser configuration are reused
+     * across test methods.
+     *
+     * @param config
+     *            the browser configuration
+     * @return the pool, or <code>null</code> if the sessions are not reused
+     */
+    private WebDriverPool getRemoteSessions(final BrowserConfigurationDto config)
+    {
+        return AnnotationRunnerHelper.isLocal(config) ? null : remoteSessions;
     }
 
     /**
@@ -189,6 +358,13 @@ public class AnnotationRunner extends XltTestRunner
             final WebDriver webDriver = ((AbstractWebDriverTestCase) test).getWebDriver();
             if (webDriver != null)
             {
+                if (driverTeardown != null)
+                {
+                    // quit in the background, the next test does not need to wait for it
+                    driverTeardown.quit(webDriver);
+                    return;
+                }
+
                 try
                 {
                     webDriver.getWindowHandle();
@@ -197,10 +373,18 @@ public class AnnotationRunner extends XltTestRunner
                 {
                     // WebDriver might already be closed
                     // eat exception and return
+                    DriverAdmissionControl.releaseDriver(webDriver);
                     return;
                 }
 
-                webDriver.quit();
+                try
+                {
+                    webDriver.quit();
+                }
+                finally
+                {
+                    DriverAdmissionControl.releaseDriver(webDriver);
+                }
             }
         }
     }
@@ -220,16 +404,22 @@ public class AnnotationRunner extends XltTestRunner
         // get the short (package-less) test case name
         final String shortTestCaseName = StringUtils.contains(testCaseName, '.') ? StringUtils.substringAfterLast(testCaseName, ".")
                                                                                  : testCaseName;
+        final XltProperties xltProperties = XltProperties.getInstance();
+
+        streamDataSets = xltProperties.getProperty(XltPropertyKey.DATA_SETS_STREAMING_ENABLED, false);
+
         // get the data sets
         final List<Map<String, String>> dataSets = getDataSets(testCaseClass, testCaseName, shortTestCaseName, dataSetFileDirs);
 
-        final XltProperties xltProperties = XltProperties.getInstance();
+        parallel = xltProperties.getProperty(XltPropertyKey.PARALLEL_ENABLED, false);
+        driverTeardown = AsyncDriverTeardown.fromProperties();
 
-        // parse proxy settings
-        proxyConfig = new PropertiesToProxyConfigurationMapper().toDto(xltProperties);
+        // get the proxy settings and browser profiles, both are parsed again only if the properties have changed
+        final BrowserProfileRegistry browserProfileRegistry = BrowserProfileRegistry.refresh();
+        proxyConfig = browserProfileRegistry.getProxyConfiguration();
 
-        // parse browser properties
-        final Map<String, BrowserConfigurationDto> parsedBrowserProperties = AnnotationRunnerHelper.parseBrowserProperties(xltProperties);
+        // the timings check whether they are enabled for each phase, so read the setting once per test class
+        PhaseTimings.refresh();
 
         final String ieDriverPath = xltProperties.getProperty(XltPropertyKey.WEBDRIVER_PATH_IE);
         final String chromeDriverPath = xltProperties.getProperty(XltPropertyKey.WEBDRIVER_PATH_CHROME);
@@ -282,6 +472,18 @@ public class AnnotationRunner extends XltTestRunner
             browserDefinitions = Arrays.asList(browserDefinitionsProperty.split(","));
         }
 
+        final List<FrameworkMethod> children = new ArrayList<FrameworkMethod>();
+        final List<ChildTemplate> childTemplates = new ArrayList<ChildTemplate>();
+        // without any data set, each method runs once with an empty data set, just as for eagerly read data sets
+        final boolean lazyChildren = dataSets instanceof StreamingDataSetList && !dataSets.isEmpty();
+
+        // hold the data sets in a compact store which the children refer to by index
+        final DataSetStore dataSetStore = lazyChildren || dataSets == null ? null : DataSetStore.of(dataSets);
+        final DisplayNameFormat nameFormat = DisplayNameFormat.fromProperties();
+
+        // the test methods are the same for all targets
+        final List<FrameworkMethod> testMethods = getTestClass().getAnnotatedMethods(Test.class);
+
         // Get annotations of test class.
         for (final TestTargets annotation : AnnotationRunnerHelper.getTestTargets(testCaseClass))
         {
@@ -295,13 +497,13 @@ public class AnnotationRunner extends XltTestRunner
                     continue;
                 }
 
-                final BrowserConfigurationDto foundBrowserConfiguration = parsedBrowserProperties.get(target);
+                final BrowserConfigurationDto foundBrowserConfiguration = browserProfileRegistry.getBrowserConfiguration(target);
                 if (foundBrowserConfiguration == null)
                 {
                     throw new IllegalArgumentException("Can not find browser configuration with tag: " + target);
                 }
 
-                for (final FrameworkMethod frameworkMethod : getTestClass().getAnnotatedMethods(Test.class))
+                for (final FrameworkMethod frameworkMethod : testMethods)
                 {
                     // get the test method to run
                     final Method testMethod = frameworkMethod.getMethod();
@@ -310,17 +512,22 @@ public class AnnotationRunner extends XltTestRunner
                     final String testMethodName = (defaultTestMethodName == null) ? testMethod.getName() : defaultTestMethodName;
 
                     // create the JUnit children
-                    if (dataSets == null || dataSets.isEmpty())
+                    if (lazyChildren)
                     {
-                        methods.add(new AnnotatedFrameworkMethod(frameworkMethod.getMethod(), testMethodName, foundBrowserConfiguration, -1, EMPTY_DATA_SET));
+                        // children are created on demand for each data set
+                        childTemplates.add(new ChildTemplate(frameworkMethod.getMethod(), testMethodName, foundBrowserConfiguration, nameFormat));
+                    }
+                    else if (dataSets == null || dataSets.isEmpty())
+                    {
+                        children.add(new AnnotatedFrameworkMethod(frameworkMethod.getMethod(), testMethodName, foundBrowserConfiguration, -1, EMPTY_DATA_SET));
                     }
                     else
                     {
                         // run the method once for each data set
-                        int i = 0;
-                        for (final Map<String, String> dataSet : dataSets)
+                        for (int i = 0; i < dataSetStore.size(); i++)
                         {
-                            methods.add(new AnnotatedFrameworkMethod(frameworkMethod.getMethod(), testMethodName, foundBrowserConfiguration, i++, dataSet));
+                            children.add(new AnnotatedFrameworkMethod(frameworkMethod.getMethod(), testMethodName, foundBrowserConfiguration,
+                                                                      dataSetStore, i, nameFormat));
                         }
                     }
                 }
@@ -331,6 +538,21 @@ public class AnnotationRunner extends XltTestRunner
         if (!foundTargetsAnnotation)
             throw new IllegalArgumentException("Could not find any '@TestTargets' annotation in class '" + testCaseClass.getCanonicalName()
                                                + "' or one of its super classes.");
+
+        // keep only the children of this JVM's shard, if the matrix is split across several JVMs
+        durationHistory = DurationHistory.getInstance();
+        final ChildSharding sharding = ChildSharding.fromProperties();
+        if (lazyChildren)
+        {
+            methods = new LazyChildList(childTemplates, dataSets, sharding, testCaseClass.getName());
+        }
+        else
+        {
+            final List<FrameworkMethod> shardChildren = sharding == null ? children : sharding.select(testCaseClass.getName(), children);
+
+            // run the longest children first to cut the tail of parallel and sharded runs
+            methods = durationHistory == null ? shardChildren : durationHistory.sortLongestFirst(testCaseClass.getName(), shardChildren);
+        }
     }
 
     /**
@@ -350,14 +572,255 @@ public class AnnotationRunner extends XltTestRunner
     {
         final Description description = Description.createSuiteDescription(getTestClass().getJavaClass());
 
-        for (final FrameworkMethod frameworkMethod : getChildren())
+        if (methods instanceof LazyChildList)
         {
-            description.addChild(Description.createTestDescription(getTestClass().getJavaClass(), frameworkMethod.getName()));
+            // do not materialize all children, describe each browser configuration and test method only once
+            for (final ChildTemplate childTemplate : ((LazyChildList) methods).getTemplates())
+            {
+                description.addChild(Description.createSuiteDescription(childTemplate.getName()));
+            }
+        }
+        else
+        {
+            // the descriptions are cached per child, so each name is computed once and held by its description only
+            for (final FrameworkMethod frameworkMethod : getChildren())
+            {
+                description.addChild(describeChild(frameworkMethod));
+            }
         }
 
         return description;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Description describeChild(final FrameworkMethod method)
+    {
+        if (methods instanceof LazyChildList)
+        {
+            // lazily created children must not be cached, create their description each time
+            return Description.createTestDescription(getTestClass().getJavaClass(), method.getName(), method.getAnnotations());
+        }
+
+        return super.describeChild(method);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run(final RunNotifier notifier)
+    {
+        registerShutdownHook();
+
+        if (parallel)
+        {
+            // use a fresh scheduler for each run as it cannot be reused once finished
+            setScheduler(new ParallelRunnerScheduler(getTestClass().getJavaClass().getSimpleName(), ConcurrencyLimits.getThreadCount()));
+        }
+
+        super.run(notifier);
+    }
+
+    /**
+     * Registers the shutdown hook that releases the process-wide resources, if not done yet. The resources are shared
+     * by all test classes of a run, e.g. of a suite, so they are released only when the JVM exits.
+     */
+    private static synchronized void registerShutdownHook()
+    {
+        if (!shutdownHookRegistered)
+        {
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // quit pooled browsers before their driver servers and grid connections go away
+                    WebDriverPool.shutdownInstance();
+                    DriverServiceRegistry.stopAll();
+                    GridHttpClientRegistry.closeAll();
+                    PhaseTimings.logSummary();
+                    DriverAdmissionControl.logStatisticsInstance();
+                    GridSessionFactory.logStatistics();
+                    DurationHistory.flushInstance();
+                }
+            }, "MultiBrowser-Shutdown"));
+            shutdownHookRegistered = true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Statement childrenInvoker(final RunNotifier notifier)
+    {
+        final Statement childrenStatement = super.childrenInvoker(notifier);
+
+        return new Statement()
+        {
+            @Override
+            public void evaluate() throws Throwable
+            {
+                // the pool sweeps its idle sessions in the background, so create it only when the runner runs
+                final XltProperties xltProperties = XltProperties.getInstance();
+                if (xltProperties.getProperty(XltPropertyKey.GRID_SESSION_REUSE_ENABLED, false))
+                {
+                    // the idle sessions are limited by the number of test methods running at the same time
+                    remoteSessions = new WebDriverPool(Integer.MAX_VALUE,
+                                                       xltProperties.getProperty(XltPropertyKey.GRID_SESSION_REUSE_MAX_IDLE_TIME, 60000L));
+                }
+
+                prefetcher = DriverPrefetcher.fromProperties(getChildConfigurations(), proxyConfig,
+                                                             parallel ? ConcurrencyLimits.getThreadCount() : 1);
+                if (prefetcher != null)
+                {
+                    prefetcher.start();
+                }
+
+                try
+                {
+                    childrenStatement.evaluate();
+                }
+                finally
+                {
+                    if (prefetcher != null)
+                    {
+                        prefetcher.shutdown(driverTeardown);
+                        prefetcher = null;
+                    }
+
+                    if (remoteSessions != null)
+                    {
+                        remoteSessions.shutdown();
+                        remoteSessions = null;
+                    }
+
+                    if (driverTeardown != null)
+                    {
+                        // do not report completion before all browsers are gone
+                        driverTeardown.awaitCompletion();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void filter(final Filter filter) throws NoTestsRemainException
+    {
+        super.filter(filter);
+
+        // remember the filter, as the filtered children are not accessible
+        childFilter = childFilter == null ? filter : childFilter.intersect(filter);
+    }
+
+    /**
+     * Returns the browser configurations of the children that are actually run, in the order they are run. Children
+     * that are ignored or removed by a filter are skipped. The children are walked lazily.
+     *
+     * @return the browser configurations
+     */
+    private Iterator<BrowserConfigurationDto> getChildConfigurations()
+    {
+        final Iterator<FrameworkMethod> children = methods.iterator();
+        final Filter filter = childFilter;
+
+        return new Iterator<BrowserConfigurationDto>()
+        {
+            private BrowserConfigurationDto next;
+
+            @Override
+            public boolean hasNext()
+            {
+                while (next == null && children.hasNext())
+                {
+                    final FrameworkMethod child = children.next();
+                    if (child instanceof AnnotatedFrameworkMethod && !isIgnored(child)
+                        && (filter == null || filter.shouldRun(describeChild(child))))
+                    {
+                        next = ((AnnotatedFrameworkMethod) child).getBrowserConfiguration();
+                    }
+                }
+
+                return next != null;
+            }
+
+            @Override
+            public BrowserConfigurationDto next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                final BrowserConfigurationDto result = next;
+                next = null;
+
+                return result;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void runChild(final FrameworkMethod method, final RunNotifier notifier)
+    {
+        if (parallel && method instanceof AnnotatedFrameworkMethod)
+        {
+            // respect the concurrency limits of the browser tag and test environment, possibly on another thread
+            try
+            {
+                ParallelRunnerScheduler.runWithinLimits(((AnnotatedFrameworkMethod) method).getBrowserConfiguration(), new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        runChildReporting(method, notifier);
+                    }
+                });
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                notifier.fireTestFailure(new Failure(describeChild(method), e));
+            }
+        }
+        else
+        {
+            runChildReporting(method, notifier);
+        }
+    }
+
+    /**
+     * Runs the given child on the current thread and reports its phase timings.
+     *
+     * @param method
+     *            the child
+     * @param notifier
+     *            the notifier
+     */
+    private void runChildReporting(final FrameworkMethod method, final RunNotifier notifier)
+    {
+        // this thread runs the test, so it has the test's session
+        PhaseTimings.setReporting(true);
+        try
+        {
+            super.runChild(method, notifier);
+        }
+        finally
+        {
+            PhaseTimings.setReporting(false);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -368,7 +831,29 @@ public class AnnotationRunner extends XltTestRunner
         setUpTest(method, test);
 
         // the real job is done here
-        return super.methodInvoker(method, test);
+        final Statement methodStatement = super.methodInvoker(method, test);
+        if (!(method instanceof AnnotatedFrameworkMethod) || !PhaseTimings.isEnabled())
+        {
+            return methodStatement;
+        }
+
+        final BrowserConfigurationDto config = ((AnnotatedFrameworkMethod) method).getBrowserConfiguration();
+        return new Statement()
+        {
+            @Override
+            public void evaluate() throws Throwable
+            {
+                final Timer timer = PhaseTimings.start(Phase.TEST, config);
+                try
+                {
+                    methodStatement.evaluate();
+                }
+                finally
+                {
+                    PhaseTimings.stop(timer);
+                }
+            }
+        };
     }
 
     /**
@@ -385,15 +870,24 @@ public class AnnotationRunner extends XltTestRunner
             @Override
             public void evaluate() throws Throwable
             {
+                final long startTime = System.nanoTime();
+                boolean failed = true;
                 try
                 {
                     // the real job is done here
                     originalStatement.evaluate();
+                    failed = false;
                 }
                 finally
                 {
-                    // quit browser
-                    tearDownTest(_testInstances.remove(method)); // get test instance and remove it
+                    // quit browser or keep it for the next test method
+                    tearDownTest(method, _testInstances.remove(method), failed); // get test instance and remove it
+
+                    if (durationHistory != null && method instanceof AnnotatedFrameworkMethod)
+                    {
+                        durationHistory.record(ChildSharding.getKey(getTestClass().getName(), (AnnotatedFrameworkMethod) method),
+                                               (System.nanoTime() - startTime) / 1000000);
+                    }
                 }
             }
         };
@@ -447,7 +941,7 @@ public class AnnotationRunner extends XltTestRunner
         if (specificFileName.length() != 0)
         {
             // there is a specific file
-            File batchDataFile = new File(specificFileName);
+            final File batchDataFile = new File(specificFileName);
             if (batchDataFile.isAbsolute())
             {
                 // absolute -> try it as is
@@ -458,10 +952,9 @@ public class AnnotationRunner extends XltTestRunner
                 // relative -> search for it in the usual directories
                 for (final File directory : dataSetFileDirs)
                 {
-                    batchDataFile = new File(directory, specificFileName);
-                    if (batchDataFile.isFile())
+                    if (DataSetFileIndex.isFile(directory, specificFileName))
                     {
-                        return readDataSets(batchDataFile);
+                        return readDataSets(new File(directory, specificFileName));
                     }
                 }
 
@@ -515,10 +1008,9 @@ public class AnnotationRunner extends XltTestRunner
         {
             for (final String fileName : fileNames)
             {
-                final File batchDataFile = new File(directory, fileName);
-                if (batchDataFile.isFile())
+                if (DataSetFileIndex.isFile(directory, fileName))
                 {
-                    return readDataSets(batchDataFile);
+                    return readDataSets(new File(directory, fileName));
                 }
             }
         }
@@ -526,33 +1018,19 @@ public class AnnotationRunner extends XltTestRunner
         // look for a data set file in the class path
         for (final String fileName : fileNames)
         {
-            try (final InputStream input = testClass.getResourceAsStream("/" + fileName))
+            final URL resource = testClass.getResource("/" + fileName);
+            if (resource != null)
             {
-                if (input != null)
-                {
-                    File batchDataFile = null;
+                XltLogger.runTimeLogger.debug("Test data set resource used: " + resource);
 
-                    try
-                    {
-                        // copy the stream to a temporary file
-                        final String extension = "." + FilenameUtils.getExtension(fileName);
-                        batchDataFile = File.createTempFile("dataSets_", extension);
-                        try (final OutputStream output = new FileOutputStream(batchDataFile))
-                        {
-
-                            IOUtils.copy(input, output);
-                            output.flush();
-
-                            // read the data sets from the temporary file
-                            return readDataSets(batchDataFile);
-                        }
-                    }
-                    finally
-                    {
-                        // clean up
-                        FileUtils.deleteQuietly(batchDataFile);
-                    }
+                if (isStreamable(fileName))
+                {
+                    // read the data sets incrementally right from the class path
+                    return new StreamingDataSetList(resource);
                 }
+
+                // read the data sets right from the class path, test classes using the same resource share the result
+                return ClasspathDataSetCache.getDataSets(resource);
             }
         }
 
@@ -568,15 +1046,46 @@ public class AnnotationRunner extends XltTestRunner
      * @return the data sets
      * @throws DataSetProviderException
      *             if there is no responsible data set provider
+     * @throws IOException
+     *             if the data set file cannot be read
      */
-    private List<Map<String, String>> readDataSets(final File dataSetsFile) throws DataSetProviderException
+    private List<Map<String, String>> readDataSets(final File dataSetsFile) throws DataSetProviderException, IOException
     {
         XltLogger.runTimeLogger.debug("Test data set file used: " + dataSetsFile.getAbsolutePath());
 
+        if (isStreamable(dataSetsFile.getName()))
+        {
+            return new StreamingDataSetList(dataSetsFile.toURI().toURL());
+        }
+
         final DataSetProviderFactory dataSetProviderFactory = DataSetProviderFactory.getInstance();
         final String fileExtension = FilenameUtils.getExtension(dataSetsFile.getName());
         final DataSetProvider dataSetProvider = dataSetProviderFactory.createDataSetProvider(fileExtension);
 
         return dataSetProvider.getAllDataSets(dataSetsFile);
     }
+
+    /**
+     * Checks whether the data sets in the given file are to be read incrementally. This is the case if streaming is
+     * enabled, the file is a CSV file, and the XLT settings for CSV files can be honored when streaming.
+     *
+     * @param fileName
+     *            the data set file name
+     * @return whether to stream the data sets
+     */
+    private boolean isStreamable(final String fileName)
+    {
+        if (!streamDataSets || !"csv".equalsIgnoreCase(FilenameUtils.getExtension(fileName)))
+        {
+            return false;
+        }
+
+        if (!CsvDataSetReader.isCompatible())
+        {
+            XltLogger.runTimeLogger.warn("Data sets of " + fileName + " are read completely, as the CSV settings do not allow streaming");
+            return false;
+        }
+
+        return true;
+    }
 }
@@ -0,0 +1,17 @@
+package xltutil.runner;
+
+/**
+ * Estimates how long a child of an {@link AnnotationRunner} will take to run. Used to balance the children across
+ * shards and to schedule the longest children first.
+ */
+public interface ChildCostModel
+{
+    /**
+     * Returns the estimated cost of the child with the given key, for example its last known duration in milliseconds.
+     *
+     * @param childKey
+     *            the key of the child, see {@link ChildSharding#getKey(String, AnnotatedFrameworkMethod)}
+     * @return the estimated cost, or a negative value if unknown
+     */
+    long getCost(String childKey);
+}
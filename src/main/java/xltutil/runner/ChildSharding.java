@@ -0,0 +1,321 @@
+package xltutil.runner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.runners.model.FrameworkMethod;
+
+import com.xceptance.xlt.api.util.XltLogger;
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Partitions the children of an {@link AnnotationRunner} (browser configuration x test method x data set) across
+ * several JVMs, so that each JVM runs a deterministic share of the test matrix. Every JVM is configured with the same
+ * shard count and its own shard index.
+ * <p>
+ * Two strategies are supported:
+ * <ul>
+ * <li><code>hash</code>: each child is assigned by the hash of its key. This needs no coordination at all, but
+ * balances the number of children only.</li>
+ * <li><code>cost</code>: the children are distributed longest-first to the least loaded shard, based on the costs
+ * reported by a {@link ChildCostModel}. Children without a known cost count as average. All JVMs must see the same
+ * costs for the partitions to be disjoint, so the cost model must be backed by data shared by all JVMs. The default is
+ * a {@link HistoryCostModel} reading a history file given to all JVMs; the local {@link DurationHistory} a JVM writes
+ * while running is not suitable. Falls back to <code>hash</code> if there is no cost model or the children are created
+ * lazily.</li>
+ * </ul>
+ * The children are balanced per test class. Each test class starts from empty shards, as the JVMs may see the test
+ * classes in different orders. Among equally loaded shards, the shard is chosen by a hash of the class name, so that
+ * the remainder of each class lands on a different shard instead of always on the first one.
+ * The sharding is opt-in, see {@link XltPropertyKey#SHARD_COUNT}.
+ */
+public class ChildSharding
+{
+    /**
+     * The index of the shard to run.
+     */
+    private final int index;
+
+    /**
+     * The total number of shards.
+     */
+    private final int count;
+
+    /**
+     * The cost model for cost-aware balancing, or <code>null</code> to balance by hash.
+     */
+    private final ChildCostModel costModel;
+
+    /**
+     * Constructor.
+     *
+     * @param index
+     *            the index of the shard to run, starting at 0
+     * @param count
+     *            the total number of shards
+     * @param costModel
+     *            the cost model for cost-aware balancing, or <code>null</code> to balance by hash
+     */
+    public ChildSharding(final int index, final int count, final ChildCostModel costModel)
+    {
+        if (count < 1 || index < 0 || index >= count)
+        {
+            throw new IllegalArgumentException("Invalid shard index " + index + " for shard count " + count);
+        }
+
+        this.index = index;
+        this.count = count;
+        this.costModel = costModel;
+    }
+
+    /**
+     * Returns the sharding as configured in the XLT properties. The <code>cost</code> strategy uses the configured cost
+     * model class or, if none, the shard history file, as only data shared by all JVMs yields disjoint partitions.
+     * Without either, the children are balanced by hash.
+     *
+     * @return the sharding, or <code>null</code> if sharding is disabled
+     */
+    public static ChildSharding fromProperties()
+    {
+        final XltProperties props = XltProperties.getInstance();
+
+        final int count = props.getProperty(XltPropertyKey.SHARD_COUNT, 1);
+        if (count <= 1)
+        {
+            return null;
+        }
+
+        final int index = props.getProperty(XltPropertyKey.SHARD_INDEX, 0);
+
+        ChildCostModel costModel = null;
+        if ("cost".equalsIgnoreCase(props.getProperty(XltPropertyKey.SHARD_STRATEGY, "hash")))
+        {
+            final String costModelClassName = props.getProperty(XltPropertyKey.SHARD_COST_MODEL, "");
+            costModel = StringUtils.isBlank(costModelClassName) ? HistoryCostModel.getInstance() : createCostModel(costModelClassName.trim());
+            if (costModel == null)
+            {
+                XltLogger.runTimeLogger.warn("Neither a cost model nor a history file configured for the shard strategy 'cost', "
+                                             + "balancing by hash instead");
+            }
+        }
+
+        return new ChildSharding(index, count, costModel);
+    }
+
+    /**
+     * Returns the key of a child, which is stable across runs and JVMs.
+     *
+     * @param className
+     *            the name of the test class
+     * @param configTag
+     *            the browser tag
+     * @param testMethodName
+     *            the test method name
+     * @param dataSetIndex
+     *            the data set index, or -1 if the test is not data-driven
+     * @return the key
+     */
+    public static String getKey(final String className, final String configTag, final String testMethodName, final int dataSetIndex)
+    {
+        return className + "|" + configTag + "|" + testMethodName + "|" + dataSetIndex;
+    }
+
+    /**
+     * Returns the key of the given child, which is stable across runs and JVMs.
+     *
+     * @param className
+     *            the name of the test class
+     * @param child
+     *            the child
+     * @return the key
+     */
+    public static String getKey(final String className, final AnnotatedFrameworkMethod child)
+    {
+        return getKey(className, child.getBrowserConfiguration().getConfigTag(), child.getTestMethodName(), child.getDataSetIndex());
+    }
+
+    /**
+     * Returns whether the child with the given key belongs to this shard when balancing by hash.
+     *
+     * @param childKey
+     *            the key of the child
+     * @return <code>true</code> if the child is to be run in this JVM
+     */
+    public boolean isSelected(final String childKey)
+    {
+        return spread(childKey) % count == index;
+    }
+
+    /**
+     * Returns a non-negative hash of the given key that is stable across runs and JVMs.
+     *
+     * @param key
+     *            the key
+     * @return the hash
+     */
+    private static int spread(final String key)
+    {
+        // spread the bits, the keys of neighboring children differ in the last characters only
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+
+        return h & Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the children that belong to this shard, in their original order.
+     *
+     * @param className
+     *            the name of the test class
+     * @param children
+     *            all children
+     * @return the children to run in this JVM
+     */
+    public List<FrameworkMethod> select(final String className, final List<FrameworkMethod> children)
+    {
+        final String[] keys = new String[children.size()];
+        for (int i = 0; i < keys.length; i++)
+        {
+            final FrameworkMethod child = children.get(i);
+            keys[i] = child instanceof AnnotatedFrameworkMethod ? getKey(className, (AnnotatedFrameworkMethod) child)
+                                                                : getKey(className, "", child.getName(), -1);
+        }
+
+        final boolean[] selected = costModel != null ? assignByCost(className, keys) : assignByHash(keys);
+
+        final List<FrameworkMethod> shardChildren = new ArrayList<FrameworkMethod>();
+        for (int i = 0; i < selected.length; i++)
+        {
+            if (selected[i])
+            {
+                shardChildren.add(children.get(i));
+            }
+        }
+
+        return shardChildren;
+    }
+
+    /**
+     * Determines the children of this shard by the hashes of their keys.
+     *
+     * @param keys
+     *            the keys of all children
+     * @return for each child, whether it belongs to this shard
+     */
+    private boolean[] assignByHash(final String[] keys)
+    {
+        final boolean[] selected = new boolean[keys.length];
+        for (int i = 0; i < keys.length; i++)
+        {
+            selected[i] = isSelected(keys[i]);
+        }
+
+        return selected;
+    }
+
+    /**
+     * Determines the children of this shard by assigning the most expensive child to the least loaded shard until all
+     * children are assigned (longest processing time first). Ties between children are broken by key, ties between
+     * shards by a hash of the class name and the shard, so every JVM computes the same assignment.
+     *
+     * @param className
+     *            the name of the test class
+     * @param keys
+     *            the keys of all children
+     * @return for each child, whether it belongs to this shard
+     */
+    private boolean[] assignByCost(final String className, final String[] keys)
+    {
+        final long[] costs = new long[keys.length];
+        long knownCostSum = 0;
+        int knownCostCount = 0;
+        for (int i = 0; i < keys.length; i++)
+        {
+            costs[i] = costModel.getCost(keys[i]);
+            if (costs[i] >= 0)
+            {
+                knownCostSum += costs[i];
+                knownCostCount++;
+            }
+        }
+
+        // children without history are assumed to be average
+        final long defaultCost = knownCostCount > 0 ? Math.max(1, knownCostSum / knownCostCount) : 1;
+        for (int i = 0; i < costs.length; i++)
+        {
+            if (costs[i] < 0)
+            {
+                costs[i] = defaultCost;
+            }
+        }
+
+        final Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(final Integer a, final Integer b)
+            {
+                final int result = Long.compare(costs[b], costs[a]);
+                return result != 0 ? result : keys[a].compareTo(keys[b]);
+            }
+        });
+
+        // the preference among equally loaded shards differs per class, so the classes do not all favor shard 0
+        final int[] preference = new int[count];
+        for (int shard = 0; shard < count; shard++)
+        {
+            preference[shard] = spread(className + "|" + shard);
+        }
+
+        final long[] loads = new long[count];
+        final boolean[] selected = new boolean[keys.length];
+        for (final Integer child : order)
+        {
+            int leastLoaded = 0;
+            for (int shard = 1; shard < count; shard++)
+            {
+                if (loads[shard] < loads[leastLoaded] || loads[shard] == loads[leastLoaded] && preference[shard] < preference[leastLoaded])
+                {
+                    leastLoaded = shard;
+                }
+            }
+
+            loads[leastLoaded] += costs[child];
+            selected[child] = leastLoaded == index;
+        }
+
+        return selected;
+    }
+
+    /**
+     * Creates the cost model with the given class name.
+     *
+     * @param className
+     *            the class name
+     * @return the cost model
+     */
+    private static ChildCostModel createCostModel(final String className)
+    {
+        try
+        {
+            return (ChildCostModel) Class.forName(className).newInstance();
+        }
+        catch (final ReflectiveOperationException | ClassCastException e)
+        {
+            throw new IllegalArgumentException("Can not create shard cost model: " + className, e);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package xltutil.runner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Limits the number of test methods that run concurrently per browser tag and per test environment. The limits are
+ * shared by all runners of the JVM, so that, for instance, a local Chrome profile and a grid profile can run side by
+ * side while each of them stays within its own limit.
+ * <p>
+ * Requests that exceed a limit are queued and served in arrival order: a request is never overtaken by a later one that
+ * needs the same browser tag or test environment. Queued requests do not need to block a thread, see
+ * {@link #acquireOrQueue(BrowserConfigurationDto, Executor, Runnable)}.
+ * <p>
+ * The limits are read from {@link XltPropertyKey#PARALLEL_MAX_PER_BROWSER_TAG} and
+ * {@link XltPropertyKey#PARALLEL_MAX_PER_TEST_ENVIRONMENT}. Both keys can be suffixed with a browser tag or test
+ * environment name to override the default for that tag or environment.
+ */
+public final class ConcurrencyLimits
+{
+    /**
+     * The name of the test environment used for profiles without an explicit test environment.
+     */
+    private static final String LOCAL_TEST_ENVIRONMENT = "local";
+
+    /**
+     * Guards the limits and the waiting requests.
+     */
+    private static final Object lock = new Object();
+
+    /**
+     * The limits per browser tag. Guarded by {@link #lock}.
+     */
+    private static final Map<String, Limit> browserTagLimits = new HashMap<String, Limit>();
+
+    /**
+     * The limits per test environment. Guarded by {@link #lock}.
+     */
+    private static final Map<String, Limit> testEnvironmentLimits = new HashMap<String, Limit>();
+
+    /**
+     * The requests waiting for permits in arrival order. Guarded by {@link #lock}.
+     */
+    private static final List<Waiter> waiters = new LinkedList<Waiter>();
+
+    private ConcurrencyLimits()
+    {
+    }
+
+    /**
+     * Acquires the permits needed to run a test method with the given browser configuration. Blocks until both the
+     * test environment and the browser tag allow another concurrent test method.
+     *
+     * @param config
+     *            the browser configuration
+     * @throws InterruptedException
+     *             if the current thread was interrupted while waiting
+     */
+    public static void acquire(final BrowserConfigurationDto config) throws InterruptedException
+    {
+        final CountDownLatch granted = new CountDownLatch(1);
+        final Waiter waiter;
+        synchronized (lock)
+        {
+            waiter = new Waiter(getBrowserTagLimit(config), getTestEnvironmentLimit(config), new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    granted.countDown();
+                }
+            });
+
+            if (tryGrant(waiter))
+            {
+                return;
+            }
+            waiters.add(waiter);
+        }
+
+        try
+        {
+            granted.await();
+        }
+        catch (final InterruptedException e)
+        {
+            synchronized (lock)
+            {
+                if (waiters.remove(waiter))
+                {
+                    throw e;
+                }
+            }
+
+            // the permits have been granted in the meantime
+            release(config);
+            throw e;
+        }
+    }
+
+    /**
+     * Acquires the permits needed to run a test method with the given browser configuration if they are available
+     * right now. Otherwise, the request is queued without blocking the current thread: once the permits have been
+     * acquired for it, the given task is passed to the given executor.
+     *
+     * @param config
+     *            the browser configuration
+     * @param executor
+     *            the executor that runs the task if the request had to be queued
+     * @param task
+     *            the task to run once the permits have been acquired, if the request had to be queued
+     * @return <code>true</code> if the permits have been acquired right away and the caller may proceed, or
+     *         <code>false</code> if the request has been queued
+     */
+    public static boolean acquireOrQueue(final BrowserConfigurationDto config, final Executor executor, final Runnable task)
+    {
+        synchronized (lock)
+        {
+            final Waiter waiter = new Waiter(getBrowserTagLimit(config), getTestEnvironmentLimit(config), new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    executor.execute(task);
+                }
+            });
+
+            if (tryGrant(waiter))
+            {
+                return true;
+            }
+            waiters.add(waiter);
+
+            return false;
+        }
+    }
+
+    /**
+     * Releases the permits acquired via {@link #acquire(BrowserConfigurationDto)} or
+     * {@link #acquireOrQueue(BrowserConfigurationDto, Executor, Runnable)} and passes them on to the waiting requests.
+     *
+     * @param config
+     *            the browser configuration
+     */
+    public static void release(final BrowserConfigurationDto config)
+    {
+        final List<Waiter> granted = new ArrayList<Waiter>();
+        synchronized (lock)
+        {
+            getBrowserTagLimit(config).used--;
+            getTestEnvironmentLimit(config).used--;
+
+            // serve the waiting requests in arrival order, later requests must not overtake earlier ones for a limit
+            final Set<Limit> claimed = new HashSet<Limit>();
+            for (final Iterator<Waiter> it = waiters.iterator(); it.hasNext();)
+            {
+                final Waiter waiter = it.next();
+                if (!claimed.contains(waiter.browserTagLimit) && !claimed.contains(waiter.testEnvironmentLimit) && waiter.isAvailable())
+                {
+                    waiter.take();
+                    granted.add(waiter);
+                    it.remove();
+                }
+                else
+                {
+                    claimed.add(waiter.browserTagLimit);
+                    claimed.add(waiter.testEnvironmentLimit);
+                }
+            }
+        }
+
+        for (final Waiter waiter : granted)
+        {
+            waiter.onGranted.run();
+        }
+    }
+
+    /**
+     * Returns the number of threads to use for running the children of a runner in parallel.
+     *
+     * @return the number of threads
+     */
+    public static int getThreadCount()
+    {
+        return XltProperties.getInstance().getProperty(XltPropertyKey.PARALLEL_THREADS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Takes the permits for the given request if they are available and no earlier request waits for one of its
+     * limits. Must be called while holding the lock.
+     *
+     * @param waiter
+     *            the request
+     * @return whether the permits have been taken
+     */
+    private static boolean tryGrant(final Waiter waiter)
+    {
+        for (final Waiter earlierWaiter : waiters)
+        {
+            if (earlierWaiter.browserTagLimit == waiter.browserTagLimit || earlierWaiter.testEnvironmentLimit == waiter.testEnvironmentLimit)
+            {
+                return false;
+            }
+        }
+
+        if (!waiter.isAvailable())
+        {
+            return false;
+        }
+
+        waiter.take();
+
+        return true;
+    }
+
+    private static Limit getBrowserTagLimit(final BrowserConfigurationDto config)
+    {
+        return getLimit(browserTagLimits, XltPropertyKey.PARALLEL_MAX_PER_BROWSER_TAG, config.getConfigTag());
+    }
+
+    private static Limit getTestEnvironmentLimit(final BrowserConfigurationDto config)
+    {
+        final String testEnvironment = StringUtils.defaultIfEmpty(config.getTestEnvironment(), LOCAL_TEST_ENVIRONMENT);
+
+        return getLimit(testEnvironmentLimits, XltPropertyKey.PARALLEL_MAX_PER_TEST_ENVIRONMENT, testEnvironment.toLowerCase());
+    }
+
+    /**
+     * Returns the limit for the given name, creating it if necessary. Must be called while holding the lock.
+     *
+     * @param limits
+     *            the limits mapped by name
+     * @param propertyKey
+     *            the property key holding the default limit
+     * @param name
+     *            the browser tag or test environment name
+     * @return the limit
+     */
+    private static Limit getLimit(final Map<String, Limit> limits, final String propertyKey, final String name)
+    {
+        Limit limit = limits.get(name);
+        if (limit == null)
+        {
+            final XltProperties props = XltProperties.getInstance();
+            final int defaultLimit = props.getProperty(propertyKey, getThreadCount());
+
+            limit = new Limit(Math.max(1, props.getProperty(propertyKey + "." + name, defaultLimit)));
+            limits.put(name, limit);
+        }
+
+        return limit;
+    }
+
+    /**
+     * The number of permits of a browser tag or test environment. Guarded by {@link ConcurrencyLimits#lock}.
+     */
+    private static class Limit
+    {
+        private final int max;
+
+        private int used;
+
+        private Limit(final int max)
+        {
+            this.max = max;
+        }
+    }
+
+    /**
+     * A request waiting for the permits of a browser tag and a test environment.
+     */
+    private static class Waiter
+    {
+        private final Limit browserTagLimit;
+
+        private final Limit testEnvironmentLimit;
+
+        /**
+         * Called without holding the lock once the permits have been taken for this request.
+         */
+        private final Runnable onGranted;
+
+        private Waiter(final Limit browserTagLimit, final Limit testEnvironmentLimit, final Runnable onGranted)
+        {
+            this.browserTagLimit = browserTagLimit;
+            this.testEnvironmentLimit = testEnvironmentLimit;
+            this.onGranted = onGranted;
+        }
+
+        private boolean isAvailable()
+        {
+            return browserTagLimit.used < browserTagLimit.max && testEnvironmentLimit.used < testEnvironmentLimit.max;
+        }
+
+        private void take()
+        {
+            browserTagLimit.used++;
+            testEnvironmentLimit.used++;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package xltutil.runner;
+
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Formats the display names of data-driven test methods. The pattern may contain the placeholders <code>{name}</code>
+ * (the name of the browser profile), <code>{method}</code> (the test method name), <code>{index}</code> (the data set
+ * index) and <code>{dataSet}</code> (the data set). If key columns are configured, only these columns of the data set
+ * are included in the name.
+ */
+public class DisplayNameFormat
+{
+    /**
+     * The default pattern, which includes the complete data set.
+     */
+    public static final String DEFAULT_PATTERN = "{name} - {method}[{index}] - {dataSet}";
+
+    /**
+     * The pattern.
+     */
+    private final String pattern;
+
+    /**
+     * The columns to include in the name, or <code>null</code> to include all columns.
+     */
+    private final String[] keyColumns;
+
+    /**
+     * Constructor.
+     *
+     * @param pattern
+     *            the pattern
+     * @param keyColumns
+     *            the columns to include in the name, or <code>null</code> to include all columns
+     */
+    public DisplayNameFormat(final String pattern, final String[] keyColumns)
+    {
+        this.pattern = pattern;
+        this.keyColumns = keyColumns;
+    }
+
+    /**
+     * Returns the format as configured in the XLT properties.
+     *
+     * @return the format
+     */
+    public static DisplayNameFormat fromProperties()
+    {
+        final XltProperties props = XltProperties.getInstance();
+
+        final String pattern = props.getProperty(XltPropertyKey.DISPLAY_NAME_PATTERN, DEFAULT_PATTERN);
+        final String keyColumns = props.getProperty(XltPropertyKey.DISPLAY_NAME_KEY_COLUMNS, "");
+
+        return new DisplayNameFormat(pattern, StringUtils.isBlank(keyColumns) ? null : StringUtils.split(keyColumns.replaceAll("\\s", ""), ','));
+    }
+
+    /**
+     * Formats the display name of a test method run with a data set.
+     *
+     * @param name
+     *            the name of the browser profile
+     * @param testMethodName
+     *            the test method name
+     * @param index
+     *            the data set index
+     * @param dataSet
+     *            the data set
+     * @return the display name
+     */
+    public String format(final String name, final String testMethodName, final int index, final Map<String, String> dataSet)
+    {
+        final StringBuilder sb = new StringBuilder(pattern.length() + 64);
+
+        int start = 0;
+        int open = pattern.indexOf('{');
+        while (open >= 0)
+        {
+            final int close = pattern.indexOf('}', open);
+            if (close < 0)
+            {
+                break;
+            }
+
+            sb.append(pattern, start, open);
+
+            final String placeholder = pattern.substring(open + 1, close);
+            if ("name".equals(placeholder))
+            {
+                sb.append(name);
+            }
+            else if ("method".equals(placeholder))
+            {
+                sb.append(testMethodName);
+            }
+            else if ("index".equals(placeholder))
+            {
+                sb.append(index);
+            }
+            else if ("dataSet".equals(placeholder))
+            {
+                appendDataSet(sb, dataSet);
+            }
+            else
+            {
+                // unknown placeholder, keep it as is
+                sb.append(pattern, open, close + 1);
+            }
+
+            start = close + 1;
+            open = pattern.indexOf('{', start);
+        }
+        sb.append(pattern, start, pattern.length());
+
+        return sb.toString();
+    }
+
+    /**
+     * Appends the data set, or its key columns only, in the same notation as {@link Map#toString()}.
+     *
+     * @param sb
+     *            the target string builder
+     * @param dataSet
+     *            the data set
+     */
+    private void appendDataSet(final StringBuilder sb, final Map<String, String> dataSet)
+    {
+        if (keyColumns == null)
+        {
+            sb.append(dataSet);
+            return;
+        }
+
+        sb.append('{');
+        for (int i = 0; i < keyColumns.length; i++)
+        {
+            if (i > 0)
+            {
+                sb.append(", ");
+            }
+            sb.append(keyColumns[i]).append('=').append(dataSet.get(keyColumns[i]));
+        }
+        sb.append('}');
+    }
+}
@@ -0,0 +1,416 @@
+package xltutil.runner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.runners.model.FrameworkMethod;
+
+import com.xceptance.xlt.api.util.XltLogger;
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Remembers how long the children of the runners took, so that the next run can start with the longest children and
+ * sharding can balance by duration.
+ * <p>
+ * The history is kept in a compact, append-only binary file. After a header, each record consists of the 64-bit hash
+ * of the child key (see {@link ChildSharding#getKey(String, AnnotatedFrameworkMethod)}) and the duration in
+ * milliseconds as 32-bit integer. When the file is loaded, the durations of a key are smoothed by averaging the known
+ * value with each newer one. If the file holds many outdated records, it is rewritten with one record per key. A record
+ * only partially written by an aborted run is cut off before new records are appended.
+ * <p>
+ * The history is opt-in, see {@link XltPropertyKey#HISTORY_ENABLED}.
+ */
+public class DurationHistory implements ChildCostModel
+{
+    /**
+     * The default history file.
+     */
+    private static final String DEFAULT_FILE = ".multi-browser-history";
+
+    /**
+     * Identifies a history file, "XMBH".
+     */
+    private static final int MAGIC = 0x584d4248;
+
+    /**
+     * The version of the file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the file header in bytes.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * The size of a record in bytes.
+     */
+    private static final int RECORD_SIZE = 12;
+
+    /**
+     * The number of records buffered before they are appended to the file.
+     */
+    private static final int BUFFER_RECORDS = 256;
+
+    /**
+     * The process-wide history, if any.
+     */
+    private static DurationHistory instance;
+
+    /**
+     * The history file.
+     */
+    private final File file;
+
+    /**
+     * The known durations mapped by key hash, as loaded at startup.
+     */
+    private final Map<Long, Integer> durations;
+
+    /**
+     * The records not yet appended to the file. Guarded by <code>this</code>.
+     */
+    private final List<long[]> pendingRecords = new ArrayList<long[]>();
+
+    /**
+     * Constructor. Loads the history from the given file.
+     *
+     * @param file
+     *            the history file
+     */
+    public DurationHistory(final File file)
+    {
+        this(file, true);
+    }
+
+    /**
+     * Constructor. Loads the history from the given file.
+     *
+     * @param file
+     *            the history file
+     * @param compact
+     *            whether the file may be rewritten if it holds many outdated records
+     */
+    DurationHistory(final File file, final boolean compact)
+    {
+        this.file = file;
+        this.durations = load(file, compact);
+    }
+
+    /**
+     * Returns the process-wide history.
+     *
+     * @return the history, or <code>null</code> if the duration history is disabled
+     */
+    public static synchronized DurationHistory getInstance()
+    {
+        if (instance == null)
+        {
+            final XltProperties props = XltProperties.getInstance();
+            if (props.getProperty(XltPropertyKey.HISTORY_ENABLED, false))
+            {
+                instance = new DurationHistory(new File(props.getProperty(XltPropertyKey.HISTORY_FILE, DEFAULT_FILE)));
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Appends the pending records of the process-wide history to the file, if there is a history.
+     */
+    public static void flushInstance()
+    {
+        final DurationHistory history;
+        synchronized (DurationHistory.class)
+        {
+            history = instance;
+        }
+
+        if (history != null)
+        {
+            history.flush();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCost(final String childKey)
+    {
+        final Integer duration = durations.get(hash(childKey));
+
+        return duration == null ? -1 : duration;
+    }
+
+    /**
+     * Records the duration of a child.
+     *
+     * @param childKey
+     *            the key of the child
+     * @param duration
+     *            the duration in milliseconds
+     */
+    public void record(final String childKey, final long duration)
+    {
+        final boolean bufferFull;
+        synchronized (this)
+        {
+            pendingRecords.add(new long[]
+                {
+                    hash(childKey), Math.min(duration, Integer.MAX_VALUE)
+                });
+            bufferFull = pendingRecords.size() >= BUFFER_RECORDS;
+        }
+
+        if (bufferFull)
+        {
+            flush();
+        }
+    }
+
+    /**
+     * Appends all pending records to the history file.
+     */
+    public synchronized void flush()
+    {
+        if (pendingRecords.isEmpty())
+        {
+            return;
+        }
+
+        final long length = file.isFile() ? file.length() : 0;
+        final boolean newFile = length < HEADER_SIZE;
+        try
+        {
+            // keep the records aligned, load() stops at a partial record
+            final long alignedLength = newFile ? 0 : length - (length - HEADER_SIZE) % RECORD_SIZE;
+            if (!newFile && alignedLength != length)
+            {
+                try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE))
+                {
+                    channel.truncate(alignedLength);
+                }
+            }
+
+            appendRecords(newFile);
+        }
+        catch (final IOException e)
+        {
+            XltLogger.runTimeLogger.warn("Failed to write duration history: " + file, e);
+        }
+
+        pendingRecords.clear();
+    }
+
+    /**
+     * Writes all pending records to the history file. Must be called with the lock held.
+     *
+     * @param newFile
+     *            whether to start a new file, replacing a file too short to hold the header
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private void appendRecords(final boolean newFile) throws IOException
+    {
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, !newFile))))
+        {
+            if (newFile)
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+
+            for (final long[] record : pendingRecords)
+            {
+                out.writeLong(record[0]);
+                out.writeInt((int) record[1]);
+            }
+        }
+    }
+
+    /**
+     * Returns the given children ordered by their known duration, the longest first. Children without a known
+     * duration are treated as average. Children with equal durations keep their relative order.
+     *
+     * @param className
+     *            the name of the test class
+     * @param children
+     *            the children
+     * @return the ordered children
+     */
+    public List<FrameworkMethod> sortLongestFirst(final String className, final List<FrameworkMethod> children)
+    {
+        if (durations.isEmpty())
+        {
+            return children;
+        }
+
+        final Map<FrameworkMethod, Long> costs = new HashMap<FrameworkMethod, Long>();
+        long knownCostSum = 0;
+        int knownCostCount = 0;
+        for (final FrameworkMethod child : children)
+        {
+            if (child instanceof AnnotatedFrameworkMethod)
+            {
+                final long cost = getCost(ChildSharding.getKey(className, (AnnotatedFrameworkMethod) child));
+                if (cost >= 0)
+                {
+                    costs.put(child, cost);
+                    knownCostSum += cost;
+                    knownCostCount++;
+                }
+            }
+        }
+
+        final long defaultCost = knownCostCount > 0 ? knownCostSum / knownCostCount : 0;
+
+        final List<FrameworkMethod> sortedChildren = new ArrayList<FrameworkMethod>(children);
+        Collections.sort(sortedChildren, new Comparator<FrameworkMethod>()
+        {
+            @Override
+            public int compare(final FrameworkMethod a, final FrameworkMethod b)
+            {
+                final Long costA = costs.get(a);
+                final Long costB = costs.get(b);
+
+                return Long.compare(costB != null ? costB : defaultCost, costA != null ? costA : defaultCost);
+            }
+        });
+
+        return sortedChildren;
+    }
+
+    /**
+     * Loads the durations from the given file. Rewrites the file if allowed and it holds considerably more records than
+     * keys.
+     *
+     * @param file
+     *            the history file
+     * @param compact
+     *            whether the file may be rewritten
+     * @return the durations mapped by key hash
+     */
+    private static Map<Long, Integer> load(final File file, final boolean compact)
+    {
+        final Map<Long, Integer> durations = new HashMap<Long, Integer>();
+        if (!file.isFile())
+        {
+            return durations;
+        }
+
+        int records = 0;
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                XltLogger.runTimeLogger.warn("Ignoring duration history of unknown format: " + file);
+                return durations;
+            }
+
+            while (true)
+            {
+                final long keyHash;
+                final int duration;
+                try
+                {
+                    keyHash = in.readLong();
+                    duration = in.readInt();
+                }
+                catch (final EOFException e)
+                {
+                    // end of file, or a record only partially written by an aborted run
+                    break;
+                }
+
+                final Integer previousDuration = durations.get(keyHash);
+                durations.put(keyHash, previousDuration == null ? duration : (int) (((long) previousDuration + duration) / 2));
+                records++;
+            }
+        }
+        catch (final IOException e)
+        {
+            XltLogger.runTimeLogger.warn("Failed to read duration history: " + file, e);
+            return durations;
+        }
+
+        if (compact && records > 2 * durations.size() + BUFFER_RECORDS)
+        {
+            compact(file, durations);
+        }
+
+        return durations;
+    }
+
+    /**
+     * Replaces the given file by one that holds a single record per key.
+     *
+     * @param file
+     *            the history file
+     * @param durations
+     *            the durations mapped by key hash
+     */
+    private static void compact(final File file, final Map<Long, Integer> durations)
+    {
+        final File tempFile = new File(file.getPath() + ".tmp");
+        try
+        {
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                for (final Map.Entry<Long, Integer> entry : durations.entrySet())
+                {
+                    out.writeLong(entry.getKey());
+                    out.writeInt(entry.getValue());
+                }
+            }
+
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (final IOException e)
+        {
+            XltLogger.runTimeLogger.warn("Failed to compact duration history: " + file, e);
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Returns the 64-bit FNV-1a hash of the given key.
+     *
+     * @param key
+     *            the key
+     * @return the hash
+     */
+    static long hash(final String key)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++)
+        {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+}
@@ -0,0 +1,79 @@
+package xltutil.runner;
+
+import java.io.File;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.xceptance.xlt.api.util.XltLogger;
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * A cost model that reports the durations recorded in a {@link DurationHistory} file. The file is only read, never
+ * written, so that all JVMs of a sharded run see the same costs, provided they are given the same file, e.g. the
+ * history of a previous run copied to each machine.
+ * <p>
+ * This is the cost model used by the shard strategy <code>cost</code> unless another one is configured, see
+ * {@link XltPropertyKey#SHARD_HISTORY_FILE}.
+ */
+public class HistoryCostModel implements ChildCostModel
+{
+    /**
+     * The process-wide instance, if any.
+     */
+    private static HistoryCostModel instance;
+
+    /**
+     * The durations read from the history file.
+     */
+    private final DurationHistory history;
+
+    /**
+     * Constructor. Reads the history file configured via {@link XltPropertyKey#SHARD_HISTORY_FILE}.
+     */
+    public HistoryCostModel()
+    {
+        this(new File(XltProperties.getInstance().getProperty(XltPropertyKey.SHARD_HISTORY_FILE, "").trim()));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file
+     *            the history file
+     */
+    public HistoryCostModel(final File file)
+    {
+        if (!file.isFile())
+        {
+            XltLogger.runTimeLogger.warn("Shard history file not found, all test methods count as equally expensive: " + file);
+        }
+
+        history = new DurationHistory(file, false);
+    }
+
+    /**
+     * Returns the process-wide cost model, which reads the history file once.
+     *
+     * @return the cost model, or <code>null</code> if no shard history file is configured
+     */
+    public static synchronized HistoryCostModel getInstance()
+    {
+        if (instance == null && StringUtils.isNotBlank(XltProperties.getInstance().getProperty(XltPropertyKey.SHARD_HISTORY_FILE, "")))
+        {
+            instance = new HistoryCostModel();
+        }
+
+        return instance;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCost(final String childKey)
+    {
+        return history.getCost(childKey);
+    }
+}
@@ -0,0 +1,268 @@
+package xltutil.runner;
+
+import java.lang.reflect.Method;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.junit.runners.model.FrameworkMethod;
+
+import xltutil.dto.BrowserConfigurationDto;
+
+/**
+ * The JUnit children of an {@link AnnotationRunner} that are created only when they are accessed. The list represents
+ * every combination of test method template (browser configuration and test method) and data set, in that order.
+ * Together with a streaming data set list, this keeps the memory footprint of a runner independent of the number of
+ * data sets.
+ */
+class LazyChildList extends AbstractList<FrameworkMethod>
+{
+    /**
+     * The test method templates.
+     */
+    private final List<ChildTemplate> templates;
+
+    /**
+     * The data sets.
+     */
+    private final List<Map<String, String>> dataSets;
+
+    /**
+     * The indexes of the children in the template x data set matrix that belong to this list, or <code>null</code> if
+     * all children belong to it.
+     */
+    private final int[] selection;
+
+    /**
+     * Constructor.
+     *
+     * @param templates
+     *            the test method templates
+     * @param dataSets
+     *            the data sets
+     */
+    LazyChildList(final List<ChildTemplate> templates, final List<Map<String, String>> dataSets)
+    {
+        this(templates, dataSets, null, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param templates
+     *            the test method templates
+     * @param dataSets
+     *            the data sets
+     * @param sharding
+     *            the sharding that selects the children to keep, or <code>null</code> to keep all children
+     * @param className
+     *            the name of the test class, used for the child keys when sharding
+     */
+    LazyChildList(final List<ChildTemplate> templates, final List<Map<String, String>> dataSets, final ChildSharding sharding,
+                  final String className)
+    {
+        this.templates = templates;
+        this.dataSets = dataSets;
+        this.selection = sharding == null ? null : select(templates, dataSets.size(), sharding, className);
+    }
+
+    /**
+     * Determines the indexes of the children that belong to the shard. Only the keys are computed, the children
+     * themselves are not created.
+     *
+     * @param templates
+     *            the test method templates
+     * @param dataSetCount
+     *            the number of data sets
+     * @param sharding
+     *            the sharding
+     * @param className
+     *            the name of the test class
+     * @return the indexes of the selected children, in ascending order
+     */
+    private static int[] select(final List<ChildTemplate> templates, final int dataSetCount, final ChildSharding sharding,
+                                final String className)
+    {
+        int[] selection = new int[16];
+        int size = 0;
+
+        for (int t = 0; t < templates.size(); t++)
+        {
+            final ChildTemplate template = templates.get(t);
+            for (int i = 0; i < dataSetCount; i++)
+            {
+                final String key = ChildSharding.getKey(className, template.browserConfiguration.getConfigTag(), template.testMethodName, i);
+                if (sharding.isSelected(key))
+                {
+                    if (size == selection.length)
+                    {
+                        selection = Arrays.copyOf(selection, size * 2);
+                    }
+                    selection[size++] = t * dataSetCount + i;
+                }
+            }
+        }
+
+        return Arrays.copyOf(selection, size);
+    }
+
+    /**
+     * Maps the given index in this list to the index in the complete template x data set matrix.
+     *
+     * @param index
+     *            the index in this list
+     * @return the index in the matrix
+     */
+    private int toMatrixIndex(final int index)
+    {
+        return selection == null ? index : selection[index];
+    }
+
+    /**
+     * Returns the test method templates.
+     *
+     * @return the templates
+     */
+    List<ChildTemplate> getTemplates()
+    {
+        return templates;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return selection == null ? templates.size() * dataSets.size() : selection.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FrameworkMethod get(final int index)
+    {
+        final int matrixIndex = toMatrixIndex(index);
+        final int dataSetIndex = matrixIndex % dataSets.size();
+
+        return templates.get(matrixIndex / dataSets.size()).createChild(dataSetIndex, dataSets.get(dataSetIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<FrameworkMethod> iterator()
+    {
+        return new Iterator<FrameworkMethod>()
+        {
+            private int templateIndex;
+
+            private int dataSetIndex;
+
+            private Iterator<Map<String, String>> dataSetIterator;
+
+            private int selectionIndex;
+
+            @Override
+            public boolean hasNext()
+            {
+                while (templateIndex < templates.size())
+                {
+                    if (selection != null && selectionIndex == selection.length)
+                    {
+                        return false;
+                    }
+
+                    if (dataSetIterator == null)
+                    {
+                        dataSetIterator = dataSets.iterator();
+                        dataSetIndex = 0;
+                    }
+
+                    if (dataSetIterator.hasNext())
+                    {
+                        if (selection == null || selection[selectionIndex] == templateIndex * dataSets.size() + dataSetIndex)
+                        {
+                            return true;
+                        }
+
+                        // not part of this shard, skip it
+                        dataSetIterator.next();
+                        dataSetIndex++;
+                        continue;
+                    }
+
+                    dataSetIterator = null;
+                    templateIndex++;
+                }
+
+                return false;
+            }
+
+            @Override
+            public FrameworkMethod next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                selectionIndex++;
+
+                return templates.get(templateIndex).createChild(dataSetIndex++, dataSetIterator.next());
+            }
+        };
+    }
+
+    /**
+     * A test method to be run with a certain browser configuration, but not yet bound to a data set.
+     */
+    static class ChildTemplate
+    {
+        private final Method method;
+
+        private final String testMethodName;
+
+        private final BrowserConfigurationDto browserConfiguration;
+
+        private final DisplayNameFormat nameFormat;
+
+        ChildTemplate(final Method method, final String testMethodName, final BrowserConfigurationDto browserConfiguration,
+                      final DisplayNameFormat nameFormat)
+        {
+            this.method = method;
+            this.testMethodName = testMethodName;
+            this.browserConfiguration = browserConfiguration;
+            this.nameFormat = nameFormat;
+        }
+
+        /**
+         * Returns the name of this template, which is shared by all children created from it.
+         *
+         * @return the name
+         */
+        String getName()
+        {
+            return browserConfiguration.getName() + " - " + testMethodName;
+        }
+
+        /**
+         * Creates the JUnit child for the given data set.
+         *
+         * @param index
+         *            the index of the data set
+         * @param dataSet
+         *            the data set
+         * @return the child
+         */
+        AnnotatedFrameworkMethod createChild(final int index, final Map<String, String> dataSet)
+        {
+            return new AnnotatedFrameworkMethod(method, testMethodName, browserConfiguration, index, dataSet, nameFormat);
+        }
+    }
+}
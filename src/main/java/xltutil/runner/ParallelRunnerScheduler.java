@@ -0,0 +1,212 @@
+package xltutil.runner;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runners.model.RunnerScheduler;
+
+import com.xceptance.xlt.api.util.XltLogger;
+
+import xltutil.dto.BrowserConfigurationDto;
+
+/**
+ * A {@link RunnerScheduler} that runs the children of a runner in parallel using a fixed number of threads. The
+ * scheduler only limits the overall concurrency of a single runner. Limits per browser tag and test environment are
+ * enforced by {@link ConcurrencyLimits} when the child is actually run, see
+ * {@link #runWithinLimits(BrowserConfigurationDto, Runnable)}. A child waiting for such a limit does not occupy a
+ * worker thread, so children of other browser tags and test environments keep running meanwhile.
+ */
+public class ParallelRunnerScheduler implements RunnerScheduler
+{
+    /**
+     * The child that runs on the current worker thread, if any.
+     */
+    private static final ThreadLocal<Child> currentChild = new ThreadLocal<Child>();
+
+    /**
+     * The executor that runs the scheduled children.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Limits the number of children that are scheduled but not yet finished, so that lazily created children are not
+     * all materialized at once.
+     */
+    private final Semaphore backlog;
+
+    /**
+     * The maximum number of children that are scheduled but not yet finished.
+     */
+    private final int maxBacklog;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            the name used for the worker threads
+     * @param threads
+     *            the number of worker threads
+     */
+    public ParallelRunnerScheduler(final String name, final int threads)
+    {
+        final AtomicInteger threadNumber = new AtomicInteger();
+
+        maxBacklog = 2 * Math.max(1, threads);
+        backlog = new Semaphore(maxBacklog);
+
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(final Runnable r)
+            {
+                return new Thread(r, name + "-" + threadNumber.incrementAndGet());
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void schedule(final Runnable childStatement)
+    {
+        backlog.acquireUninterruptibly();
+        executor.execute(new Child(childStatement));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finished()
+    {
+        try
+        {
+            // children waiting for a concurrency limit are not known to the executor yet, so wait for all permits
+            while (!backlog.tryAcquire(maxBacklog, 1, TimeUnit.MINUTES))
+            {
+                XltLogger.runTimeLogger.debug("Still waiting for parallel test methods to finish");
+            }
+            backlog.release(maxBacklog);
+
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (final InterruptedException e)
+        {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the given part of the child that runs on the current thread within the concurrency limits of the given
+     * browser configuration. If a limit is reached and the current thread is a worker thread of a scheduler, the
+     * worker is not blocked: the child is parked, the worker returns to run other children, and the given task runs on
+     * a worker thread once the permits are available. The child counts as unfinished until then. Other threads wait
+     * for the permits.
+     *
+     * @param config
+     *            the browser configuration
+     * @param task
+     *            the task to run while holding the permits
+     * @throws InterruptedException
+     *             if the current thread is not a worker thread and was interrupted while waiting
+     */
+    static void runWithinLimits(final BrowserConfigurationDto config, final Runnable task) throws InterruptedException
+    {
+        final Runnable limitedTask = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    ConcurrencyLimits.release(config);
+                }
+            }
+        };
+
+        final Child child = currentChild.get();
+        if (child == null)
+        {
+            ConcurrencyLimits.acquire(config);
+            limitedTask.run();
+            return;
+        }
+
+        // detach before queuing, the task may be resumed by another thread right away
+        child.detached = true;
+        if (ConcurrencyLimits.acquireOrQueue(config, child, limitedTask))
+        {
+            child.detached = false;
+            limitedTask.run();
+        }
+    }
+
+    /**
+     * A scheduled child. If the child is parked while waiting for a concurrency limit, it is resumed on a worker
+     * thread through its {@link Executor} interface and finishes there.
+     */
+    private class Child implements Runnable, Executor
+    {
+        private final Runnable statement;
+
+        /**
+         * Whether the rest of the child has been parked. Accessed by the worker thread that started the child only.
+         */
+        private boolean detached;
+
+        private Child(final Runnable statement)
+        {
+            this.statement = statement;
+        }
+
+        @Override
+        public void run()
+        {
+            currentChild.set(this);
+            try
+            {
+                statement.run();
+            }
+            finally
+            {
+                currentChild.remove();
+                if (!detached)
+                {
+                    backlog.release();
+                }
+            }
+        }
+
+        @Override
+        public void execute(final Runnable rest)
+        {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        rest.run();
+                    }
+                    finally
+                    {
+                        backlog.release();
+                    }
+                }
+            });
+        }
+    }
+}
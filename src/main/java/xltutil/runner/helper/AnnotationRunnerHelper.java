@@ -4,99 +4,64 @@ import java.lang.annotation.Annotation;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpHost;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.Credentials;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.openqa.selenium.Capabilities;
 import org.openqa.selenium.Dimension;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.MutableCapabilities;
 import org.openqa.selenium.Proxy;
 import org.openqa.selenium.UnsupportedCommandException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebDriverException;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.chrome.ChromeOptions;
-import org.openqa.selenium.edge.EdgeDriver;
-import org.openqa.selenium.edge.EdgeOptions;
-import org.openqa.selenium.firefox.FirefoxDriver;
-import org.openqa.selenium.firefox.FirefoxOptions;
-import org.openqa.selenium.ie.InternetExplorerDriver;
-import org.openqa.selenium.ie.InternetExplorerOptions;
-import org.openqa.selenium.opera.OperaDriver;
-import org.openqa.selenium.opera.OperaOptions;
-import org.openqa.selenium.phantomjs.PhantomJSDriver;
-import org.openqa.selenium.remote.BrowserType;
 import org.openqa.selenium.remote.CapabilityType;
 import org.openqa.selenium.remote.CommandInfo;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.remote.HttpCommandExecutor;
-import org.openqa.selenium.remote.RemoteWebDriver;
-import org.openqa.selenium.safari.SafariDriver;
-import org.openqa.selenium.safari.SafariOptions;
 
+import com.xceptance.xlt.api.util.XltLogger;
 import com.xceptance.xlt.api.util.XltProperties;
-import com.xceptance.xlt.api.webdriver.XltChromeDriver;
-import com.xceptance.xlt.api.webdriver.XltFirefoxDriver;
 import com.xceptance.xlt.engine.SessionImpl;
 
 import xltutil.annotation.TestTargets;
+import xltutil.driver.BrowserStateResetter;
+import xltutil.driver.ChromeStateResetter;
+import xltutil.driver.DriverAdmissionControl;
+import xltutil.driver.DriverFactory;
+import xltutil.driver.DriverFactoryRegistry;
+import xltutil.driver.WebDriverPool;
 import xltutil.dto.BrowserConfigurationDto;
 import xltutil.dto.ProxyConfigurationDto;
 import xltutil.mapper.PropertiesToBrowserConfigurationMapper;
+import xltutil.proxy.GridHttpClientRegistry;
 import xltutil.proxy.ProxyHttpClient;
+import xltutil.runner.helper.PhaseTimings.Phase;
+import xltutil.runner.helper.PhaseTimings.Timer;
 
 public final class AnnotationRunnerHelper
 {
-    private static Set<String> chromeBrowsers = new HashSet<String>();
+    private static final BrowserStateResetter chromeStateResetter = new ChromeStateResetter();
 
-    private static Set<String> firefoxBrowsers = new HashSet<String>();
-
-    private static Set<String> internetExplorerBrowsers = new HashSet<String>();
-
-    private static Set<String> operaBrowsers = new HashSet<>();
-
-    private static Set<String> safariBrowsers = new HashSet<>();
-
-    static
-    {
-        initBrowserTypes();
-    }
+    private static final BrowserStateResetter genericStateResetter = new GenericStateResetter();
 
     /**
-     * Initializes the sets of known browser types.
+     * The resolved {@link TestTargets} annotations per class. Does not keep the classes from being unloaded.
      */
-    @SuppressWarnings("deprecation")
-    private static void initBrowserTypes()
+    private static final ClassValue<List<TestTargets>> testTargetsCache = new ClassValue<List<TestTargets>>()
     {
-        chromeBrowsers.add(BrowserType.ANDROID);
-        chromeBrowsers.add(BrowserType.CHROME);
-        chromeBrowsers.add(BrowserType.GOOGLECHROME);
-
-        firefoxBrowsers.add(BrowserType.FIREFOX);
-        firefoxBrowsers.add(BrowserType.FIREFOX_CHROME);
-        firefoxBrowsers.add(BrowserType.FIREFOX_PROXY);
-
-        operaBrowsers.add(BrowserType.OPERA);
-        operaBrowsers.add(BrowserType.OPERA_BLINK);
-
-        safariBrowsers.add(BrowserType.SAFARI);
-        safariBrowsers.add(BrowserType.SAFARI_PROXY);
-
-        internetExplorerBrowsers.add(BrowserType.IE);
-        internetExplorerBrowsers.add(BrowserType.IE_HTA);
-        internetExplorerBrowsers.add(BrowserType.IEXPLORE);
-        internetExplorerBrowsers.add(BrowserType.IEXPLORE_PROXY);
-    }
+        @Override
+        protected List<TestTargets> computeValue(final Class<?> clazz)
+        {
+            return resolveTestTargets(clazz);
+        }
+    };
 
     /**
      * The prefix of all factory-related configuration settings.
@@ -113,36 +78,35 @@ public final class AnnotationRunnerHelper
                                                          final String gridPassword)
         throws MalformedURLException
     {
-        // create a configuration for accessing target site via proxy (if a proxy is defined)
-        // the proxy and the destination site will have different or no credentials for accessing them
-        // so we need to create different authentication scopes and link them with the credentials
-        final BasicCredentialsProvider basicCredentialsProvider = new BasicCredentialsProvider();
-
-        // create credentials for proxy access
-        if (proxyConfig != null //
-            && !StringUtils.isEmpty(proxyConfig.getUsername()) //
-            && !StringUtils.isEmpty(proxyConfig.getPassword()))
-        {
-            final AuthScope proxyAuth = new AuthScope(proxyConfig.getHost(), Integer.valueOf(proxyConfig.getPort()));
-            final Credentials proxyCredentials = new UsernamePasswordCredentials(proxyConfig.getUsername(), proxyConfig.getPassword());
-            basicCredentialsProvider.setCredentials(proxyAuth, proxyCredentials);
-        }
-
-        // create credentials for target website
-        final AuthScope gridAuth = new AuthScope(gridUrl.getHost(), gridUrl.getPort());
-
-        if (!StringUtils.isEmpty(gridUsername))
-        {
-            final Credentials gridCredentials = new UsernamePasswordCredentials(gridUsername, gridPassword);
-            basicCredentialsProvider.setCredentials(gridAuth, gridCredentials);
-        }
+        return createGridExecutor(proxyConfig, gridUrl, gridUsername, gridPassword, 0, 0);
+    }
 
-        // now create a http client, set the custom proxy and inject the credentials
-        final HttpClientBuilder clientBuilder = HttpClientBuilder.create();
-        clientBuilder.setDefaultCredentialsProvider(basicCredentialsProvider);
-        if (proxyConfig != null)
-            clientBuilder.setProxy(new HttpHost(proxyConfig.getHost(), Integer.valueOf(proxyConfig.getPort())));
-        final CloseableHttpClient httpClient = clientBuilder.build();
+    /**
+     * Returns a command executor for a Selenium grid (e.g. SauceLabs) that authenticates at the grid and the proxy and
+     * bounds the time to connect and to wait for responses.
+     *
+     * @param proxyConfig
+     *            the proxy configuration, may be <code>null</code>
+     * @param gridUrl
+     *            the grid URL
+     * @param gridUsername
+     *            the grid user name, may be <code>null</code>
+     * @param gridPassword
+     *            the grid password, may be <code>null</code>
+     * @param connectTimeout
+     *            the time in milliseconds to establish a connection, 0 for no timeout
+     * @param readTimeout
+     *            the time in milliseconds to wait for response data, 0 for no timeout
+     * @return the command executor
+     * @throws MalformedURLException
+     */
+    public static HttpCommandExecutor createGridExecutor(final ProxyConfigurationDto proxyConfig, final URL gridUrl, final String gridUsername,
+                                                         final String gridPassword, final long connectTimeout, final long readTimeout)
+        throws MalformedURLException
+    {
+        // all sessions for the same grid share a pooled, kept-alive http client
+        final CloseableHttpClient httpClient = GridHttpClientRegistry.getClient(proxyConfig, gridUrl, gridUsername, gridPassword, connectTimeout,
+                                                                                readTimeout);
 
         final Map<String, CommandInfo> additionalCommands = new HashMap<String, CommandInfo>(); // just a dummy
 
@@ -208,6 +172,9 @@ public final class AnnotationRunnerHelper
 
     /**
      * Instantiate the {@link WebDriver} according to the configuration read from {@link TestTargets} annotations.
+     * The driver is created by the {@link DriverFactory} bound to the configuration.
+     * <p>
+     * If admission control is enabled, a local browser is launched only once its browser family is below its limit.
      *
      * @param config
      * @param proxyConfig
@@ -216,145 +183,163 @@ public final class AnnotationRunnerHelper
      */
     public static WebDriver createWebdriver(final BrowserConfigurationDto config, final ProxyConfigurationDto proxyConfig) throws MalformedURLException
     {
-        final DesiredCapabilities capabilities = config.getCapabilities();
+        // the factory is bound when the profile is parsed, other configurations are resolved each time
+        final DriverFactory driverFactory = config.getDriverFactory() != null ? config.getDriverFactory() : DriverFactoryRegistry.bind(config);
+        if (driverFactory == null)
+        {
+            return null;
+        }
 
-        final String testEnvironment = config.getTestEnvironment();
+        final DriverAdmissionControl admissionControl = isLocal(config) ? DriverAdmissionControl.getInstance() : null;
+        final String browserFamily = driverFactory.getFamily();
 
-        if (StringUtils.isEmpty(testEnvironment) || "local".equalsIgnoreCase(testEnvironment))
+        if (admissionControl != null)
         {
-            if (proxyConfig != null)
+            final Timer waitTimer = PhaseTimings.start(Phase.ADMISSION_WAIT, config);
+            try
             {
-                final String proxyHost = proxyConfig.getHost() + ":" + proxyConfig.getPort();
-
-                final Proxy webdriverProxy = new Proxy();
-                webdriverProxy.setHttpProxy(proxyHost);
-                webdriverProxy.setSslProxy(proxyHost);
-                webdriverProxy.setFtpProxy(proxyHost);
-                if (!StringUtils.isEmpty(proxyConfig.getUsername()) && !StringUtils.isEmpty(proxyConfig.getPassword()))
-                {
-                    webdriverProxy.setSocksUsername(proxyConfig.getUsername());
-                    webdriverProxy.setSocksPassword(proxyConfig.getPassword());
-                }
-
-                capabilities.setCapability(CapabilityType.PROXY, webdriverProxy);
+                admissionControl.acquire(browserFamily);
             }
-
-            final String browserName = config.getCapabilities().getBrowserName();
-            if (chromeBrowsers.contains(browserName))
+            catch (final InterruptedException e)
             {
-                // do we have a custom path?
-                final String pathToBrowser = XltProperties.getInstance().getProperty(XltPropertyKey.CHROME_PATH);
-                final ChromeOptions options = new ChromeOptions();
-
-                // This is a workaround for a changed Selenium behavior
-                // Since device emulation is not part of the "standard" it now has to be considered as experimental option.
-                // The capability class already sorts the different configurations in different maps (one for capabilities and one for
-                // experimental capabilities). The experimental options are held internal within a map of the capability map and
-                // are accessible with key "goog:chromeOptions" (constant ChromeOptions.CAPABILITY). So all we have to do is to copy the
-                // keys and values of that special map and set it as experimental option inside ChromeOptions.
-                Map<String, String> experimentalOptions = null;
-                try
-                {
-                    experimentalOptions = (Map<String, String>) capabilities.getCapability(ChromeOptions.CAPABILITY);
-                    if (experimentalOptions != null)
-                    {
-                        for (Entry<String, String> entry : experimentalOptions.entrySet())
-                        {
-                            options.setExperimentalOption(entry.getKey(), entry.getValue());
-                        }
-                    }
-                }
-                catch (Exception e)
-                {
-                    // unsure which case this can cover since only the type conversion can fail
-                    // lets throw it as unchecked exception
-                    // in case that makes no sense at all then just suppress it
-                    throw new RuntimeException(e);
-                }
-
-                options.merge(capabilities);
-                if (StringUtils.isNotBlank(pathToBrowser))
-                {
-                    options.setBinary(pathToBrowser);
-                }
-
-                if (config.isClientperformanceEnabled())
-                {
-                    return new XltChromeDriver(options);
-                }
-                else
-                {
-                    return new ChromeDriver(options);
-                }
+                Thread.currentThread().interrupt();
+                throw new WebDriverException("Interrupted while waiting to launch a browser of family: " + browserFamily, e);
             }
-            else if (firefoxBrowsers.contains(browserName))
+            finally
             {
-                final FirefoxOptions options = new FirefoxOptions(capabilities);
-                final String pathToBrowser = XltProperties.getInstance().getProperty(XltPropertyKey.FIREFOX_PATH);
-                if (StringUtils.isNotBlank(pathToBrowser))
-                {
-                    options.setBinary(pathToBrowser);
-                }
+                PhaseTimings.stop(waitTimer);
+            }
+        }
 
-                if (config.isClientperformanceEnabled())
+        WebDriver driver = null;
+        final Timer timer = PhaseTimings.start(Phase.CREATE_DRIVER, config);
+        try
+        {
+            driver = driverFactory.createDriver(config, proxyConfig);
+            if (driver != null)
+            {
+                // the age limit of pooled drivers counts from here
+                WebDriverPool.recordCreation(driver);
+            }
+            return driver;
+        }
+        finally
+        {
+            PhaseTimings.stop(timer);
+
+            if (admissionControl != null)
+            {
+                if (driver != null)
                 {
-                    return new XltFirefoxDriver(options);
+                    admissionControl.admitted(driver, browserFamily);
                 }
                 else
                 {
-                    return new FirefoxDriver(options);
-                }
-            }
-            else if (operaBrowsers.contains(browserName))
-            {
-                final OperaOptions options = new OperaOptions();
-                options.merge(capabilities);
-                final String pathToBrowser = XltProperties.getInstance().getProperty(XltPropertyKey.OPERA_PATH);
-                if (StringUtils.isNotBlank(pathToBrowser))
-                {
-                    options.setBinary(pathToBrowser);
+                    admissionControl.cancel(browserFamily);
                 }
-                return new OperaDriver(options);
-            }
-            else if (safariBrowsers.contains(browserName))
-            {
-                return new SafariDriver(new SafariOptions(capabilities));
-            }
-            else if (internetExplorerBrowsers.contains(browserName))
-            {
-                return new InternetExplorerDriver(new InternetExplorerOptions(capabilities));
             }
-            else if (BrowserType.EDGE.equals(browserName))
-            {
-                final EdgeOptions options = new EdgeOptions();
-                options.merge(capabilities);
+        }
+    }
 
-                return new EdgeDriver(options);
-            }
-            else if (BrowserType.PHANTOMJS.equals(browserName))
-            {
-                return new PhantomJSDriver(capabilities);
-            }
+    /**
+     * Returns the resetter that cleans up a browser of the given configuration between two tests.
+     *
+     * @param config
+     *            the browser configuration
+     * @return the resetter
+     */
+    public static BrowserStateResetter getStateResetter(final BrowserConfigurationDto config)
+    {
+        // DevTools commands are sent through chromedriver, which is not necessarily reachable this way on a grid
+        final DriverFactory factory = DriverFactoryRegistry.getFactory(config.getCapabilities().getBrowserName());
+        if (isLocal(config) && factory != null && "chrome".equals(factory.getFamily()))
+        {
+            return chromeStateResetter;
         }
-        else
+
+        return genericStateResetter;
+    }
+
+    /**
+     * Returns whether the browser of the given configuration runs on this machine.
+     *
+     * @param config
+     *            the browser configuration
+     * @return <code>true</code> for a local browser, <code>false</code> for a browser in a remote grid
+     */
+    public static boolean isLocal(final BrowserConfigurationDto config)
+    {
+        final String testEnvironment = config.getTestEnvironment();
+
+        return StringUtils.isEmpty(testEnvironment) || "local".equalsIgnoreCase(testEnvironment);
+    }
+
+    /**
+     * Returns the read-only options template for the given browser configuration. The templates of the registered
+     * browser profiles are built only once, all others each time.
+     *
+     * @param config
+     *            the browser configuration
+     * @param proxyConfig
+     *            the proxy configuration, may be <code>null</code>
+     * @return the options
+     */
+    public static Capabilities getOptionsTemplate(final BrowserConfigurationDto config, final ProxyConfigurationDto proxyConfig)
+    {
+        final BrowserProfileRegistry registry = BrowserProfileRegistry.getInstance();
+        if (registry.getBrowserConfiguration(config.getConfigTag()) == config && registry.getProxyConfiguration() == proxyConfig)
         {
-            final XltProperties xltProperties = XltProperties.getInstance();
+            return registry.getOptionsTemplate(config);
+        }
 
-            final Map<String, String> propertiesForEnvironment = xltProperties.getPropertiesForKey(XltPropertyKey.BROWSERPROFILE_TEST_ENVIRONMENT +
-                                                                                                   testEnvironment);
+        return new ImmutableCapabilities(createBrowserOptions(config, proxyConfig));
+    }
+
+    /**
+     * Creates the browser specific options for a local browser from the given browser configuration, including the
+     * proxy settings and the browser path. The capabilities of the browser configuration are not modified.
+     *
+     * @param config
+     *            the browser configuration
+     * @param proxyConfig
+     *            the proxy configuration, may be <code>null</code>
+     * @return the options
+     */
+    public static MutableCapabilities createBrowserOptions(final BrowserConfigurationDto config, final ProxyConfigurationDto proxyConfig)
+    {
+        // work on a copy, the capabilities of the browser configuration are shared by all drivers
+        final DesiredCapabilities capabilities = new DesiredCapabilities(config.getCapabilities());
+        if (proxyConfig != null)
+        {
+            final String proxyHost = proxyConfig.getHost() + ":" + proxyConfig.getPort();
 
-            final String gridUsername = propertiesForEnvironment.get("username");
-            final String gridPassword = propertiesForEnvironment.get("password");
-            final String gridUrlString = propertiesForEnvironment.get("url");
-            final URL gridUrl = new URL(gridUrlString);
+            final Proxy webdriverProxy = new Proxy();
+            webdriverProxy.setHttpProxy(proxyHost);
+            webdriverProxy.setSslProxy(proxyHost);
+            webdriverProxy.setFtpProxy(proxyHost);
+            if (!StringUtils.isEmpty(proxyConfig.getUsername()) && !StringUtils.isEmpty(proxyConfig.getPassword()))
+            {
+                webdriverProxy.setSocksUsername(proxyConfig.getUsername());
+                webdriverProxy.setSocksPassword(proxyConfig.getPassword());
+            }
 
-            // establish connection to target website
-            return new RemoteWebDriver(createGridExecutor(proxyConfig, gridUrl, gridUsername, gridPassword), capabilities);
+            capabilities.setCapability(CapabilityType.PROXY, webdriverProxy);
         }
 
-        return null;
+        final DriverFactory factory = DriverFactoryRegistry.getFactory(capabilities.getBrowserName());
+
+        return factory != null ? factory.createOptions(config, capabilities) : capabilities;
     }
 
+    /**
+     * Parses all browser profiles from the given properties. Each <code>browserprofile.*</code> key is tokenized only
+     * once. Use {@link BrowserProfileRegistry} to obtain the already parsed profiles instead of calling this method
+     * repeatedly. Profiles that cannot be parsed, e.g. because they do not name a browser, are logged and skipped.
+     *
+     * @param properties
+     *            the properties
+     * @return the browser configurations mapped by browser tag
+     */
     public static Map<String, BrowserConfigurationDto> parseBrowserProperties(final XltProperties properties)
     {
         // Structur browserprofile.<nametag>.*
@@ -363,19 +348,26 @@ public final class AnnotationRunnerHelper
         final String propertyKeyBrowsers = "browserprofile";
 
         // get all properties with prefix browserprofile. they are then truncated to <nametag>.*
-        // holds all found browser configurations
-        Map<String, String> browserProperties = properties.getPropertiesForKey(propertyKeyBrowsers);
+        final Map<String, String> browserProperties = properties.getPropertiesForKey(propertyKeyBrowsers);
 
-        // a temporary list to hold all found browser tags
-        final List<String> browserTags = new ArrayList<String>();
-
-        // create a list of tags referencing browser configurations
-        for (final String key : browserProperties.keySet())
+        // group the properties by browser tag in a single pass, the keys are truncated to the part after <nametag>.
+        final Map<String, Map<String, String>> browserPropertiesByTag = new LinkedHashMap<String, Map<String, String>>();
+        for (final Entry<String, String> entry : browserProperties.entrySet())
         {
-            final String[] parts = key.split("\\.");
-            final String browserTag = parts[0];
-            if (!StringUtils.isEmpty(browserTag) && !browserTags.contains(browserTag))
-                browserTags.add(browserTag);
+            final String key = entry.getKey();
+            final int dot = key.indexOf('.');
+            final String browserTag = dot < 0 ? key : key.substring(0, dot);
+            if (StringUtils.isEmpty(browserTag))
+                continue;
+
+            Map<String, String> tagProperties = browserPropertiesByTag.get(browserTag);
+            if (tagProperties == null)
+            {
+                tagProperties = new HashMap<String, String>();
+                browserPropertiesByTag.put(browserTag, tagProperties);
+            }
+            if (dot >= 0)
+                tagProperties.put(key.substring(dot + 1), entry.getValue());
         }
 
         // map to hold all browser configurations. lookup via browser tag
@@ -383,13 +375,20 @@ public final class AnnotationRunnerHelper
 
         // parse all browser properties and add them to the map
         final PropertiesToBrowserConfigurationMapper mapper = new PropertiesToBrowserConfigurationMapper();
-        for (final String browserTag : browserTags)
+        for (final Entry<String, Map<String, String>> entry : browserPropertiesByTag.entrySet())
         {
-            browserProperties = properties.getPropertiesForKey(propertyKeyBrowsers + "." + browserTag);
-            browserProperties.put("browserTag", browserTag);
+            final Map<String, String> tagProperties = entry.getValue();
+            tagProperties.put("browserTag", entry.getKey());
 
-            if (browserConfigurations.get(browserTag) == null)
-                browserConfigurations.put(browserTag, mapper.toDto(browserProperties));
+            try
+            {
+                browserConfigurations.put(entry.getKey(), mapper.toDto(tagProperties));
+            }
+            catch (final IllegalArgumentException e)
+            {
+                // an invalid profile must not keep the other profiles from being used
+                XltLogger.runTimeLogger.error("Ignoring invalid browser profile '" + entry.getKey() + "': " + e.getMessage());
+            }
         }
 
         return browserConfigurations;
@@ -446,13 +445,32 @@ public final class AnnotationRunnerHelper
 
     /**
      * Returns a list of found {@link TestTargets} annotations for the first annotated class in class hierarchy starting
-     * with the given class.
+     * with the given class. The result is computed once per class.
+     * 
+     * @param clazz
+     *            the class to start inspection at
+     * @return unmodifiable list of found {@link TestTargets} annotations for the 1st found class that has such an
+     *         annotation
+     */
+    public static List<TestTargets> getTestTargets(final Class<?> clazz)
+    {
+        if (clazz == null)
+        {
+            return Collections.emptyList();
+        }
+
+        return testTargetsCache.get(clazz);
+    }
+
+    /**
+     * Looks up the {@link TestTargets} annotations for the first annotated class in class hierarchy starting with the
+     * given class.
      * 
      * @param clazz
      *            the class to start inspection at
      * @return list of found {@link TestTargets} annotations for the 1st found class that has such an annotation
      */
-    public static List<TestTargets> getTestTargets(Class<?> clazz)
+    private static List<TestTargets> resolveTestTargets(Class<?> clazz)
     {
         final ArrayList<TestTargets> foundAnnotations = new ArrayList<>();
 
@@ -471,7 +489,7 @@ public final class AnnotationRunnerHelper
             }
             clazz = clazz.getSuperclass();
         }
-        return foundAnnotations;
+        return Collections.unmodifiableList(foundAnnotations);
     }
 
 }
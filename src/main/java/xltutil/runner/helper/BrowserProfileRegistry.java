@@ -0,0 +1,244 @@
+package xltutil.runner.helper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.ImmutableCapabilities;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.dto.ProxyConfigurationDto;
+import xltutil.mapper.PropertiesToProxyConfigurationMapper;
+
+/**
+ * Immutable, JVM-wide registry of the browser profiles, test environments and proxy settings configured in the XLT
+ * properties, along with the options templates derived from the profiles. The registry is built once and shared by all
+ * runners. It is rebuilt when a runner is constructed after the {@link XltProperties} instance or its content has
+ * changed, or when it has been invalidated explicitly.
+ */
+public final class BrowserProfileRegistry
+{
+    /**
+     * The current registry.
+     */
+    private static volatile BrowserProfileRegistry instance;
+
+    /**
+     * The properties this registry was built from.
+     */
+    private final XltProperties properties;
+
+    /**
+     * The hash code of the properties' content at the time this registry was built.
+     */
+    private final int propertiesHashCode;
+
+    /**
+     * The browser configurations mapped by browser tag.
+     */
+    private final Map<String, BrowserConfigurationDto> browserConfigurations;
+
+    /**
+     * The test environment settings mapped by test environment name.
+     */
+    private final Map<String, Map<String, String>> testEnvironments;
+
+    /**
+     * The proxy configuration, may be <code>null</code>.
+     */
+    private final ProxyConfigurationDto proxyConfiguration;
+
+    /**
+     * The read-only options templates of the local browser profiles mapped by browser tag, built on first use.
+     */
+    private final ConcurrentMap<String, Capabilities> optionsTemplates = new ConcurrentHashMap<String, Capabilities>();
+
+    /**
+     * Constructor.
+     *
+     * @param properties
+     *            the properties to build the registry from
+     * @param propertiesHashCode
+     *            the hash code of the properties' content
+     */
+    private BrowserProfileRegistry(final XltProperties properties, final int propertiesHashCode)
+    {
+        this.properties = properties;
+        this.propertiesHashCode = propertiesHashCode;
+
+        browserConfigurations = Collections.unmodifiableMap(AnnotationRunnerHelper.parseBrowserProperties(properties));
+        testEnvironments = Collections.unmodifiableMap(parseTestEnvironments(properties));
+        proxyConfiguration = new PropertiesToProxyConfigurationMapper().toDto(properties);
+    }
+
+    /**
+     * Returns the current registry. This is cheap enough to be called for each driver: the registry is built on the
+     * first call and rebuilt only if the {@link XltProperties} instance has been replaced. Changes to the content of
+     * the properties are picked up by {@link #refresh()}, which each runner calls when it is constructed.
+     *
+     * @return the registry
+     */
+    public static BrowserProfileRegistry getInstance()
+    {
+        final BrowserProfileRegistry registry = instance;
+        if (registry == null || registry.properties != XltProperties.getInstance())
+        {
+            return refresh();
+        }
+
+        return registry;
+    }
+
+    /**
+     * Returns the registry for the current XLT properties, rebuilding it if this is the first call or if the
+     * properties have changed since the registry was built. Checking for changes takes time proportional to the
+     * number of properties.
+     *
+     * @return the registry
+     */
+    public static BrowserProfileRegistry refresh()
+    {
+        final XltProperties properties = XltProperties.getInstance();
+        final int propertiesHashCode = properties.getProperties().hashCode();
+
+        synchronized (BrowserProfileRegistry.class)
+        {
+            BrowserProfileRegistry registry = instance;
+            if (registry == null || registry.properties != properties || registry.propertiesHashCode != propertiesHashCode)
+            {
+                registry = new BrowserProfileRegistry(properties, propertiesHashCode);
+                instance = registry;
+            }
+
+            return registry;
+        }
+    }
+
+    /**
+     * Discards the current registry, so that the next call to {@link #getInstance()} builds a new one.
+     */
+    public static void invalidate()
+    {
+        synchronized (BrowserProfileRegistry.class)
+        {
+            instance = null;
+        }
+    }
+
+    /**
+     * Returns the browser configuration for the given browser tag.
+     *
+     * @param browserTag
+     *            the browser tag
+     * @return the browser configuration, or <code>null</code> if there is no such profile
+     */
+    public BrowserConfigurationDto getBrowserConfiguration(final String browserTag)
+    {
+        return browserConfigurations.get(browserTag);
+    }
+
+    /**
+     * Returns all browser configurations mapped by browser tag.
+     *
+     * @return the browser configurations
+     */
+    public Map<String, BrowserConfigurationDto> getBrowserConfigurations()
+    {
+        return browserConfigurations;
+    }
+
+    /**
+     * Returns the settings of the given test environment, i.e. all properties starting with
+     * <code>browserprofile.testEnvironment.&lt;name&gt;.</code> with that prefix removed.
+     *
+     * @param testEnvironment
+     *            the test environment name
+     * @return the settings, never <code>null</code>
+     */
+    public Map<String, String> getTestEnvironmentProperties(final String testEnvironment)
+    {
+        final Map<String, String> environmentProperties = testEnvironments.get(testEnvironment);
+
+        return environmentProperties != null ? environmentProperties : Collections.<String, String>emptyMap();
+    }
+
+    /**
+     * Returns the proxy configuration.
+     *
+     * @return the proxy configuration, or <code>null</code> if no proxy is configured
+     */
+    public ProxyConfigurationDto getProxyConfiguration()
+    {
+        return proxyConfiguration;
+    }
+
+    /**
+     * Returns the read-only options template for the given browser configuration of this registry, including the
+     * proxy settings and the browser path. The template is built only once per profile and may be passed to any
+     * number of drivers.
+     *
+     * @param config
+     *            the browser configuration
+     * @return the options template
+     */
+    public Capabilities getOptionsTemplate(final BrowserConfigurationDto config)
+    {
+        Capabilities template = optionsTemplates.get(config.getConfigTag());
+        if (template == null)
+        {
+            final Capabilities newTemplate = new ImmutableCapabilities(AnnotationRunnerHelper.createBrowserOptions(config, proxyConfiguration));
+            template = optionsTemplates.putIfAbsent(config.getConfigTag(), newTemplate);
+            if (template == null)
+            {
+                template = newTemplate;
+            }
+        }
+
+        return template;
+    }
+
+    /**
+     * Groups all test environment properties by test environment name.
+     *
+     * @param properties
+     *            the properties
+     * @return the test environment settings mapped by test environment name
+     */
+    private static Map<String, Map<String, String>> parseTestEnvironments(final XltProperties properties)
+    {
+        final String prefix = XltPropertyKey.BROWSERPROFILE_TEST_ENVIRONMENT;
+        final Map<String, String> environmentProperties = properties.getPropertiesForKey(prefix.substring(0, prefix.length() - 1));
+
+        final Map<String, Map<String, String>> testEnvironments = new HashMap<String, Map<String, String>>();
+        for (final Entry<String, String> entry : environmentProperties.entrySet())
+        {
+            final String key = entry.getKey();
+            final int dot = key.indexOf('.');
+            if (dot > 0)
+            {
+                final String name = key.substring(0, dot);
+
+                Map<String, String> settings = testEnvironments.get(name);
+                if (settings == null)
+                {
+                    settings = new HashMap<String, String>();
+                    testEnvironments.put(name, settings);
+                }
+                settings.put(key.substring(dot + 1), entry.getValue());
+            }
+        }
+
+        for (final Entry<String, Map<String, String>> entry : testEnvironments.entrySet())
+        {
+            entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+        }
+
+        return testEnvironments;
+    }
+}
@@ -0,0 +1,322 @@
+package xltutil.runner.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.xceptance.xlt.api.engine.CustomData;
+import com.xceptance.xlt.api.engine.Session;
+import com.xceptance.xlt.api.util.XltLogger;
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.dto.BrowserConfigurationDto;
+
+/**
+ * Measures the phases of a test method run (waiting for browser admission, driver creation, window sizing, setup, test
+ * body, and teardown) per browser tag and test environment. Each measurement is reported as an XLT custom timer, so it
+ * shows up in the load test report next to the action timings. In addition, the measurements are summarized with
+ * percentiles in the log when the JVM exits.
+ * <p>
+ * Custom timers are reported only for measurements taken on a thread that runs a test, as other threads, e.g. those
+ * launching browsers in the background, do not have the test's XLT session. Their measurements show up in the summary
+ * only.
+ * <p>
+ * The timings are opt-in, see {@link XltPropertyKey#TIMINGS_ENABLED}.
+ */
+public final class PhaseTimings
+{
+    /**
+     * The measured phases.
+     */
+    public enum Phase
+    {
+        ADMISSION_WAIT("AdmissionWait"), CREATE_DRIVER("CreateDriver"), WINDOW_SIZE("WindowSize"), SET_UP("SetUp"), TEST("Test"), TEAR_DOWN("TearDown");
+
+        private final String timerName;
+
+        private Phase(final String timerName)
+        {
+            this.timerName = timerName;
+        }
+    }
+
+    /**
+     * The maximum number of samples kept per timer for the summary. More samples are thinned out randomly.
+     */
+    private static final int MAX_SAMPLES = 10000;
+
+    /**
+     * The samples mapped by timer name.
+     */
+    private static final ConcurrentMap<String, Samples> samplesByTimer = new ConcurrentHashMap<String, Samples>();
+
+    /**
+     * Whether measurements stopped on the current thread are reported as custom timers.
+     */
+    private static final ThreadLocal<Boolean> reporting = new ThreadLocal<Boolean>();
+
+    /**
+     * Whether timings are enabled, or <code>null</code> if not determined yet.
+     */
+    private static volatile Boolean enabled;
+
+    /**
+     * Default constructor. Declared private to prevent external instantiation.
+     */
+    private PhaseTimings()
+    {
+    }
+
+    /**
+     * Returns whether phase timings are enabled.
+     *
+     * @return <code>true</code> if timings are enabled, <code>false</code> otherwise
+     */
+    public static boolean isEnabled()
+    {
+        Boolean result = enabled;
+        if (result == null)
+        {
+            result = refresh();
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads again from the XLT properties whether timings are enabled. The runner calls this once per test class.
+     *
+     * @return <code>true</code> if timings are enabled, <code>false</code> otherwise
+     */
+    public static boolean refresh()
+    {
+        final boolean result = XltProperties.getInstance().getProperty(XltPropertyKey.TIMINGS_ENABLED, false);
+        enabled = result;
+
+        return result;
+    }
+
+    /**
+     * Sets whether measurements stopped on the current thread are reported as custom timers. To be enabled only while
+     * the current thread runs a test.
+     *
+     * @param enabled
+     *            whether to report measurements
+     */
+    public static void setReporting(final boolean enabled)
+    {
+        if (enabled)
+        {
+            reporting.set(Boolean.TRUE);
+        }
+        else
+        {
+            reporting.remove();
+        }
+    }
+
+    /**
+     * Starts measuring a phase.
+     *
+     * @param phase
+     *            the phase
+     * @param config
+     *            the browser configuration of the test method
+     * @return the timer to stop when the phase is over, or <code>null</code> if timings are disabled
+     */
+    public static Timer start(final Phase phase, final BrowserConfigurationDto config)
+    {
+        return isEnabled() ? new Timer(getTimerName(phase, config)) : null;
+    }
+
+    /**
+     * Stops the given timer, if any.
+     *
+     * @param timer
+     *            the timer, may be <code>null</code>
+     */
+    public static void stop(final Timer timer)
+    {
+        if (timer != null)
+        {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Logs a summary of all measurements taken so far and starts over.
+     */
+    public static void logSummary()
+    {
+        if (samplesByTimer.isEmpty())
+        {
+            return;
+        }
+
+        final Map<String, Samples> sortedSamples = new TreeMap<String, Samples>(samplesByTimer);
+        samplesByTimer.clear();
+
+        final StringBuilder sb = new StringBuilder("Phase timings [ms]:");
+        sb.append(String.format("%n%-60s %8s %8s %8s %8s %8s %8s %8s", "Timer", "Count", "Mean", "P50", "P90", "P95", "P99", "Max"));
+        for (final Map.Entry<String, Samples> entry : sortedSamples.entrySet())
+        {
+            final Samples samples = entry.getValue();
+            final long[] values = samples.getSortedValues();
+
+            sb.append(String.format("%n%-60s %8d %8d %8d %8d %8d %8d %8d", entry.getKey(), samples.getCount(), samples.getMean(),
+                                    percentile(values, 50), percentile(values, 90), percentile(values, 95), percentile(values, 99),
+                                    samples.getMax()));
+        }
+
+        XltLogger.runTimeLogger.info(sb.toString());
+    }
+
+    /**
+     * Returns the timer name for the given phase and browser configuration.
+     *
+     * @param phase
+     *            the phase
+     * @param config
+     *            the browser configuration
+     * @return the timer name
+     */
+    private static String getTimerName(final Phase phase, final BrowserConfigurationDto config)
+    {
+        final String testEnvironment = StringUtils.isEmpty(config.getTestEnvironment()) ? "local" : config.getTestEnvironment();
+
+        return "MultiBrowser." + phase.timerName + " [" + config.getConfigTag() + ", " + testEnvironment + "]";
+    }
+
+    /**
+     * Returns the given percentile of the given sorted values, using the nearest-rank method.
+     *
+     * @param sortedValues
+     *            the sorted values
+     * @param percentile
+     *            the percentile
+     * @return the value, or 0 if there are no values
+     */
+    static long percentile(final long[] sortedValues, final int percentile)
+    {
+        if (sortedValues.length == 0)
+        {
+            return 0;
+        }
+
+        final int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.length);
+
+        return sortedValues[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Measures a single phase.
+     */
+    public static class Timer
+    {
+        private final String name;
+
+        private final long startTime = System.nanoTime();
+
+        private Timer(final String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Stops the timer and reports the measurement.
+         */
+        private void stop()
+        {
+            final long runTime = (System.nanoTime() - startTime) / 1000000;
+
+            if (reporting.get() != null)
+            {
+                final CustomData data = new CustomData(name);
+                data.setRunTime(runTime);
+                Session.getCurrent().getDataManager().logDataRecord(data);
+            }
+
+            Samples samples = samplesByTimer.get(name);
+            if (samples == null)
+            {
+                final Samples newSamples = new Samples();
+                samples = samplesByTimer.putIfAbsent(name, newSamples);
+                if (samples == null)
+                {
+                    samples = newSamples;
+                }
+            }
+            samples.add(runTime);
+        }
+    }
+
+    /**
+     * The measurements of a single timer. Keeps a uniform random sample of at most {@link #MAX_SAMPLES} values for
+     * the percentiles, while count, mean, and maximum are exact.
+     */
+    static class Samples
+    {
+        private final List<Long> values = new ArrayList<Long>();
+
+        private long count;
+
+        private long sum;
+
+        private long max;
+
+        synchronized void add(final long value)
+        {
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+
+            if (values.size() < MAX_SAMPLES)
+            {
+                values.add(value);
+            }
+            else
+            {
+                // reservoir sampling
+                final long index = ThreadLocalRandom.current().nextLong(count);
+                if (index < MAX_SAMPLES)
+                {
+                    values.set((int) index, value);
+                }
+            }
+        }
+
+        synchronized long getCount()
+        {
+            return count;
+        }
+
+        synchronized long getMean()
+        {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        synchronized long getMax()
+        {
+            return max;
+        }
+
+        synchronized long[] getSortedValues()
+        {
+            final long[] sortedValues = new long[values.size()];
+            for (int i = 0; i < sortedValues.length; i++)
+            {
+                sortedValues[i] = values.get(i);
+            }
+            Arrays.sort(sortedValues);
+
+            return sortedValues;
+        }
+    }
+}
@@ -38,4 +38,108 @@ public abstract class XltPropertyKey
 
     public static final String OPERA_PATH = "xlt.webDriver.opera.pathToBrowser";
 
+    public static final String DRIVER_POOL_ENABLED = "xlt.multiBrowser.driverPool.enabled";
+
+    public static final String DRIVER_POOL_MAX_SIZE = "xlt.multiBrowser.driverPool.maxSize";
+
+    public static final String DRIVER_POOL_MAX_IDLE_TIME = "xlt.multiBrowser.driverPool.maxIdleTime";
+
+    public static final String PARALLEL_ENABLED = "xlt.multiBrowser.parallel.enabled";
+
+    public static final String PARALLEL_THREADS = "xlt.multiBrowser.parallel.threads";
+
+    public static final String PARALLEL_MAX_PER_BROWSER_TAG = "xlt.multiBrowser.parallel.maxPerBrowserTag";
+
+    public static final String PARALLEL_MAX_PER_TEST_ENVIRONMENT = "xlt.multiBrowser.parallel.maxPerTestEnvironment";
+
+    public static final String GRID_MAX_CONNECTIONS_PER_ROUTE = "xlt.multiBrowser.grid.maxConnectionsPerRoute";
+
+    public static final String GRID_MAX_IDLE_TIME = "xlt.multiBrowser.grid.maxIdleTime";
+
+    public static final String DATA_SETS_STREAMING_ENABLED = "xlt.multiBrowser.dataSets.streaming.enabled";
+
+    public static final String DATA_SETS_FILE_INDEX_ENABLED = "xlt.multiBrowser.dataSets.fileIndex.enabled";
+
+    public static final String DISPLAY_NAME_PATTERN = "xlt.multiBrowser.displayName.pattern";
+
+    public static final String DISPLAY_NAME_KEY_COLUMNS = "xlt.multiBrowser.displayName.keyColumns";
+
+    public static final String TEARDOWN_ASYNC = "xlt.multiBrowser.teardown.async";
+
+    public static final String TEARDOWN_TIMEOUT = "xlt.multiBrowser.teardown.timeout";
+
+    public static final String TEARDOWN_THREADS = "xlt.multiBrowser.teardown.threads";
+
+    public static final String DRIVER_SERVICE_SHARED = "xlt.multiBrowser.driverService.shared";
+
+    public static final String PREFETCH_DEPTH = "xlt.multiBrowser.prefetch.depth";
+
+    public static final String PREFETCH_THREADS = "xlt.multiBrowser.prefetch.threads";
+
+    public static final String PREFETCH_MIN_FREE_MEMORY = "xlt.multiBrowser.prefetch.minFreeMemory";
+
+    public static final String PREFETCH_MAX_CPU_LOAD = "xlt.multiBrowser.prefetch.maxCpuLoad";
+
+    public static final String TIMINGS_ENABLED = "xlt.multiBrowser.timings.enabled";
+
+    public static final String SHARD_INDEX = "xlt.multiBrowser.shard.index";
+
+    public static final String SHARD_COUNT = "xlt.multiBrowser.shard.count";
+
+    public static final String SHARD_STRATEGY = "xlt.multiBrowser.shard.strategy";
+
+    public static final String SHARD_COST_MODEL = "xlt.multiBrowser.shard.costModel";
+
+    public static final String SHARD_HISTORY_FILE = "xlt.multiBrowser.shard.historyFile";
+
+    public static final String HISTORY_ENABLED = "xlt.multiBrowser.history.enabled";
+
+    public static final String HISTORY_FILE = "xlt.multiBrowser.history.file";
+
+    public static final String HEADLESS = "xlt.multiBrowser.headless";
+
+    public static final String LOW_OVERHEAD = "xlt.multiBrowser.lowOverhead";
+
+    public static final String ADMISSION_ENABLED = "xlt.multiBrowser.admission.enabled";
+
+    public static final String ADMISSION_MAX_BROWSERS = "xlt.multiBrowser.admission.maxBrowsers";
+
+    public static final String ADMISSION_MEMORY_PER_BROWSER = "xlt.multiBrowser.admission.memoryPerBrowser";
+
+    public static final String ADMISSION_LOCK_DIRECTORY = "xlt.multiBrowser.admission.lockDirectory";
+
+    public static final String GRID_SESSION_REUSE_ENABLED = "xlt.multiBrowser.grid.sessionReuse.enabled";
+
+    public static final String GRID_SESSION_REUSE_MAX_IDLE_TIME = "xlt.multiBrowser.grid.sessionReuse.maxIdleTime";
+
+    public static final String RECYCLE_MAX_USES = "xlt.multiBrowser.recycle.maxUses";
+
+    public static final String RECYCLE_MAX_AGE = "xlt.multiBrowser.recycle.maxAge";
+
+    public static final String RECYCLE_MAX_MEMORY = "xlt.multiBrowser.recycle.maxMemory";
+
+    public static final String GRID_CONNECT_TIMEOUT = "xlt.multiBrowser.grid.connectTimeout";
+
+    public static final String GRID_READ_TIMEOUT = "xlt.multiBrowser.grid.readTimeout";
+
+    public static final String GRID_NEW_SESSION_TIMEOUT = "xlt.multiBrowser.grid.newSessionTimeout";
+
+    public static final String GRID_RETRIES = "xlt.multiBrowser.grid.retries";
+
+    public static final String GRID_RETRY_BACKOFF = "xlt.multiBrowser.grid.retryBackoff";
+
+    public static final String GRID_RETRY_MAX_BACKOFF = "xlt.multiBrowser.grid.retryMaxBackoff";
+
+    public static final String GRID_CIRCUIT_BREAKER_FAILURES = "xlt.multiBrowser.grid.circuitBreaker.failures";
+
+    public static final String GRID_CIRCUIT_BREAKER_OPEN_TIME = "xlt.multiBrowser.grid.circuitBreaker.openTime";
+
+    public static final String DRIVER_FACTORY = "xlt.multiBrowser.driverFactory";
+
+    public static final String FAKE_NEW_SESSION_LATENCY = "xlt.multiBrowser.fake.newSessionLatency";
+
+    public static final String FAKE_COMMAND_LATENCY = "xlt.multiBrowser.fake.commandLatency";
+
+    public static final String FAKE_QUIT_LATENCY = "xlt.multiBrowser.fake.quitLatency";
+
 }
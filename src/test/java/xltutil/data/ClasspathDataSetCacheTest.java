@@ -0,0 +1,46 @@
+package xltutil.data;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.xceptance.xlt.engine.data.DataSetProviderFactory;
+
+/**
+ * Tests the implementation of {@link ClasspathDataSetCache}.
+ */
+public class ClasspathDataSetCacheTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @After
+    public void clearCache()
+    {
+        ClasspathDataSetCache.clear();
+    }
+
+    @Test
+    public void testGetDataSets_CsvSameAsXlt() throws Exception
+    {
+        final File file = temporaryFolder.newFile("datasets.csv");
+        FileUtils.writeStringToFile(file, "# comment\nuser,password\nfoo,bar\n\n\"x,y\",\"a \"\"b\"\"\"\n", StandardCharsets.UTF_8);
+
+        final List<Map<String, String>> expected = DataSetProviderFactory.getInstance().createDataSetProvider("csv").getAllDataSets(file);
+        final List<Map<String, String>> dataSets = ClasspathDataSetCache.getDataSets(file.toURI().toURL());
+
+        Assert.assertEquals(expected, new ArrayList<Map<String, String>>(dataSets));
+
+        // read once only
+        Assert.assertSame(dataSets, ClasspathDataSetCache.getDataSets(file.toURI().toURL()));
+    }
+}
@@ -0,0 +1,93 @@
+package xltutil.data;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the implementation of {@link CsvDataSetReader}.
+ */
+public class CsvDataSetReaderTest
+{
+    @Test
+    public void testReadDataSets() throws IOException
+    {
+        try (final CsvDataSetReader reader = new CsvDataSetReader(new StringReader("user,password\nfoo,bar\n\nbaz,\n")))
+        {
+            Assert.assertArrayEquals(new String[]
+            {
+              "user", "password"
+            }, reader.getColumnNames());
+
+            Map<String, String> dataSet = reader.readDataSet();
+            Assert.assertEquals("foo", dataSet.get("user"));
+            Assert.assertEquals("bar", dataSet.get("password"));
+
+            dataSet = reader.readDataSet();
+            Assert.assertEquals("baz", dataSet.get("user"));
+            Assert.assertEquals("", dataSet.get("password"));
+
+            Assert.assertNull(reader.readDataSet());
+        }
+    }
+
+    @Test
+    public void testReadDataSets_QuotedFields() throws IOException
+    {
+        try (final CsvDataSetReader reader = new CsvDataSetReader(new StringReader("a,b\n\"x,y\",\"say \"\"hi\"\"\nthere\"\n")))
+        {
+            final Map<String, String> dataSet = reader.readDataSet();
+            Assert.assertEquals("x,y", dataSet.get("a"));
+            Assert.assertEquals("say \"hi\"\nthere", dataSet.get("b"));
+
+            Assert.assertNull(reader.readDataSet());
+        }
+    }
+
+    @Test
+    public void testReadDataSets_MissingTrailingValues() throws IOException
+    {
+        try (final CsvDataSetReader reader = new CsvDataSetReader(new StringReader("a,b,c\n1\n")))
+        {
+            Assert.assertArrayEquals(new String[]
+            {
+              "1", "", ""
+            }, reader.readValues());
+        }
+    }
+
+    @Test
+    public void testReadDataSets_CommentLines() throws IOException
+    {
+        try (final CsvDataSetReader reader = new CsvDataSetReader(new StringReader("# header follows\na,b\n#1,2\n3,4\n")))
+        {
+            Assert.assertArrayEquals(new String[]
+            {
+              "3", "4"
+            }, reader.readValues());
+            Assert.assertNull(reader.readValues());
+        }
+    }
+
+    @Test
+    public void testReadDataSets_Empty() throws IOException
+    {
+        try (final CsvDataSetReader reader = new CsvDataSetReader(new StringReader("")))
+        {
+            Assert.assertNull(reader.getColumnNames());
+            Assert.assertNull(reader.readDataSet());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadDataSets_UnterminatedQuote() throws IOException
+    {
+        try (final CsvDataSetReader reader = new CsvDataSetReader(new StringReader("a\n\"open\n")))
+        {
+            reader.readDataSet();
+        }
+    }
+}
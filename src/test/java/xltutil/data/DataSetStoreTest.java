@@ -0,0 +1,77 @@
+package xltutil.data;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the implementation of {@link DataSetStore}.
+ */
+public class DataSetStoreTest
+{
+    @Test
+    public void testOf()
+    {
+        final List<Map<String, String>> dataSets = new ArrayList<Map<String, String>>();
+        dataSets.add(dataSet("a", "1", "b", "x"));
+        dataSets.add(dataSet("a", "2", "c", "y"));
+
+        final DataSetStore store = DataSetStore.of(dataSets);
+
+        Assert.assertEquals(2, store.size());
+        Assert.assertArrayEquals(new String[]
+        {
+          "a", "b", "c"
+        }, store.getColumnNames());
+        Assert.assertEquals(dataSets.get(0), store.get(0));
+        Assert.assertEquals(dataSets.get(1), store.get(1));
+        Assert.assertNull(store.getValue(1, "b"));
+    }
+
+    @Test
+    public void testRead() throws IOException
+    {
+        final StringBuilder csv = new StringBuilder("id,color\n");
+        for (int i = 0; i < 100; i++)
+        {
+            csv.append(i).append(',').append(i % 2 == 0 ? "red" : "blue").append('\n');
+        }
+
+        final DataSetStore store = DataSetStore.read(new CsvDataSetReader(new StringReader(csv.toString())));
+
+        Assert.assertEquals(100, store.size());
+        Assert.assertEquals(dataSet("id", "42", "color", "red"), store.get(42));
+
+        // equal values of a column share the same instance
+        Assert.assertSame(store.getValue(0, "color"), store.getValue(2, "color"));
+    }
+
+    @Test
+    public void testGet_ReturnsCopy()
+    {
+        final List<Map<String, String>> dataSets = new ArrayList<Map<String, String>>();
+        dataSets.add(dataSet("a", "1"));
+
+        final DataSetStore store = DataSetStore.of(dataSets);
+        store.get(0).put("a", "changed");
+
+        Assert.assertEquals("1", store.get(0).get("a"));
+    }
+
+    private static Map<String, String> dataSet(final String... keysAndValues)
+    {
+        final Map<String, String> dataSet = new LinkedHashMap<String, String>();
+        for (int i = 0; i < keysAndValues.length; i += 2)
+        {
+            dataSet.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+
+        return dataSet;
+    }
+}
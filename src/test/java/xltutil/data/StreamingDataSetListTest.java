@@ -0,0 +1,112 @@
+package xltutil.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.xceptance.xlt.api.util.XltProperties;
+import com.xceptance.xlt.engine.data.DataSetProviderFactory;
+
+/**
+ * Tests that {@link StreamingDataSetList} sees the same data sets as the CSV data set provider of XLT.
+ */
+public class StreamingDataSetListTest
+{
+    private static final String SEPARATOR = "com.xceptance.xlt.data.dataSetProviders.csv.separator";
+
+    private static final String ENCODING = "com.xceptance.xlt.data.dataSetProviders.csv.encoding";
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @After
+    public void resetProperties()
+    {
+        final XltProperties props = XltProperties.getInstance();
+        props.setProperty(SEPARATOR, ",");
+        props.setProperty(ENCODING, "UTF-8");
+    }
+
+    @Test
+    public void testSameAsXlt_Defaults() throws Exception
+    {
+        assertSameAsXlt("# comment\nuser,password\n\nfoo,bar\n# another comment\n\"x,y\",\"say \"\"hi\"\"\"\r\nbaz,\u00e4\u00f6\u00fc\n",
+                        StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSameAsXlt_Separator() throws Exception
+    {
+        XltProperties.getInstance().setProperty(SEPARATOR, ";");
+
+        assertSameAsXlt("a;b\n1,5;2\n\"3;4\";5\n", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSameAsXlt_Encoding() throws Exception
+    {
+        XltProperties.getInstance().setProperty(ENCODING, "ISO-8859-1");
+
+        assertSameAsXlt("name,city\nJ\u00fcrgen,K\u00f6ln\n", StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testGet_MultiLineRecords() throws Exception
+    {
+        final File file = write("a,b\n\"1\n\n# no comment\",2\n3,4\n", StandardCharsets.UTF_8);
+        final StreamingDataSetList dataSets = new StreamingDataSetList(file.toURI().toURL());
+
+        Assert.assertEquals(2, dataSets.size());
+        Assert.assertEquals("1\n\n# no comment", dataSets.get(0).get("a"));
+        Assert.assertEquals("3", dataSets.get(1).get("a"));
+        Assert.assertEquals(dataSets.get(1), new ArrayList<Map<String, String>>(dataSets).get(1));
+    }
+
+    @Test
+    public void testIsCompatible()
+    {
+        final XltProperties props = XltProperties.getInstance();
+        Assert.assertTrue(CsvDataSetReader.isCompatible());
+
+        props.setProperty(ENCODING, "UTF-16");
+        Assert.assertFalse(CsvDataSetReader.isCompatible());
+
+        props.setProperty(ENCODING, "UTF-8");
+        props.setProperty(SEPARATOR, ";;");
+        Assert.assertFalse(CsvDataSetReader.isCompatible());
+    }
+
+    private void assertSameAsXlt(final String csv, final Charset charset) throws Exception
+    {
+        final File file = write(csv, charset);
+
+        final List<Map<String, String>> expected = DataSetProviderFactory.getInstance().createDataSetProvider("csv").getAllDataSets(file);
+        final StreamingDataSetList dataSets = new StreamingDataSetList(file.toURI().toURL());
+
+        // iterated and randomly accessed
+        Assert.assertEquals(expected, new ArrayList<Map<String, String>>(dataSets));
+        for (int i = dataSets.size() - 1; i >= 0; i--)
+        {
+            Assert.assertEquals(expected.get(i), dataSets.get(i));
+        }
+    }
+
+    private File write(final String csv, final Charset charset) throws IOException
+    {
+        final File file = temporaryFolder.newFile("datasets.csv");
+        FileUtils.writeStringToFile(file, csv, charset);
+
+        return file;
+    }
+}
@@ -0,0 +1,71 @@
+package xltutil.driver;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Tests the implementation of {@link AsyncDriverTeardown} against fake browsers.
+ */
+public class AsyncDriverTeardownTest
+{
+    @Test(timeout = 10000)
+    public void testQuit_HangingQuitsDoNotHoldUpOthers() throws Exception
+    {
+        final int threads = Math.max(1, XltProperties.getInstance().getProperty(XltPropertyKey.TEARDOWN_THREADS,
+                                                                                 Runtime.getRuntime().availableProcessors()));
+        final FakeWebDriverServer hangingServer = new FakeWebDriverServer(0, 0, 60000);
+        final FakeWebDriverServer server = new FakeWebDriverServer(0, 0, 0);
+        try
+        {
+            final AsyncDriverTeardown teardown = new AsyncDriverTeardown(200);
+
+            // occupy all worker threads with quits that hang in socket I/O
+            for (int i = 0; i < threads; i++)
+            {
+                teardown.quit(new RemoteWebDriver(hangingServer.getUrl(), new DesiredCapabilities()));
+            }
+            teardown.quit(new RemoteWebDriver(server.getUrl(), new DesiredCapabilities()));
+
+            // the hanging quits time out, and replacement workers quit the other driver
+            teardown.awaitCompletion();
+            while (server.getSessionCount() > 0)
+            {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(threads, hangingServer.getSessionCount());
+        }
+        finally
+        {
+            hangingServer.stop();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testForceKill_NoDedicatedService() throws Exception
+    {
+        final FakeWebDriverServer server = new FakeWebDriverServer(0, 0, 0);
+        try
+        {
+            final WebDriver driver = new RemoteWebDriver(server.getUrl(), new DesiredCapabilities());
+
+            // sessions without a driver server of their own are abandoned, not ended
+            Assert.assertNull(DriverServiceRegistry.getDedicatedService(driver));
+            AsyncDriverTeardown.forceKill(driver);
+            Assert.assertEquals(1, server.getSessionCount());
+
+            driver.quit();
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package xltutil.driver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.xceptance.xlt.api.webdriver.XltDriver;
+
+/**
+ * Tests that the implementations of {@link BrowserStateResetter} leave no state behind. The Chrome test runs only if
+ * a chromedriver is configured via the system property <code>webdriver.chrome.driver</code>.
+ */
+public class BrowserStateResetterTest
+{
+    private static final String PAGE = "<html><head><title>State</title></head><body>State</body></html>";
+
+    private HttpServer server;
+
+    private String pageUrl;
+
+    @Before
+    public void startServer() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler()
+        {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException
+            {
+                final byte[] body = PAGE.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (final OutputStream out = exchange.getResponseBody())
+                {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+
+        pageUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void stopServer()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void testGenericReset_NoLeftoverState()
+    {
+        final WebDriver driver = new XltDriver(true);
+        try
+        {
+            assertResetIsolates(new GenericStateResetter(), driver);
+        }
+        finally
+        {
+            driver.quit();
+        }
+    }
+
+    @Test
+    public void testChromeReset_NoLeftoverState()
+    {
+        Assume.assumeTrue(System.getProperty("webdriver.chrome.driver") != null);
+
+        final ChromeOptions options = new ChromeOptions();
+        options.setHeadless(true);
+
+        final WebDriver driver = new ChromeDriver(options);
+        try
+        {
+            assertResetIsolates(new ChromeStateResetter(), driver);
+        }
+        finally
+        {
+            driver.quit();
+        }
+    }
+
+    private void assertResetIsolates(final BrowserStateResetter resetter, final WebDriver driver)
+    {
+        final JavascriptExecutor js = (JavascriptExecutor) driver;
+
+        driver.get(pageUrl);
+        driver.manage().addCookie(new Cookie("leftover", "1"));
+        js.executeScript("window.localStorage.setItem('leftover', '1'); window.sessionStorage.setItem('leftover', '1');");
+
+        Assert.assertTrue(resetter.reset(driver));
+        Assert.assertEquals("about:blank", driver.getCurrentUrl());
+
+        driver.get(pageUrl);
+        Assert.assertNull(driver.manage().getCookieNamed("leftover"));
+        Assert.assertNull(js.executeScript("return window.localStorage.getItem('leftover');"));
+        Assert.assertNull(js.executeScript("return window.sessionStorage.getItem('leftover');"));
+    }
+}
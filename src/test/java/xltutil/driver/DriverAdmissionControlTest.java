@@ -0,0 +1,184 @@
+package xltutil.driver;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openqa.selenium.WebDriver;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Tests the implementation of {@link DriverAdmissionControl} against fake browsers.
+ */
+public class DriverAdmissionControlTest
+{
+    private static final String FAMILY = "admissionTest";
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void cleanUp()
+    {
+        executor.shutdownNow();
+
+        final XltProperties props = XltProperties.getInstance();
+        props.setProperty(XltPropertyKey.ADMISSION_ENABLED, "false");
+        props.setProperty(XltPropertyKey.DRIVER_POOL_ENABLED, "false");
+        DriverAdmissionControl.invalidate();
+        WebDriverPool.shutdownInstance();
+    }
+
+    @Test(timeout = 10000)
+    public void testAcquireAndRelease() throws Exception
+    {
+        final DriverAdmissionControl admissionControl = new DriverAdmissionControl(1);
+        final WebDriver driver = createDriver();
+
+        admissionControl.acquire(FAMILY);
+        admissionControl.admitted(driver, FAMILY);
+
+        final Future<?> waitingAcquire = acquireInBackground(admissionControl);
+        assertWaiting(waitingAcquire);
+
+        // the permit of the quit browser goes to the waiting request
+        driver.quit();
+        admissionControl.release(driver);
+        waitingAcquire.get();
+
+        // releasing again has no effect
+        admissionControl.release(driver);
+        assertWaiting(acquireInBackground(admissionControl));
+    }
+
+    @Test(timeout = 10000)
+    public void testCancel() throws Exception
+    {
+        final DriverAdmissionControl admissionControl = new DriverAdmissionControl(1);
+
+        admissionControl.acquire(FAMILY);
+        final Future<?> waitingAcquire = acquireInBackground(admissionControl);
+        assertWaiting(waitingAcquire);
+
+        // the browser could not be launched
+        admissionControl.cancel(FAMILY);
+        waitingAcquire.get();
+    }
+
+    @Test(timeout = 10000)
+    public void testAcquire_LimitPerFamily() throws Exception
+    {
+        final DriverAdmissionControl admissionControl = new DriverAdmissionControl(1);
+
+        admissionControl.acquire(FAMILY);
+        admissionControl.acquire("otherFamily");
+
+        assertWaiting(acquireInBackground(admissionControl));
+    }
+
+    @Test(timeout = 10000)
+    public void testAcquire_ServesWaitingRequestsInArrivalOrder() throws Exception
+    {
+        final DriverAdmissionControl admissionControl = new DriverAdmissionControl(1);
+        admissionControl.acquire(FAMILY);
+
+        final Future<?> firstAcquire = acquireInBackground(admissionControl);
+        assertWaiting(firstAcquire);
+        final Future<?> secondAcquire = acquireInBackground(admissionControl);
+        assertWaiting(secondAcquire);
+
+        // the earlier request gets the permit, even if the later one has been waiting for more than a second
+        Thread.sleep(1500);
+        admissionControl.cancel(FAMILY);
+        firstAcquire.get();
+        assertWaiting(secondAcquire);
+
+        admissionControl.cancel(FAMILY);
+        secondAcquire.get();
+    }
+
+    @Test(timeout = 10000)
+    public void testAcquire_EvictsIdlePooledDriverWhileWaiting() throws Exception
+    {
+        final XltProperties props = XltProperties.getInstance();
+        props.setProperty(XltPropertyKey.ADMISSION_ENABLED, "true");
+        props.setProperty(XltPropertyKey.ADMISSION_MAX_BROWSERS + "." + FAMILY, "1");
+        props.setProperty(XltPropertyKey.DRIVER_POOL_ENABLED, "true");
+
+        final DriverAdmissionControl admissionControl = DriverAdmissionControl.getInstance();
+        final BrowserConfigurationDto config = WebDriverPoolTest.createConfig("a");
+        final WebDriver driver = createDriver();
+
+        admissionControl.acquire(FAMILY);
+        admissionControl.admitted(driver, FAMILY);
+        WebDriverPool.getInstance().release(config, driver);
+        Assert.assertFalse(WebDriverPoolTest.isQuit(driver));
+
+        // the idle browser holds the only permit, so it is quit to make room
+        admissionControl.acquire(FAMILY);
+        Assert.assertTrue(WebDriverPoolTest.isQuit(driver));
+        Assert.assertNull(WebDriverPool.getInstance().lease(config));
+    }
+
+    @Test(timeout = 10000)
+    public void testAcquire_LimitSharedViaLockDirectory() throws Exception
+    {
+        // two instances sharing a lock directory behave like two JVMs
+        final DriverAdmissionControl admissionControl = new DriverAdmissionControl(2, temporaryFolder.getRoot());
+        final DriverAdmissionControl otherAdmissionControl = new DriverAdmissionControl(2, temporaryFolder.getRoot());
+
+        admissionControl.acquire(FAMILY);
+        otherAdmissionControl.acquire(FAMILY);
+
+        final Future<?> waitingAcquire = acquireInBackground(admissionControl);
+        assertWaiting(waitingAcquire);
+
+        otherAdmissionControl.cancel(FAMILY);
+        waitingAcquire.get();
+    }
+
+    private Future<?> acquireInBackground(final DriverAdmissionControl admissionControl)
+    {
+        return executor.submit(new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                admissionControl.acquire(FAMILY);
+                return null;
+            }
+        });
+    }
+
+    private static void assertWaiting(final Future<?> acquire) throws Exception
+    {
+        try
+        {
+            acquire.get(300, TimeUnit.MILLISECONDS);
+            Assert.fail("Browser admitted although the limit is reached");
+        }
+        catch (final TimeoutException e)
+        {
+            // expected
+        }
+    }
+
+    private static WebDriver createDriver()
+    {
+        return new FakeDriverFactory().createDriver(WebDriverPoolTest.createConfig("a"), null);
+    }
+}
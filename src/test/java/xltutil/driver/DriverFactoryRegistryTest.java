@@ -0,0 +1,76 @@
+package xltutil.driver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.mapper.PropertiesToBrowserConfigurationMapper;
+
+/**
+ * Tests that parsed browser profiles are bound to the right {@link DriverFactory}.
+ */
+public class DriverFactoryRegistryTest
+{
+    @Test
+    public void testBind_LocalBrowsers()
+    {
+        Assert.assertTrue(toDto("chrome", null).getDriverFactory() instanceof ChromeDriverFactory);
+        Assert.assertTrue(toDto("Chrome_ClientPerformance", null).getDriverFactory() instanceof ChromeDriverFactory);
+        Assert.assertTrue(toDto("firefox", null).getDriverFactory() instanceof FirefoxDriverFactory);
+        Assert.assertTrue(toDto("edge", null).getDriverFactory() instanceof EdgeDriverFactory);
+        Assert.assertTrue(toDto("opera", null).getDriverFactory() instanceof OperaDriverFactory);
+        Assert.assertTrue(toDto("internetexplorer", null).getDriverFactory() instanceof InternetExplorerDriverFactory);
+        Assert.assertTrue(toDto("fake", "local").getDriverFactory() instanceof FakeDriverFactory);
+
+        // unknown browsers default to Firefox
+        Assert.assertTrue(toDto("unknown", null).getDriverFactory() instanceof FirefoxDriverFactory);
+    }
+
+    @Test
+    public void testBind_RemoteBrowsers()
+    {
+        Assert.assertTrue(toDto("chrome", "saucelabs").getDriverFactory() instanceof GridDriverFactory);
+        Assert.assertTrue(toDto("iphone", "saucelabs").getDriverFactory() instanceof GridDriverFactory);
+    }
+
+    @Test
+    public void testGetFactory_UnknownBrowser()
+    {
+        Assert.assertNull(DriverFactoryRegistry.getFactory("unknown"));
+
+        // the miss is remembered, but does not hide a factory
+        Assert.assertNull(DriverFactoryRegistry.getFactory("Unknown"));
+        Assert.assertTrue(DriverFactoryRegistry.getFactory("chrome") instanceof ChromeDriverFactory);
+        Assert.assertNull(DriverFactoryRegistry.getFactory(" "));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateCapabilities_RemoteIsNoBrowser()
+    {
+        toDto(DriverFactoryRegistry.REMOTE, "saucelabs");
+    }
+
+    @Test
+    public void testClientPerformance()
+    {
+        Assert.assertTrue(toDto("firefox_clientperformance", null).isClientperformanceEnabled());
+        Assert.assertFalse(toDto("firefox", null).isClientperformanceEnabled());
+    }
+
+    private static BrowserConfigurationDto toDto(final String browser, final String testEnvironment)
+    {
+        final Map<String, String> properties = new HashMap<String, String>();
+        properties.put("browserTag", "tag");
+        properties.put("name", "Test");
+        properties.put("browser", browser);
+        if (testEnvironment != null)
+        {
+            properties.put("testEnvironment", testEnvironment);
+        }
+
+        return new PropertiesToBrowserConfigurationMapper().toDto(properties);
+    }
+}
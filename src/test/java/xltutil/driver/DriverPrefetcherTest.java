@@ -0,0 +1,87 @@
+package xltutil.driver;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+
+import xltutil.dto.BrowserConfigurationDto;
+
+/**
+ * Tests the implementation of {@link DriverPrefetcher} against fake browsers.
+ */
+public class DriverPrefetcherTest
+{
+    @Test
+    public void testTake_InScheduleOrder()
+    {
+        final BrowserConfigurationDto a = WebDriverPoolTest.createConfig("a");
+        final BrowserConfigurationDto b = WebDriverPoolTest.createConfig("b");
+
+        final DriverPrefetcher prefetcher = new DriverPrefetcher(Arrays.asList(a, b, a).iterator(), null, 2, 1, 2, 0, 0);
+        prefetcher.start();
+
+        final WebDriver first = prefetcher.take(a);
+        final WebDriver second = prefetcher.take(b);
+        final WebDriver third = prefetcher.take(a);
+        Assert.assertNotNull(first);
+        Assert.assertNotNull(second);
+        Assert.assertNotNull(third);
+        Assert.assertNull(prefetcher.take(a));
+
+        prefetcher.shutdown(null);
+        for (final WebDriver driver : Arrays.asList(first, second, third))
+        {
+            Assert.assertFalse(WebDriverPoolTest.isQuit(driver));
+            driver.quit();
+        }
+    }
+
+    @Test
+    public void testTake_DisposesPassedOverDrivers() throws InterruptedException
+    {
+        final BrowserConfigurationDto a = WebDriverPoolTest.createConfig("a");
+        final BrowserConfigurationDto b = WebDriverPoolTest.createConfig("b");
+        final FakeWebDriverServer server = FakeDriverFactory.getServer();
+        final int sessionCount = server.getSessionCount();
+
+        // a single thread launches the browser for a before the one for b
+        final DriverPrefetcher prefetcher = new DriverPrefetcher(Arrays.asList(a, b).iterator(), null, 2, 1, 1, 0, 0);
+        prefetcher.start();
+
+        // the test for a has been skipped, so its browser will never be taken and is quit in the background
+        final WebDriver driver = prefetcher.take(b);
+        Assert.assertNotNull(driver);
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (server.getSessionCount() != sessionCount + 1 && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(sessionCount + 1, server.getSessionCount());
+
+        prefetcher.shutdown(null);
+        driver.quit();
+    }
+
+    @Test
+    public void testTake_ToleratesPassingWhileTestsRunConcurrently()
+    {
+        final BrowserConfigurationDto a = WebDriverPoolTest.createConfig("a");
+        final BrowserConfigurationDto b = WebDriverPoolTest.createConfig("b");
+
+        final DriverPrefetcher prefetcher = new DriverPrefetcher(Arrays.asList(a, b).iterator(), null, 2, 2, 2, 0, 0);
+        prefetcher.start();
+
+        // with two tests running at the same time, the test for a may just be a little late
+        final WebDriver second = prefetcher.take(b);
+        final WebDriver first = prefetcher.take(a);
+        Assert.assertNotNull(first);
+        Assert.assertNotNull(second);
+
+        prefetcher.shutdown(null);
+        first.quit();
+        second.quit();
+    }
+}
@@ -0,0 +1,104 @@
+package xltutil.driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.remote.service.DriverService;
+
+import xltutil.driver.DriverServiceRegistry.DriverType;
+import xltutil.driver.DriverServiceRegistry.Health;
+
+/**
+ * Tests the implementation of {@link DriverServiceRegistry} with a {@link FakeWebDriverServer} process standing in for
+ * chromedriver.
+ */
+public class DriverServiceRegistryTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void setUpFakeDriverExecutable() throws IOException
+    {
+        Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+
+        final File java = new File(System.getProperty("java.home"), "bin/java");
+        final File executable = temporaryFolder.newFile("fakedriver");
+        FileUtils.writeStringToFile(executable, "#!/bin/sh\nexec '" + java.getAbsolutePath() + "' -cp '" + System.getProperty("java.class.path")
+                                                + "' " + FakeWebDriverServer.class.getName() + " \"$@\"\n",
+                                    StandardCharsets.UTF_8);
+        executable.setExecutable(true);
+
+        System.setProperty(ChromeDriverService.CHROME_DRIVER_EXE_PROPERTY, executable.getAbsolutePath());
+    }
+
+    @After
+    public void stopServices()
+    {
+        DriverServiceRegistry.stopAll();
+        System.clearProperty(ChromeDriverService.CHROME_DRIVER_EXE_PROPERTY);
+    }
+
+    @Test
+    public void testCreateDriver_TypedDriverOnSharedService()
+    {
+        final WebDriver driver = DriverServiceRegistry.createDriver(DriverType.CHROME, new ChromeOptions());
+        Assert.assertTrue(driver instanceof ChromeDriver);
+
+        final DriverService service = DriverServiceRegistry.getService(DriverType.CHROME);
+        driver.quit();
+
+        // quitting a session keeps the service running for the next one
+        Assert.assertEquals(Health.HEALTHY, DriverServiceRegistry.check(service));
+
+        final WebDriver nextDriver = DriverServiceRegistry.createDriver(DriverType.CHROME, new ChromeOptions());
+        Assert.assertSame(service, DriverServiceRegistry.getService(DriverType.CHROME));
+        nextDriver.quit();
+
+        DriverServiceRegistry.stopAll();
+        Assert.assertFalse(service.isRunning());
+    }
+
+    @Test
+    public void testCreateDriver_RestartsDeadService()
+    {
+        final DriverService service = DriverServiceRegistry.getService(DriverType.CHROME);
+        ((DriverServiceRegistry.SharedService) service).shutdown();
+        Assert.assertEquals(Health.DEAD, DriverServiceRegistry.check(service));
+
+        final WebDriver driver = DriverServiceRegistry.createDriver(DriverType.CHROME, new ChromeOptions());
+        Assert.assertNotSame(service, DriverServiceRegistry.getService(DriverType.CHROME));
+        driver.quit();
+    }
+
+    @Test
+    public void testRestartService_KeepsReplacedServiceUntilUnused()
+    {
+        final WebDriver driver = DriverServiceRegistry.createDriver(DriverType.CHROME, new ChromeOptions());
+        final DriverService service = DriverServiceRegistry.getService(DriverType.CHROME);
+
+        final DriverService newService = DriverServiceRegistry.restartService(DriverType.CHROME, service);
+        Assert.assertNotSame(service, newService);
+
+        // the running session keeps the replaced service alive until it quits
+        Assert.assertEquals(Health.HEALTHY, DriverServiceRegistry.check(service));
+        driver.getCurrentUrl();
+        driver.quit();
+        Assert.assertFalse(service.isRunning());
+        Assert.assertTrue(newService.isRunning());
+    }
+}
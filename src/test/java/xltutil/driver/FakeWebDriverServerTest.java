@@ -0,0 +1,49 @@
+package xltutil.driver;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+/**
+ * Tests that a {@link RemoteWebDriver} can drive a session of the {@link FakeWebDriverServer}.
+ */
+public class FakeWebDriverServerTest
+{
+    private FakeWebDriverServer server;
+
+    @Before
+    public void startServer() throws IOException
+    {
+        server = new FakeWebDriverServer(0, 0, 0);
+    }
+
+    @After
+    public void stopServer()
+    {
+        server.stop();
+    }
+
+    @Test
+    public void testSessionLifecycle()
+    {
+        final DesiredCapabilities capabilities = new DesiredCapabilities();
+        capabilities.setBrowserName(FakeDriverFactory.BROWSER_NAME);
+
+        final RemoteWebDriver driver = new RemoteWebDriver(server.getUrl(), capabilities);
+        Assert.assertEquals(1, server.getSessionCount());
+
+        driver.get("http://localhost/page?a=1");
+        Assert.assertEquals("http://localhost/page?a=1", driver.getCurrentUrl());
+        Assert.assertEquals(1, driver.getWindowHandles().size());
+        Assert.assertTrue(driver.manage().getCookies().isEmpty());
+        Assert.assertNull(driver.executeScript("return 1;"));
+
+        driver.quit();
+        Assert.assertEquals(0, server.getSessionCount());
+    }
+}
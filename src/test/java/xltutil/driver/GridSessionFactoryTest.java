@@ -0,0 +1,161 @@
+package xltutil.driver;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Tests the implementation of {@link GridSessionFactory}, partly against a {@link FakeWebDriverServer} standing in for
+ * the grid.
+ */
+public class GridSessionFactoryTest
+{
+    @Test
+    public void testGetBackoff_GrowsExponentiallyWithJitter()
+    {
+        for (int attempt = 0; attempt < 4; attempt++)
+        {
+            final long delay = 1000L << attempt;
+            for (int i = 0; i < 100; i++)
+            {
+                final long backoff = GridSessionFactory.getBackoff(attempt, 1000, 60000);
+                Assert.assertTrue("Backoff too short: " + backoff, backoff >= delay / 2);
+                Assert.assertTrue("Backoff too long: " + backoff, backoff <= delay);
+            }
+        }
+    }
+
+    @Test
+    public void testGetBackoff_Capped()
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            Assert.assertTrue(GridSessionFactory.getBackoff(40, 1000, 5000) <= 5000);
+        }
+    }
+
+    @Test
+    public void testIsRetryable()
+    {
+        Assert.assertTrue(GridSessionFactory.isRetryable(new TimeoutException("timeout")));
+        Assert.assertTrue(GridSessionFactory.isRetryable(new UnreachableBrowserException("unreachable")));
+        Assert.assertTrue(GridSessionFactory.isRetryable(new WebDriverException("unknown error")));
+        Assert.assertTrue(GridSessionFactory.isRetryable(new SessionNotCreatedException("no connection", new IOException())));
+
+        Assert.assertFalse(GridSessionFactory.isRetryable(new SessionNotCreatedException("unsupported capabilities")));
+    }
+
+    @Test
+    public void testGetSetting_InvalidNumberFallsBackToDefault()
+    {
+        final Map<String, String> environmentProperties = new HashMap<String, String>();
+        environmentProperties.put("retries", "two");
+
+        Assert.assertEquals(2, GridSessionFactory.getSetting(environmentProperties, XltPropertyKey.GRID_RETRIES, 2));
+
+        environmentProperties.put("retries", " 3 ");
+        Assert.assertEquals(3, GridSessionFactory.getSetting(environmentProperties, XltPropertyKey.GRID_RETRIES, 2));
+    }
+
+    @Test(timeout = 20000)
+    public void testCreateDriver_TimeoutsOpenCircuitBreaker() throws Exception
+    {
+        final FakeWebDriverServer server = new FakeWebDriverServer(2000, 0, 0);
+        try
+        {
+            final Map<String, String> environmentProperties = createEnvironment(server);
+            environmentProperties.put("newSessionTimeout", "200");
+            environmentProperties.put("retries", "0");
+            environmentProperties.put("circuitBreaker.failures", "2");
+
+            for (int i = 0; i < 2; i++)
+            {
+                final long start = System.currentTimeMillis();
+                try
+                {
+                    GridSessionFactory.createDriver("timeoutTest", environmentProperties, null, new DesiredCapabilities());
+                    Assert.fail("Session created despite the timeout");
+                }
+                catch (final TimeoutException e)
+                {
+                    // the test thread does not wait for the slow grid
+                    Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+                }
+            }
+
+            // the breaker is open now, so the grid is not asked at all
+            final long start = System.currentTimeMillis();
+            try
+            {
+                GridSessionFactory.createDriver("timeoutTest", environmentProperties, null, new DesiredCapabilities());
+                Assert.fail("Session request not rejected");
+            }
+            catch (final WebDriverException e)
+            {
+                Assert.assertFalse(e instanceof TimeoutException);
+                Assert.assertTrue(System.currentTimeMillis() - start < 200);
+            }
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testCreateDriver_RefusedSessionNeitherRetriedNorCounted() throws Exception
+    {
+        final FakeWebDriverServer server = new FakeWebDriverServer(0, 0, 0);
+        try
+        {
+            final Map<String, String> environmentProperties = createEnvironment(server);
+            environmentProperties.put("retries", "2");
+            environmentProperties.put("retryBackoff", "10000");
+            environmentProperties.put("circuitBreaker.failures", "1");
+
+            final DesiredCapabilities rejectedCapabilities = new DesiredCapabilities();
+            rejectedCapabilities.setCapability(FakeWebDriverServer.REJECT_SESSION_CAPABILITY, true);
+
+            final long start = System.currentTimeMillis();
+            try
+            {
+                GridSessionFactory.createDriver("refusedTest", environmentProperties, null, rejectedCapabilities);
+                Assert.fail("Session created despite the rejected capabilities");
+            }
+            catch (final SessionNotCreatedException e)
+            {
+                // no retry, which would have waited at least 5 s
+                Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+            }
+
+            // the breaker is still closed
+            final RemoteWebDriver driver = GridSessionFactory.createDriver("refusedTest", environmentProperties, null, new DesiredCapabilities());
+            Assert.assertNotNull(driver.getSessionId());
+            driver.quit();
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    private static Map<String, String> createEnvironment(final FakeWebDriverServer server)
+    {
+        final Map<String, String> environmentProperties = new HashMap<String, String>();
+        environmentProperties.put("url", server.getUrl().toString());
+        environmentProperties.put("retryBackoff", "0");
+
+        return environmentProperties;
+    }
+}
@@ -0,0 +1,245 @@
+package xltutil.driver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.mapper.PropertiesToBrowserConfigurationMapper;
+
+/**
+ * Tests the implementation of {@link WebDriverPool} against fake browsers.
+ */
+public class WebDriverPoolTest
+{
+    private final FakeDriverFactory driverFactory = new FakeDriverFactory();
+
+    @Test
+    public void testLeaseAndRelease()
+    {
+        final WebDriverPool pool = new WebDriverPool(4, 60000);
+        final BrowserConfigurationDto config = createConfig("a");
+        final BrowserConfigurationDto otherConfig = createConfig("b");
+
+        Assert.assertNull(pool.lease(config));
+
+        final WebDriver driver = createDriver(config);
+        pool.release(config, driver);
+
+        // the driver was reset and is handed out for the same configuration only
+        Assert.assertEquals("about:blank", driver.getCurrentUrl());
+        Assert.assertNull(pool.lease(otherConfig));
+        Assert.assertSame(driver, pool.lease(config));
+        Assert.assertNull(pool.lease(config));
+
+        pool.shutdown();
+        Assert.assertFalse(isQuit(driver));
+        driver.quit();
+    }
+
+    @Test
+    public void testRelease_FullPoolEvictsOldest()
+    {
+        final WebDriverPool pool = new WebDriverPool(1, 60000);
+        final BrowserConfigurationDto config = createConfig("a");
+        final BrowserConfigurationDto otherConfig = createConfig("b");
+
+        final WebDriver oldest = createDriver(config);
+        final WebDriver newest = createDriver(otherConfig);
+        pool.release(config, oldest);
+        pool.release(otherConfig, newest);
+
+        Assert.assertTrue(isQuit(oldest));
+        Assert.assertNull(pool.lease(config));
+        Assert.assertSame(newest, pool.lease(otherConfig));
+
+        newest.quit();
+    }
+
+    @Test
+    public void testLease_EvictsExpiredDrivers() throws InterruptedException
+    {
+        final WebDriverPool pool = new WebDriverPool(4, 50);
+        final BrowserConfigurationDto config = createConfig("a");
+
+        final WebDriver driver = createDriver(config);
+        pool.release(config, driver);
+        Thread.sleep(100);
+
+        Assert.assertNull(pool.lease(config));
+        Assert.assertTrue(isQuit(driver));
+    }
+
+    @Test
+    public void testSweep_QuitsExpiredDriversWithoutPoolCalls() throws InterruptedException
+    {
+        final WebDriverPool pool = new WebDriverPool(4, 50);
+        final BrowserConfigurationDto config = createConfig("a");
+
+        final WebDriver driver = createDriver(config);
+        pool.release(config, driver);
+
+        awaitQuit(driver);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testRelease_RecyclesAfterMaxUses() throws InterruptedException
+    {
+        final WebDriverPool pool = new WebDriverPool(4, 60000);
+        final BrowserConfigurationDto config = createConfig("a");
+        config.setRecycleMaxUses(2);
+
+        final WebDriver driver = createDriver(config);
+        pool.release(config, driver);
+        Assert.assertSame(driver, pool.lease(config));
+
+        // the second use reaches the limit, so the driver is replaced in the background
+        pool.release(config, driver);
+        awaitQuit(driver);
+
+        final WebDriver replacement = pool.lease(config);
+        Assert.assertNotNull(replacement);
+        Assert.assertNotSame(driver, replacement);
+        Assert.assertFalse(isQuit(replacement));
+
+        pool.shutdown();
+        replacement.quit();
+    }
+
+    @Test
+    public void testRelease_RecyclesAfterMaxAge() throws InterruptedException
+    {
+        final WebDriverPool pool = new WebDriverPool(4, 60000);
+        final BrowserConfigurationDto config = createConfig("a");
+        config.setRecycleMaxAge(50);
+
+        final WebDriver driver = createDriver(config);
+        pool.release(config, driver);
+        Assert.assertSame(driver, pool.lease(config));
+
+        Thread.sleep(100);
+        pool.release(config, driver);
+        awaitQuit(driver);
+
+        final WebDriver replacement = pool.lease(config);
+        Assert.assertNotNull(replacement);
+        Assert.assertNotSame(driver, replacement);
+
+        pool.shutdown();
+        replacement.quit();
+    }
+
+    @Test
+    public void testRelease_MaxAgeCountsFromCreation() throws InterruptedException
+    {
+        final WebDriverPool pool = new WebDriverPool(4, 60000);
+        final BrowserConfigurationDto config = createConfig("a");
+        config.setRecycleMaxAge(50);
+
+        final WebDriver driver = createDriver(config);
+        WebDriverPool.recordCreation(driver);
+
+        // the driver has been in use for longer than its maximum age before it is returned the first time
+        Thread.sleep(100);
+        pool.release(config, driver);
+        awaitQuit(driver);
+
+        final WebDriver replacement = pool.lease(config);
+        Assert.assertNotNull(replacement);
+        Assert.assertNotSame(driver, replacement);
+
+        pool.shutdown();
+        replacement.quit();
+    }
+
+    @Test
+    public void testShutdown_QuitsLaunchingReplacements()
+    {
+        final FakeWebDriverServer server = FakeDriverFactory.getServer();
+        final int sessionCount = server.getSessionCount();
+
+        final WebDriverPool pool = new WebDriverPool(4, 60000);
+        final BrowserConfigurationDto config = createConfig("a");
+        config.setRecycleMaxUses(1);
+
+        final WebDriver driver = createDriver(config);
+        pool.release(config, driver);
+
+        // neither the retired driver nor its replacement survive the shutdown
+        pool.shutdown();
+        Assert.assertTrue(isQuit(driver));
+        Assert.assertEquals(sessionCount, server.getSessionCount());
+    }
+
+    @Test
+    public void testEvictIdleDriver()
+    {
+        final WebDriverPool pool = new WebDriverPool(4, 60000);
+        final BrowserConfigurationDto config = createConfig("a");
+
+        Assert.assertFalse(pool.evictIdleDriver());
+
+        final WebDriver driver = createDriver(config);
+        pool.release(config, driver);
+
+        Assert.assertTrue(pool.evictIdleDriver());
+        Assert.assertTrue(isQuit(driver));
+        Assert.assertNull(pool.lease(config));
+    }
+
+    @Test
+    public void testShutdown_QuitsIdleAndReturnedDrivers()
+    {
+        final WebDriverPool pool = new WebDriverPool(4, 60000);
+        final BrowserConfigurationDto config = createConfig("a");
+
+        final WebDriver idle = createDriver(config);
+        final WebDriver leased = createDriver(config);
+        pool.release(config, idle);
+
+        pool.shutdown();
+        Assert.assertTrue(isQuit(idle));
+
+        // drivers returned after the shutdown are not kept
+        pool.release(config, leased);
+        Assert.assertTrue(isQuit(leased));
+    }
+
+    static BrowserConfigurationDto createConfig(final String browserTag)
+    {
+        final Map<String, String> properties = new HashMap<String, String>();
+        properties.put("browserTag", browserTag);
+        properties.put("name", browserTag);
+        properties.put("browser", FakeDriverFactory.BROWSER_NAME);
+
+        return new PropertiesToBrowserConfigurationMapper().toDto(properties);
+    }
+
+    private WebDriver createDriver(final BrowserConfigurationDto config)
+    {
+        final WebDriver driver = driverFactory.createDriver(config, null);
+        driver.get("http://localhost/");
+
+        return driver;
+    }
+
+    static boolean isQuit(final WebDriver driver)
+    {
+        return ((RemoteWebDriver) driver).getSessionId() == null;
+    }
+
+    private static void awaitQuit(final WebDriver driver) throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!isQuit(driver) && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(isQuit(driver));
+    }
+}
@@ -0,0 +1,59 @@
+package xltutil.proxy;
+
+import java.io.IOException;
+import java.net.URL;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the implementation of {@link GridHttpClientRegistry}.
+ */
+public class GridHttpClientRegistryTest
+{
+    @After
+    public void closeClients()
+    {
+        GridHttpClientRegistry.closeAll();
+    }
+
+    @Test
+    public void testGetClient_SharedPerGrid() throws IOException
+    {
+        final URL grid = new URL("http://grid.example.com:4444/wd/hub");
+
+        final CloseableHttpClient client = GridHttpClientRegistry.getClient(null, grid, "user", "secret");
+
+        // the path does not matter, only scheme, host, port, and credentials do
+        Assert.assertSame(client, GridHttpClientRegistry.getClient(null, new URL("http://grid.example.com:4444/other"), "user", "secret"));
+
+        Assert.assertNotSame(client, GridHttpClientRegistry.getClient(null, new URL("http://grid.example.com:5555/wd/hub"), "user", "secret"));
+        Assert.assertNotSame(client, GridHttpClientRegistry.getClient(null, grid, "other", "secret"));
+        Assert.assertNotSame(client, GridHttpClientRegistry.getClient(null, grid, "user", "secret", 1000, 0));
+    }
+
+    @Test
+    public void testCloseAll() throws IOException
+    {
+        final URL grid = new URL("http://localhost:1/wd/hub");
+
+        final CloseableHttpClient client = GridHttpClientRegistry.getClient(null, grid, null, null);
+        GridHttpClientRegistry.closeAll();
+
+        // the closed client refuses to work, a new one is created on demand
+        try
+        {
+            client.execute(new HttpGet(grid.toString()));
+            Assert.fail("Closed client must not execute requests");
+        }
+        catch (final IllegalStateException e)
+        {
+            // expected
+        }
+
+        Assert.assertNotSame(client, GridHttpClientRegistry.getClient(null, grid, null, null));
+    }
+}
@@ -0,0 +1,87 @@
+package xltutil.runner;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.Description;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.annotation.TestTargets;
+import xltutil.runner.helper.BrowserProfileRegistry;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Tests the creation of the children of {@link AnnotationRunner}.
+ */
+public class AnnotationRunnerTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @After
+    public void resetProperties()
+    {
+        final XltProperties props = XltProperties.getInstance();
+        props.setProperty(XltPropertyKey.DATA_SETS_STREAMING_ENABLED, "false");
+        props.setProperty(DataDrivenTestCase.class.getName() + ".dataSetsFile", "");
+
+        BrowserProfileRegistry.invalidate();
+    }
+
+    @Test
+    public void testGetChildren_HeaderOnlyStreamedDataSets() throws Throwable
+    {
+        final Description description = describe("name,value\n", true);
+
+        // like without data sets, the method runs once
+        Assert.assertEquals(1, description.getChildren().size());
+    }
+
+    @Test
+    public void testGetChildren_EmptyStreamedDataSets() throws Throwable
+    {
+        Assert.assertEquals(1, describe("", true).getChildren().size());
+    }
+
+    @Test
+    public void testGetChildren_HeaderOnlyDataSets() throws Throwable
+    {
+        Assert.assertEquals(1, describe("name,value\n", false).getChildren().size());
+    }
+
+    private Description describe(final String csv, final boolean streaming) throws Throwable
+    {
+        final File dataSetsFile = temporaryFolder.newFile("datasets.csv");
+        FileUtils.writeStringToFile(dataSetsFile, csv, StandardCharsets.UTF_8);
+
+        final XltProperties props = XltProperties.getInstance();
+        props.setProperty("browserprofile.runnerTest.browser", "fake");
+        props.setProperty(XltPropertyKey.DATA_SETS_STREAMING_ENABLED, String.valueOf(streaming));
+        props.setProperty(DataDrivenTestCase.class.getName() + ".dataSetsFile", dataSetsFile.getAbsolutePath());
+
+        final AnnotationRunner runner = new AnnotationRunner(DataDrivenTestCase.class, DataDrivenTestCase.class.getName(), null,
+                                                             Collections.<File>emptyList());
+
+        return runner.getDescription();
+    }
+
+    /**
+     * A test case with one test method for one browser profile.
+     */
+    @TestTargets("runnerTest")
+    public static class DataDrivenTestCase
+    {
+        @Test
+        public void test()
+        {
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package xltutil.runner;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Tests the implementation of {@link ChildSharding}.
+ */
+public class ChildShardingTest
+{
+    private static final String CLASS_NAME = Fixture.class.getName();
+
+    @Test
+    public void testSelect_Hash_PartitionsAllChildren()
+    {
+        final List<FrameworkMethod> children = getChildren();
+        final Set<FrameworkMethod> seen = new HashSet<FrameworkMethod>();
+
+        for (int index = 0; index < 3; index++)
+        {
+            for (final FrameworkMethod child : new ChildSharding(index, 3, null).select(CLASS_NAME, children))
+            {
+                Assert.assertTrue("Child selected by more than one shard: " + child.getName(), seen.add(child));
+            }
+        }
+
+        Assert.assertEquals(children.size(), seen.size());
+    }
+
+    @Test
+    public void testSelect_Cost_BalancesLoad()
+    {
+        final List<FrameworkMethod> children = getChildren();
+
+        // "a" is as expensive as all others together
+        final ChildCostModel costModel = new ChildCostModel()
+        {
+            @Override
+            public long getCost(final String childKey)
+            {
+                return childKey.contains("|a|") ? 500 : 100;
+            }
+        };
+
+        final List<FrameworkMethod> shard0 = new ChildSharding(0, 2, costModel).select(CLASS_NAME, children);
+        final List<FrameworkMethod> shard1 = new ChildSharding(1, 2, costModel).select(CLASS_NAME, children);
+
+        // which shard gets "a" depends on the class name
+        final List<FrameworkMethod> expensiveShard = shard0.contains(children.get(0)) ? shard0 : shard1;
+        final List<FrameworkMethod> otherShard = expensiveShard == shard0 ? shard1 : shard0;
+
+        Assert.assertEquals(1, expensiveShard.size());
+        Assert.assertEquals("a", expensiveShard.get(0).getName());
+        Assert.assertEquals(5, otherShard.size());
+    }
+
+    @Test
+    public void testSelect_Cost_SpreadsTiesAcrossShards()
+    {
+        final List<FrameworkMethod> children = getChildren().subList(0, 1);
+        final ChildCostModel costModel = new ChildCostModel()
+        {
+            @Override
+            public long getCost(final String childKey)
+            {
+                return 100;
+            }
+        };
+
+        // many classes with a single child each must not all put it on the same shard
+        final int[] childrenPerShard = new int[3];
+        for (int i = 0; i < 30; i++)
+        {
+            for (int index = 0; index < childrenPerShard.length; index++)
+            {
+                childrenPerShard[index] += new ChildSharding(index, childrenPerShard.length, costModel).select(CLASS_NAME + i, children).size();
+            }
+        }
+
+        Assert.assertEquals(30, childrenPerShard[0] + childrenPerShard[1] + childrenPerShard[2]);
+        for (final int shardChildren : childrenPerShard)
+        {
+            Assert.assertTrue("Shard left empty", shardChildren > 0);
+        }
+    }
+
+    @Test
+    public void testFromProperties_CostWithoutModelBalancesByHash()
+    {
+        final XltProperties props = XltProperties.getInstance();
+        try
+        {
+            props.setProperty(XltPropertyKey.SHARD_COUNT, "2");
+            props.setProperty(XltPropertyKey.SHARD_INDEX, "1");
+            props.setProperty(XltPropertyKey.SHARD_STRATEGY, "cost");
+            props.setProperty(XltPropertyKey.SHARD_COST_MODEL, "");
+
+            final List<FrameworkMethod> children = getChildren();
+            Assert.assertEquals(new ChildSharding(1, 2, null).select(CLASS_NAME, children),
+                                ChildSharding.fromProperties().select(CLASS_NAME, children));
+        }
+        finally
+        {
+            props.setProperty(XltPropertyKey.SHARD_COUNT, "1");
+            props.setProperty(XltPropertyKey.SHARD_INDEX, "0");
+            props.setProperty(XltPropertyKey.SHARD_STRATEGY, "hash");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_InvalidIndex()
+    {
+        new ChildSharding(2, 2, null);
+    }
+
+    private static List<FrameworkMethod> getChildren()
+    {
+        final List<FrameworkMethod> children = new ArrayList<FrameworkMethod>();
+        for (final String name : new String[]
+        {
+          "a", "b", "c", "d", "e", "f"
+        })
+        {
+            try
+            {
+                final Method method = Fixture.class.getDeclaredMethod(name);
+                children.add(new FrameworkMethod(method));
+            }
+            catch (final NoSuchMethodException e)
+            {
+                throw new AssertionError(e);
+            }
+        }
+
+        return children;
+    }
+
+    static class Fixture
+    {
+        void a()
+        {
+        }
+
+        void b()
+        {
+        }
+
+        void c()
+        {
+        }
+
+        void d()
+        {
+        }
+
+        void e()
+        {
+        }
+
+        void f()
+        {
+        }
+    }
+}
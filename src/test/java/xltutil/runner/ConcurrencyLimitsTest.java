@@ -0,0 +1,186 @@
+package xltutil.runner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.dto.BrowserConfigurationDto;
+import xltutil.runner.helper.XltPropertyKey;
+
+/**
+ * Tests that {@link ConcurrencyLimits} and {@link ParallelRunnerScheduler} together keep each browser tag within its
+ * limit.
+ */
+public class ConcurrencyLimitsTest
+{
+    @Test
+    public void testAcquire_LimitPerBrowserTag()
+    {
+        XltProperties.getInstance().setProperty(XltPropertyKey.PARALLEL_MAX_PER_BROWSER_TAG + ".limitedTag", "2");
+
+        final BrowserConfigurationDto limited = createConfig("limitedTag");
+        final BrowserConfigurationDto unlimited = createConfig("unlimitedTag");
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger maxRunningUnlimited = new AtomicInteger();
+        final AtomicInteger runningUnlimited = new AtomicInteger();
+        final AtomicInteger finished = new AtomicInteger();
+
+        final ParallelRunnerScheduler scheduler = new ParallelRunnerScheduler("ConcurrencyLimitsTest", 4);
+        for (int i = 0; i < 16; i++)
+        {
+            final boolean isLimited = i % 2 == 0;
+            final BrowserConfigurationDto config = isLimited ? limited : unlimited;
+            final AtomicInteger counter = isLimited ? running : runningUnlimited;
+            final AtomicInteger max = isLimited ? maxRunning : maxRunningUnlimited;
+
+            scheduler.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        ConcurrencyLimits.acquire(config);
+                    }
+                    catch (final InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+
+                    try
+                    {
+                        updateMax(max, counter.incrementAndGet());
+                        Thread.sleep(20);
+                        counter.decrementAndGet();
+                        finished.incrementAndGet();
+                    }
+                    catch (final InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally
+                    {
+                        ConcurrencyLimits.release(config);
+                    }
+                }
+            });
+        }
+        scheduler.finished();
+
+        Assert.assertEquals(16, finished.get());
+        Assert.assertTrue("Limit exceeded: " + maxRunning.get(), maxRunning.get() <= 2);
+        Assert.assertTrue("Scheduler limit exceeded: " + maxRunningUnlimited.get(), maxRunningUnlimited.get() <= 4);
+    }
+
+    @Test(timeout = 20000)
+    public void testRunWithinLimits_WaitingChildDoesNotBlockWorker()
+    {
+        final XltProperties props = XltProperties.getInstance();
+        props.setProperty(XltPropertyKey.PARALLEL_MAX_PER_BROWSER_TAG + ".parkedTag", "1");
+        props.setProperty(XltPropertyKey.PARALLEL_MAX_PER_TEST_ENVIRONMENT + ".parkingtest", "4");
+
+        final BrowserConfigurationDto limited = createConfig("parkedTag");
+        limited.setTestEnvironment("parkingTest");
+        final BrowserConfigurationDto other = createConfig("otherTag");
+        other.setTestEnvironment("parkingTest");
+
+        final CountDownLatch otherRan = new CountDownLatch(1);
+        final AtomicBoolean blocked = new AtomicBoolean();
+        final AtomicInteger finished = new AtomicInteger();
+
+        // two workers: the first limited child waits for the other child, the second one waits for the limit
+        final ParallelRunnerScheduler scheduler = new ParallelRunnerScheduler("ConcurrencyLimitsTest", 2);
+        for (final BrowserConfigurationDto config : new BrowserConfigurationDto[] { limited, limited, other })
+        {
+            scheduler.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        ParallelRunnerScheduler.runWithinLimits(config, new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                try
+                                {
+                                    if (config == other)
+                                    {
+                                        otherRan.countDown();
+                                    }
+                                    else if (!otherRan.await(5, TimeUnit.SECONDS))
+                                    {
+                                        blocked.set(true);
+                                    }
+                                    finished.incrementAndGet();
+                                }
+                                catch (final InterruptedException e)
+                                {
+                                    Thread.currentThread().interrupt();
+                                }
+                            }
+                        });
+                    }
+                    catch (final InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        scheduler.finished();
+
+        Assert.assertFalse("Child of another browser tag was blocked", blocked.get());
+        Assert.assertEquals(3, finished.get());
+    }
+
+    @Test
+    public void testScheduler_RunsAllChildrenBeforeFinishing()
+    {
+        final AtomicInteger finished = new AtomicInteger();
+
+        final ParallelRunnerScheduler scheduler = new ParallelRunnerScheduler("ConcurrencyLimitsTest", 2);
+        for (int i = 0; i < 20; i++)
+        {
+            scheduler.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    finished.incrementAndGet();
+                }
+            });
+        }
+        scheduler.finished();
+
+        Assert.assertEquals(20, finished.get());
+    }
+
+    private static BrowserConfigurationDto createConfig(final String browserTag)
+    {
+        final BrowserConfigurationDto config = new BrowserConfigurationDto();
+        config.setConfigTag(browserTag);
+
+        return config;
+    }
+
+    private static void updateMax(final AtomicInteger max, final int value)
+    {
+        int current;
+        while ((current = max.get()) < value && !max.compareAndSet(current, value))
+        {
+            // retry
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package xltutil.runner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the implementation of {@link DisplayNameFormat}.
+ */
+public class DisplayNameFormatTest
+{
+    private static final Map<String, String> DATA_SET = new LinkedHashMap<String, String>();
+
+    static
+    {
+        DATA_SET.put("id", "7");
+        DATA_SET.put("sku", "4711");
+        DATA_SET.put("description", "a very long description");
+    }
+
+    @Test
+    public void testFormat_DefaultPattern()
+    {
+        final DisplayNameFormat format = new DisplayNameFormat(DisplayNameFormat.DEFAULT_PATTERN, null);
+
+        Assert.assertEquals(String.format("%s - %s[%d] - %s", "Chrome", "test", 3, DATA_SET), format.format("Chrome", "test", 3, DATA_SET));
+    }
+
+    @Test
+    public void testFormat_KeyColumns()
+    {
+        final DisplayNameFormat format = new DisplayNameFormat(DisplayNameFormat.DEFAULT_PATTERN, new String[]
+        {
+          "id", "sku"
+        });
+
+        Assert.assertEquals("Chrome - test[3] - {id=7, sku=4711}", format.format("Chrome", "test", 3, DATA_SET));
+    }
+
+    @Test
+    public void testFormat_CustomPattern()
+    {
+        final DisplayNameFormat format = new DisplayNameFormat("{method} #{index} on {name} {unknown}", null);
+
+        Assert.assertEquals("test #3 on Chrome {unknown}", format.format("Chrome", "test", 3, DATA_SET));
+    }
+}
@@ -0,0 +1,139 @@
+package xltutil.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runners.model.FrameworkMethod;
+
+import xltutil.dto.BrowserConfigurationDto;
+
+/**
+ * Tests the implementation of {@link DurationHistory}.
+ */
+public class DurationHistoryTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRecordAndLoad() throws IOException
+    {
+        final File file = new File(temporaryFolder.getRoot(), "history");
+
+        final DurationHistory history = new DurationHistory(file);
+        Assert.assertEquals(-1, history.getCost("a"));
+
+        history.record("a", 100);
+        history.record("b", 2000);
+        history.flush();
+
+        // durations are available on the next run only
+        Assert.assertEquals(-1, history.getCost("a"));
+
+        final DurationHistory nextHistory = new DurationHistory(file);
+        Assert.assertEquals(100, nextHistory.getCost("a"));
+        Assert.assertEquals(2000, nextHistory.getCost("b"));
+        Assert.assertEquals(-1, nextHistory.getCost("c"));
+
+        // newer durations are averaged with the known ones
+        nextHistory.record("a", 300);
+        nextHistory.flush();
+
+        Assert.assertEquals(200, new DurationHistory(file).getCost("a"));
+    }
+
+    @Test
+    public void testFlush_AfterPartialRecord() throws IOException
+    {
+        final File file = new File(temporaryFolder.getRoot(), "history");
+
+        final DurationHistory history = new DurationHistory(file);
+        history.record("a", 100);
+        history.record("b", 2000);
+        history.flush();
+
+        // an aborted run left the last record incomplete
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.setLength(raf.length() - 5);
+        }
+
+        final DurationHistory nextHistory = new DurationHistory(file);
+        Assert.assertEquals(100, nextHistory.getCost("a"));
+        Assert.assertEquals(-1, nextHistory.getCost("b"));
+
+        // new records are not misaligned by the partial one
+        nextHistory.record("c", 500);
+        nextHistory.flush();
+
+        final DurationHistory lastHistory = new DurationHistory(file);
+        Assert.assertEquals(100, lastHistory.getCost("a"));
+        Assert.assertEquals(-1, lastHistory.getCost("b"));
+        Assert.assertEquals(500, lastHistory.getCost("c"));
+    }
+
+    @Test
+    public void testFlush_AfterPartialHeader() throws IOException
+    {
+        final File file = new File(temporaryFolder.getRoot(), "history");
+        FileUtils.writeByteArrayToFile(file, new byte[] { 0x58, 0x4d, 0x42 });
+
+        final DurationHistory history = new DurationHistory(file);
+        Assert.assertEquals(-1, history.getCost("a"));
+
+        history.record("a", 100);
+        history.flush();
+
+        Assert.assertEquals(100, new DurationHistory(file).getCost("a"));
+    }
+
+    @Test
+    public void testSortLongestFirst() throws IOException
+    {
+        final File file = new File(temporaryFolder.getRoot(), "history");
+        final String className = DurationHistoryTest.class.getName();
+
+        final FrameworkMethod shortChild = createChild("short");
+        final FrameworkMethod longChild = createChild("long");
+        final FrameworkMethod unknownChild = createChild("unknown");
+        final FrameworkMethod otherUnknownChild = createChild("otherUnknown");
+        final List<FrameworkMethod> children = Arrays.asList(shortChild, unknownChild, longChild, otherUnknownChild);
+
+        // without any history, the order is kept
+        final DurationHistory history = new DurationHistory(file);
+        Assert.assertSame(children, history.sortLongestFirst(className, children));
+
+        history.record(ChildSharding.getKey(className, (AnnotatedFrameworkMethod) shortChild), 100);
+        history.record(ChildSharding.getKey(className, (AnnotatedFrameworkMethod) longChild), 900);
+        history.flush();
+
+        // unknown children count as average and keep their relative order
+        Assert.assertEquals(Arrays.asList(longChild, unknownChild, otherUnknownChild, shortChild),
+                            new DurationHistory(file).sortLongestFirst(className, children));
+    }
+
+    private static FrameworkMethod createChild(final String testMethodName)
+    {
+        final BrowserConfigurationDto config = new BrowserConfigurationDto();
+        config.setConfigTag("historyTest");
+
+        try
+        {
+            return new AnnotatedFrameworkMethod(DurationHistoryTest.class.getMethod("testSortLongestFirst"), testMethodName, config, -1,
+                                                Collections.<String, String>emptyMap());
+        }
+        catch (final NoSuchMethodException e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package xltutil.runner;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the implementation of {@link HistoryCostModel}.
+ */
+public class HistoryCostModelTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testGetCost_ReadsHistoryWithoutWriting() throws Exception
+    {
+        final File file = new File(temporaryFolder.getRoot(), "history");
+        final DurationHistory history = new DurationHistory(file);
+        for (int i = 0; i < 1000; i++)
+        {
+            history.record("known", 100);
+        }
+        history.flush();
+        final long length = file.length();
+
+        final HistoryCostModel costModel = new HistoryCostModel(file);
+        Assert.assertEquals(100, costModel.getCost("known"));
+        Assert.assertEquals(-1, costModel.getCost("unknown"));
+
+        // the file holds many outdated records, but is shared and therefore not compacted
+        Assert.assertEquals(length, file.length());
+    }
+
+    @Test
+    public void testGetCost_MissingFile()
+    {
+        final HistoryCostModel costModel = new HistoryCostModel(new File(temporaryFolder.getRoot(), "missing"));
+        Assert.assertEquals(-1, costModel.getCost("known"));
+    }
+}
@@ -1,11 +1,20 @@
 package xltutil.runner.helper;
 
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import com.xceptance.xlt.api.util.XltProperties;
 
 import xltutil.annotation.TestTargets;
+import xltutil.driver.ChromeStateResetter;
+import xltutil.driver.DriverFactoryRegistry;
+import xltutil.dto.BrowserConfigurationDto;
 
 /**
  * Tests the implementation of {@link AnnotationRunnerHelper}.
@@ -45,6 +54,72 @@ public class AnnotationRunnerHelperTest
         }, list.get(0).value());
     }
 
+    @Test
+    public void testGetTestTargets_Cached()
+    {
+        Assert.assertSame(AnnotationRunnerHelper.getTestTargets(FooImpl.class), AnnotationRunnerHelper.getTestTargets(FooImpl.class));
+    }
+
+    @Test
+    public void testCreateBrowserOptions_BuiltByFactory()
+    {
+        final BrowserConfigurationDto chrome = createConfig(DesiredCapabilities.chrome(), null);
+        Assert.assertTrue(AnnotationRunnerHelper.createBrowserOptions(chrome, null) instanceof ChromeOptions);
+
+        final BrowserConfigurationDto firefox = createConfig(DesiredCapabilities.firefox(), null);
+        Assert.assertTrue(AnnotationRunnerHelper.createBrowserOptions(firefox, null) instanceof FirefoxOptions);
+
+        // browsers without options of their own keep their capabilities
+        final DesiredCapabilities capabilities = new DesiredCapabilities("fake", "", null);
+        Assert.assertEquals(capabilities, AnnotationRunnerHelper.createBrowserOptions(createConfig(capabilities, null), null));
+    }
+
+    @Test
+    public void testGetStateResetter_ChromeFamily()
+    {
+        Assert.assertTrue(isChromeStateResetter(DesiredCapabilities.chrome(), null));
+        Assert.assertTrue(isChromeStateResetter(DesiredCapabilities.android(), "local"));
+
+        // DevTools commands are not sent to grid browsers
+        Assert.assertFalse(isChromeStateResetter(DesiredCapabilities.chrome(), "saucelabs"));
+        Assert.assertFalse(isChromeStateResetter(DesiredCapabilities.firefox(), null));
+    }
+
+    @Test
+    public void testParseBrowserProperties_SkipsInvalidProfile()
+    {
+        final XltProperties props = XltProperties.getInstance();
+        props.setProperty("browserprofile.parseValid.browser", "chrome");
+        props.setProperty("browserprofile.parseInvalid.browser", DriverFactoryRegistry.REMOTE);
+        props.setProperty("browserprofile.parseInvalid.testEnvironment", "saucelabs");
+        try
+        {
+            final Map<String, BrowserConfigurationDto> configs = AnnotationRunnerHelper.parseBrowserProperties(props);
+
+            Assert.assertNotNull(configs.get("parseValid"));
+            Assert.assertFalse(configs.containsKey("parseInvalid"));
+        }
+        finally
+        {
+            // leave a valid profile behind for the other tests
+            props.setProperty("browserprofile.parseInvalid.browser", "chrome");
+        }
+    }
+
+    private static boolean isChromeStateResetter(final DesiredCapabilities capabilities, final String testEnvironment)
+    {
+        return AnnotationRunnerHelper.getStateResetter(createConfig(capabilities, testEnvironment)) instanceof ChromeStateResetter;
+    }
+
+    private static BrowserConfigurationDto createConfig(final DesiredCapabilities capabilities, final String testEnvironment)
+    {
+        final BrowserConfigurationDto config = new BrowserConfigurationDto();
+        config.setCapabilities(capabilities);
+        config.setTestEnvironment(testEnvironment);
+
+        return config;
+    }
+
     @TestTargets(
     {
       "a", "b"
@@ -0,0 +1,67 @@
+package xltutil.runner.helper;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+import xltutil.dto.BrowserConfigurationDto;
+
+/**
+ * Tests the implementation of {@link BrowserProfileRegistry}.
+ */
+public class BrowserProfileRegistryTest
+{
+    @After
+    public void invalidate()
+    {
+        BrowserProfileRegistry.invalidate();
+    }
+
+    @Test
+    public void testGetInstance_ParsedOnce()
+    {
+        final XltProperties props = XltProperties.getInstance();
+        props.setProperty("browserprofile.registryTest.name", "Registry Test");
+        props.setProperty("browserprofile.registryTest.browser", "chrome");
+        props.setProperty("browserprofile.testEnvironment.registryGrid.url", "http://grid.example.com:4444/wd/hub");
+
+        final BrowserProfileRegistry registry = BrowserProfileRegistry.refresh();
+        Assert.assertEquals("Registry Test", registry.getBrowserConfiguration("registryTest").getName());
+        Assert.assertEquals("http://grid.example.com:4444/wd/hub", registry.getTestEnvironmentProperties("registryGrid").get("url"));
+        Assert.assertTrue(registry.getTestEnvironmentProperties("unknown").isEmpty());
+
+        // the cheap lookup does not check the content of the properties
+        props.setProperty("browserprofile.registryTest.name", "Changed");
+        Assert.assertSame(registry, BrowserProfileRegistry.getInstance());
+
+        // a refresh does, but rebuilds only if something changed
+        final BrowserProfileRegistry refreshedRegistry = BrowserProfileRegistry.refresh();
+        Assert.assertNotSame(registry, refreshedRegistry);
+        Assert.assertEquals("Changed", refreshedRegistry.getBrowserConfiguration("registryTest").getName());
+        Assert.assertSame(refreshedRegistry, BrowserProfileRegistry.refresh());
+        Assert.assertSame(refreshedRegistry, BrowserProfileRegistry.getInstance());
+    }
+
+    @Test
+    public void testInvalidate()
+    {
+        final BrowserProfileRegistry registry = BrowserProfileRegistry.getInstance();
+        BrowserProfileRegistry.invalidate();
+
+        Assert.assertNotSame(registry, BrowserProfileRegistry.getInstance());
+    }
+
+    @Test
+    public void testGetOptionsTemplate_BuiltOnce()
+    {
+        final XltProperties props = XltProperties.getInstance();
+        props.setProperty("browserprofile.templateTest.browser", "firefox");
+
+        final BrowserProfileRegistry registry = BrowserProfileRegistry.refresh();
+        final BrowserConfigurationDto config = registry.getBrowserConfiguration("templateTest");
+
+        Assert.assertSame(registry.getOptionsTemplate(config), registry.getOptionsTemplate(config));
+    }
+}
@@ -0,0 +1,94 @@
+package xltutil.runner.helper;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.xceptance.xlt.api.util.XltProperties;
+
+/**
+ * Tests the implementation of {@link PhaseTimings}.
+ */
+public class PhaseTimingsTest
+{
+    @Test
+    public void testPercentile()
+    {
+        final long[] values = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+
+        Assert.assertEquals(5, PhaseTimings.percentile(values, 50));
+        Assert.assertEquals(9, PhaseTimings.percentile(values, 90));
+        Assert.assertEquals(10, PhaseTimings.percentile(values, 95));
+        Assert.assertEquals(10, PhaseTimings.percentile(values, 100));
+        Assert.assertEquals(1, PhaseTimings.percentile(values, 0));
+
+        Assert.assertEquals(7, PhaseTimings.percentile(new long[] { 7 }, 99));
+        Assert.assertEquals(0, PhaseTimings.percentile(new long[0], 50));
+    }
+
+    @Test
+    public void testSamples_ExactBelowLimit()
+    {
+        final PhaseTimings.Samples samples = new PhaseTimings.Samples();
+        for (int i = 100; i >= 1; i--)
+        {
+            samples.add(i);
+        }
+
+        Assert.assertEquals(100, samples.getCount());
+        Assert.assertEquals(50, samples.getMean());
+        Assert.assertEquals(100, samples.getMax());
+
+        final long[] values = samples.getSortedValues();
+        Assert.assertEquals(100, values.length);
+        Assert.assertEquals(1, values[0]);
+        Assert.assertEquals(100, values[99]);
+    }
+
+    @Test
+    public void testSamples_ReservoirAboveLimit()
+    {
+        final int count = 100000;
+
+        final PhaseTimings.Samples samples = new PhaseTimings.Samples();
+        for (int i = 1; i <= count; i++)
+        {
+            samples.add(i);
+        }
+
+        // count, mean, and maximum stay exact
+        Assert.assertEquals(count, samples.getCount());
+        Assert.assertEquals(50000, samples.getMean());
+        Assert.assertEquals(count, samples.getMax());
+
+        // the kept values are a uniform sample of all values, not just the first ones
+        final long[] values = samples.getSortedValues();
+        Assert.assertEquals(10000, values.length);
+
+        final long median = PhaseTimings.percentile(values, 50);
+        Assert.assertTrue("Median: " + median, Math.abs(median - count / 2) < count / 20);
+
+        final long p90 = PhaseTimings.percentile(values, 90);
+        Assert.assertTrue("P90: " + p90, Math.abs(p90 - count * 9 / 10) < count / 20);
+    }
+
+    @Test
+    public void testIsEnabled_ReadOnRefreshOnly()
+    {
+        final XltProperties props = XltProperties.getInstance();
+        try
+        {
+            props.setProperty(XltPropertyKey.TIMINGS_ENABLED, "true");
+            Assert.assertTrue(PhaseTimings.refresh());
+
+            props.setProperty(XltPropertyKey.TIMINGS_ENABLED, "false");
+            Assert.assertTrue(PhaseTimings.isEnabled());
+            Assert.assertFalse(PhaseTimings.refresh());
+            Assert.assertFalse(PhaseTimings.isEnabled());
+        }
+        finally
+        {
+            props.setProperty(XltPropertyKey.TIMINGS_ENABLED, "false");
+            PhaseTimings.refresh();
+        }
+    }
+}